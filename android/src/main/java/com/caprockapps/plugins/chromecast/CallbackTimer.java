@@ -0,0 +1,74 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Measures the main thread time spent in each Cast SDK callback.
+ */
+final class CallbackTimer {
+
+    private static final class Stat {
+        long count;
+        long totalNanos;
+        long maxNanos;
+    }
+
+    /** Stats per callback name, in first seen order. */
+    private final Map<String, Stat> stats = new LinkedHashMap<>();
+
+    /**
+     * @return the start time to pass to record()
+     */
+    static long start() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Records a callback run.
+     * @param name the callback name
+     * @param startNanos the value returned by start() when the callback was entered
+     */
+    synchronized void record(String name, long startNanos) {
+        long elapsed = SystemClock.elapsedRealtimeNanos() - startNanos;
+        Stat stat = stats.get(name);
+        if (stat == null) {
+            stat = new Stat();
+            stats.put(name, stat);
+        }
+        stat.count++;
+        stat.totalNanos += elapsed;
+        stat.maxNanos = Math.max(stat.maxNanos, elapsed);
+    }
+
+    synchronized void reset() {
+        stats.clear();
+    }
+
+    /**
+     * @return {callbackName: {count, totalMs, avgMs, maxMs}}
+     */
+    synchronized JSONObject toJSON() {
+        JSONObject out = new JSObject();
+        try {
+            for (Map.Entry<String, Stat> entry : stats.entrySet()) {
+                Stat stat = entry.getValue();
+                JSONObject s = new JSONObject();
+                s.put("count", stat.count);
+                s.put("totalMs", stat.totalNanos / 1e6);
+                s.put("avgMs", stat.count == 0 ? 0 : stat.totalNanos / 1e6 / stat.count);
+                s.put("maxMs", stat.maxNanos / 1e6);
+                out.put(entry.getKey(), s);
+            }
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+}
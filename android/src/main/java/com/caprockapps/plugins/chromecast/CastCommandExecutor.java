@@ -0,0 +1,178 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import java.util.ArrayDeque;
+
+/*
+ * Runs the Cast SDK calls of a ChromecastSession on the main thread, in submission order.
+ *
+ * Tasks submitted while others are pending share a single looper message instead of one
+ * runOnUiThread each, and a task submitted from the main thread with nothing pending runs
+ * inline.  Session tasks are bound to the session that was current when they were submitted:
+ * if the session changed before they run they are not run, stale() is called instead, so a
+ * command can never reach the session that replaced the one it was meant for.
+ */
+final class CastCommandExecutor {
+    /** Max tasks run per looper message, so a burst does not hold the main thread too long. */
+    private static final int MAX_TASKS_PER_DRAIN = 32;
+
+    /** A task bound to the session current when it was submitted. */
+    abstract static class SessionTask implements Runnable {
+        /**
+         * Called on the main thread instead of run() when the session changed in between.
+         */
+        abstract void stale();
+    }
+
+    /** A session task that rejects its call with session_error when it is stale. */
+    abstract static class CallTask extends SessionTask {
+        private final PluginCall call;
+
+        CallTask(PluginCall call) {
+            this.call = call;
+        }
+
+        @Override
+        void stale() {
+            call.reject("session_error");
+        }
+    }
+
+    private static final class Entry {
+        final Runnable task;
+        /** Session generation the task is bound to, -1 if it is not bound. */
+        final int generation;
+
+        Entry(Runnable task, int generation) {
+            this.task = task;
+            this.generation = generation;
+        }
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /** Tasks waiting for the drain. */
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    /** Whether the drain is posted or running. */
+    private boolean drainPosted = false;
+    /** Incremented each time the session changes. */
+    private volatile int generation = 0;
+
+    /** Stats. */
+    private long statTasks = 0;
+    private long statInline = 0;
+    private long statPosts = 0;
+    private long statStale = 0;
+    private int statMaxBatch = 0;
+    private long statMaxDrainMs = 0;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            long start = SystemClock.elapsedRealtime();
+            int count = 0;
+            while (true) {
+                Entry entry;
+                synchronized (CastCommandExecutor.this) {
+                    if (count == MAX_TASKS_PER_DRAIN && !queue.isEmpty()) {
+                        statPosts++;
+                        handler.post(this);
+                        entry = null;
+                    } else {
+                        entry = queue.poll();
+                        if (entry == null) {
+                            drainPosted = false;
+                        }
+                    }
+                    if (entry == null) {
+                        statMaxBatch = Math.max(statMaxBatch, count);
+                        statMaxDrainMs = Math.max(statMaxDrainMs, SystemClock.elapsedRealtime() - start);
+                        return;
+                    }
+                }
+                count++;
+                runEntry(entry);
+            }
+        }
+    };
+
+    /**
+     * Runs a task on the main thread, whatever the session is by then.
+     * @param task the task
+     */
+    void execute(Runnable task) {
+        submit(new Entry(task, -1));
+    }
+
+    /**
+     * Runs a task on the main thread if the session did not change in the meantime.
+     * @param task the task
+     */
+    void executeForSession(SessionTask task) {
+        submit(new Entry(task, generation));
+    }
+
+    /**
+     * Makes the session tasks submitted so far stale.  Must be called from the main thread
+     * when the session changes, before the new one is used.
+     */
+    void invalidate() {
+        generation++;
+    }
+
+    private void submit(Entry entry) {
+        synchronized (this) {
+            statTasks++;
+            if (drainPosted || Looper.myLooper() != Looper.getMainLooper()) {
+                queue.add(entry);
+                if (!drainPosted) {
+                    drainPosted = true;
+                    statPosts++;
+                    handler.post(drain);
+                }
+                return;
+            }
+            statInline++;
+        }
+        runEntry(entry);
+    }
+
+    private void runEntry(Entry entry) {
+        if (entry.generation >= 0 && entry.generation != generation) {
+            synchronized (this) {
+                statStale++;
+            }
+            ((SessionTask) entry.task).stale();
+            return;
+        }
+        entry.task.run();
+    }
+
+    /**
+     * @return {tasks, inline, looperPosts, staleTasks, maxBatch, maxDrainMs}
+     */
+    synchronized JSObject getStats() {
+        JSObject out = new JSObject();
+        out.put("tasks", statTasks);
+        out.put("inline", statInline);
+        out.put("looperPosts", statPosts);
+        out.put("staleTasks", statStale);
+        out.put("maxBatch", statMaxBatch);
+        out.put("maxDrainMs", statMaxDrainMs);
+        return out;
+    }
+
+    synchronized void resetStats() {
+        statTasks = 0;
+        statInline = 0;
+        statPosts = 0;
+        statStale = 0;
+        statMaxBatch = 0;
+        statMaxDrainMs = 0;
+    }
+}
@@ -15,6 +15,7 @@ import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.cast.MediaQueueItem;
 import com.google.android.gms.cast.framework.Session;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient;
 import com.google.android.gms.common.ConnectionResult;
@@ -30,6 +31,8 @@ import org.json.JSONStringer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @CapacitorPlugin()
@@ -39,17 +42,17 @@ public class Chromecast extends Plugin {
      */
     private static final String TAG = "Chromecast";
     /**
-     * Object to control the connection to the chromecast.
+     * Object to control the connection to the chromecast, replaced by initialize.
      */
-    private ChromecastConnection connection;
-    /**
-     * Object to control the media.
-     */
-    private ChromecastSession media;
+    private volatile ChromecastConnection connection;
     /**
      * Holds the reference to the current client initiated scan.
      */
     private ChromecastConnection.ScanCallback clientScan;
+    /**
+     * The discovery timings of the scans, see setDiscoveryOptions.
+     */
+    private final DiscoveryScheduler.Options discoveryOptions = new DiscoveryScheduler.Options();
     /**
      * Holds the reference to the current client initiated scan callback.
      */
@@ -58,6 +61,67 @@ public class Chromecast extends Plugin {
      * In the case that chromecast can't be used.
      **/
     private String noChromecastError;
+    /**
+     * Default number of queue items sent per request by queueLoad and queueInsertItems.
+     */
+    private static final int QUEUE_CHUNK_SIZE = 20;
+    /**
+     * Builds the session and media objects and sends the events off the main thread, in order.
+     */
+    private final EventSerializer serializer = new EventSerializer();
+    /**
+     * Encodes MEDIA_UPDATE events as full objects or deltas.
+     */
+    private final MediaUpdateEncoder mediaUpdateEncoder = new MediaUpdateEncoder();
+    /**
+     * Rate limits the events coming from the session before they reach the bridge.
+     */
+    private final EventCoalescer events = new EventCoalescer(new EventCoalescer.Sink() {
+        @Override
+        public void deliver(String eventName, JSONObject args) {
+            if (eventName.equals("MEDIA_UPDATE")) {
+                // Encode after coalescing so that no delta is ever dropped
+                args = mediaUpdateEncoder.encode(args);
+                if (args == null) {
+                    return;
+                }
+            }
+            try {
+                sendEvent(eventName, ChromecastUtilities.toJSObject(args));
+            } catch (JSONException e) {
+            }
+        }
+    }, "MEDIA_UPDATE", "SESSION_UPDATE");
+
+    /**
+     * Delivers the messages of the subscribed namespaces as RECEIVER_MESSAGES arrays.
+     */
+    private final MessageRouter router = new MessageRouter(serializer.getLooper(), new MessageRouter.Sink() {
+        @Override
+        public boolean isListening() {
+            return hasListeners("RECEIVER_MESSAGES");
+        }
+
+        @Override
+        public void deliver(String namespace, JSArray messages, long dropped) {
+            JSObject args = new JSObject();
+            args.put("namespace", namespace);
+            args.put("messages", messages);
+            args.put("dropped", dropped);
+            sendEvent("RECEIVER_MESSAGES", args);
+        }
+    });
+
+    /**
+     * Routes seen in this and previous launches, created in load so they are read before initialize.
+     */
+    private KnownRoutes knownRoutes;
+
+    @Override
+    public void load() {
+        // Starts reading the cache off the main thread right away
+        knownRoutes = new KnownRoutes(getContext(), serializer.getLooper());
+    }
 
     /**
      * Initialize all of the MediaRouter stuff with the AppId.
@@ -86,14 +150,15 @@ public class Chromecast extends Plugin {
         setup();
 
         try {
-            this.connection = new ChromecastConnection(getActivity(), new ChromecastConnection.Listener() {
+            this.connection = new ChromecastConnection(getActivity(), serializer, new ChromecastConnection.Listener() {
                 @Override
                 public void onSessionStarted(Session session, String sessionId) {
+                  mediaUpdateEncoder.reset();
                   try {
-                    JSONObject result = new JSONObject();
+                    JSONObject result = new JSObject();
                     result.put("isConnected",session.isConnected());
                     result.put("sessionId",sessionId);
-                    sendEvent("SESSION_STARTED", JSObject.fromJSONObject(result));
+                    sendEvent("SESSION_STARTED", ChromecastUtilities.toJSObject(result));
                   } catch (JSONException e) {
                   }
                 }
@@ -101,11 +166,12 @@ public class Chromecast extends Plugin {
 
               @Override
               public void onSessionEnded(Session session, int error) {
+                mediaUpdateEncoder.reset();
                 try {
-                  JSONObject result = new JSONObject();
+                  JSONObject result = new JSObject();
                   result.put("isConnected",session.isConnected());
                   result.put("error",error);
-                  sendEvent("SESSION_ENDED", JSObject.fromJSONObject(result));
+                  sendEvent("SESSION_ENDED", ChromecastUtilities.toJSObject(result));
                 } catch (JSONException e) {
                 }
               }
@@ -117,11 +183,12 @@ public class Chromecast extends Plugin {
               }
               @Override
               public void onSessionResumed(Session session, boolean wasSuspended) {
+                mediaUpdateEncoder.reset();
                 try {
-                  JSONObject result = new JSONObject();
+                  JSONObject result = new JSObject();
                   result.put("isConnected",session.isConnected());
                   result.put("wasSuspended",wasSuspended);
-                  sendEvent("SESSION_RESUMED", JSObject.fromJSONObject(result));
+                  sendEvent("SESSION_RESUMED", ChromecastUtilities.toJSObject(result));
                 } catch (JSONException e) {
                 }
               }
@@ -131,10 +198,10 @@ public class Chromecast extends Plugin {
               @Override
               public void onSessionStartFailed(Session session, int error) {
                 try {
-                  JSONObject result = new JSONObject();
+                  JSONObject result = new JSObject();
                   result.put("isConnected",session.isConnected());
                   result.put("error",error);
-                  sendEvent("SESSION_START_FAILED", JSObject.fromJSONObject(result));
+                  sendEvent("SESSION_START_FAILED", ChromecastUtilities.toJSObject(result));
                 } catch (JSONException e) {
                 }
               }
@@ -148,17 +215,14 @@ public class Chromecast extends Plugin {
                 @Override
                 public void onSessionRejoin(JSONObject jsonSession) {
                     try {
-                        sendEvent("SESSION_LISTENER", JSObject.fromJSONObject(jsonSession));
+                        sendEvent("SESSION_LISTENER", ChromecastUtilities.toJSObject(jsonSession));
                     } catch (JSONException e) {
                     }
                 }
 
                 @Override
                 public void onSessionUpdate(JSONObject jsonSession) {
-                    try {
-                        sendEvent("SESSION_UPDATE", JSObject.fromJSONObject(jsonSession));
-                    } catch (JSONException e) {
-                    }
+                    events.submit("SESSION_UPDATE", jsonSession);
                 }
 
                 @Override
@@ -171,10 +235,15 @@ public class Chromecast extends Plugin {
                     sendEvent("RECEIVER_LISTENER", new JSObject().put("isAvailable", available));
                 }
 
+                @Override
+                public void onJoinTiming(JSObject timing) {
+                    sendEvent("JOIN_TIMING", timing);
+                }
+
                 @Override
                 public void onMediaLoaded(JSONObject jsonMedia) {
                     try {
-                        sendEvent("MEDIA_LOAD", JSObject.fromJSONObject(jsonMedia));
+                        sendEvent("MEDIA_LOAD", ChromecastUtilities.toJSObject(jsonMedia));
                     } catch (JSONException e) {
                     }
                 }
@@ -185,20 +254,41 @@ public class Chromecast extends Plugin {
 
 
                     // TODO: Fix null pointer exception
+                    if (jsonMedia != null) {
+                        events.submit("MEDIA_UPDATE", jsonMedia);
+                    }
+                }
+
+                @Override
+                public void onMediaProgress(JSONObject progress) {
+                    events.submit("MEDIA_PROGRESS", progress);
+                }
+
+                @Override
+                public void onQueueChange(JSONObject change) {
+                    // Not coalesced, each change must reach the client to patch its list
                     try {
-                        if (jsonMedia != null) {
-                            sendEvent("MEDIA_UPDATE", JSObject.fromJSONObject(jsonMedia));
-                        }
+                        sendEvent("QUEUE_CHANGE", ChromecastUtilities.toJSObject(change));
+                    } catch (JSONException e) {
+                    }
+                }
+
+                @Override
+                public void onQueueProgress(JSONObject progress) {
+                    try {
+                        sendEvent("QUEUE_PROGRESS", ChromecastUtilities.toJSObject(progress));
                     } catch (JSONException e) {
                     }
                 }
 
                 @Override
                 public void onMessageReceived(CastDevice device, String namespace, String message) {
-                    sendEvent("RECEIVER_MESSAGE", new JSObject().put(device.getDeviceId(), new JSObject().put("namespace", namespace).put("message", message)));
+                    if (router.route(namespace, message)) {
+                        return;
+                    }
+                    events.queue("RECEIVER_MESSAGE", new JSObject().put(device.getDeviceId(), new JSObject().put("namespace", namespace).put("message", message)));
                 }
-            });
-            this.media = connection.getChromecastSession();
+            }, knownRoutes);
         } catch (RuntimeException e) {
             Log.e("tag", "Error initializing Chromecast connection: " + e.getMessage());
             noChromecastError = "Could not initialize chromecast: " + e.getMessage();
@@ -224,7 +314,7 @@ public class Chromecast extends Plugin {
             @Override
             public void onJoin(JSONObject jsonSession) {
                 try {
-                    pluginCall.resolve(JSObject.fromJSONObject(jsonSession));
+                    pluginCall.resolve(ChromecastUtilities.toJSObject(jsonSession));
                 } catch (JSONException e) {
                     Log.e(TAG, "Error parsing session JSON", e);
                     pluginCall.reject("session_parse_error", e.getMessage());
@@ -291,7 +381,10 @@ public class Chromecast extends Plugin {
     }
 
     /**
-     * Selects a route by its id.
+     * Selects a route by its id.  Selects it straight away when the router already lists it, else
+     * scans for it.  Each join, from here or from requestSession, ends with a JOIN_TIMING event
+     * ({routeId, fastPath, routeFoundMs, sessionStartingMs, sessionStartedMs, mediaClientReadyMs,
+     * totalMs, success, error}).
      *
      * @param pluginCall called with .success or .error depending on the result
      * @return true for cordova
@@ -304,7 +397,7 @@ public class Chromecast extends Plugin {
             @Override
             public void onJoin(JSONObject jsonSession) {
                 try {
-                    pluginCall.resolve(JSObject.fromJSONObject(jsonSession));
+                    pluginCall.resolve(ChromecastUtilities.toJSObject(jsonSession));
                 } catch (JSONException e) {
                     pluginCall.reject("json_parse_error", e);
                 }
@@ -313,7 +406,7 @@ public class Chromecast extends Plugin {
             @Override
             public void onError(JSONObject message) {
                 try {
-                    pluginCall.resolve(JSObject.fromJSONObject(message));
+                    pluginCall.resolve(ChromecastUtilities.toJSObject(message));
                 } catch (JSONException e) {
                     pluginCall.reject("json_parse_error", e);
                 }
@@ -338,14 +431,14 @@ public class Chromecast extends Plugin {
       String message = pluginCall.getString("message");
       JSObject returnObj = new JSObject();
       returnObj.put("success",false);
-      //If we don't have a session here we need to try and get it
-      if(this.media == null) this.media = connection.getChromecastSession();
-      //If we still don't have a session we can't call sendMessage return false;
-      if(this.media == null){
+      ChromecastSession media = currentSession();
+      //If we don't have a session we can't call sendMessage return false;
+      if(media == null){
         pluginCall.resolve(returnObj);
         return false;
       }
-      this.media.sendMessage(namespace, message,new ResultCallback<Status>() {
+      // Resolve once the message was actually sent
+      boolean sending = media.sendMessage(namespace, message,new ResultCallback<Status>() {
         @Override
         public void onResult(Status result) {
           if (!result.isSuccess()) {
@@ -353,12 +446,236 @@ public class Chromecast extends Plugin {
           } else {
             returnObj.put("success",true);
           }
+          pluginCall.resolve(returnObj);
         }
       });
-      pluginCall.resolve(returnObj);
+      if (!sending) {
+        returnObj.put("error", "session_error");
+        pluginCall.resolve(returnObj);
+        return false;
+      }
       return true;
     }
 
+    /**
+     * Batches the messages sent on a namespace into one envelope per flush, optionally deflated.
+     * The receiver unpacks them with addBatchedMessageListener (see custom-receiver/index.html).
+     *
+     * @param pluginCall with "namespace", optional "enabled" (default true), "flushIntervalMs",
+     *                   "maxBatchBytes", "maxBatchCount" and "compressThresholdBytes" (0 never deflates)
+     */
+    @PluginMethod
+    public void setMessageBatching(PluginCall pluginCall) {
+        String namespace = pluginCall.getString("namespace");
+        if (namespace == null) {
+            pluginCall.reject("namespace is required");
+            return;
+        }
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.setMessageBatching(namespace,
+                pluginCall.getBoolean("enabled", true),
+                pluginCall.getInt("flushIntervalMs", (int) MessageBatcher.DEFAULT_FLUSH_INTERVAL),
+                pluginCall.getInt("maxBatchBytes", MessageBatcher.DEFAULT_MAX_BATCH_BYTES),
+                pluginCall.getInt("maxBatchCount", MessageBatcher.DEFAULT_MAX_BATCH_COUNT),
+                pluginCall.getInt("compressThresholdBytes", MessageBatcher.DEFAULT_COMPRESS_THRESHOLD));
+        pluginCall.resolve();
+    }
+
+    /**
+     * Returns the counters of the batched namespaces.
+     *
+     * @param pluginCall resolved with {namespace: {messages, frames, compressedFrames, payloadBytes, wireBytes}}
+     */
+    @PluginMethod
+    public void getMessageBatchStats(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        try {
+            pluginCall.resolve(ChromecastUtilities.toJSObject(media.getMessageBatchStats()));
+        } catch (JSONException e) {
+            pluginCall.reject("json_parse_error", e);
+        }
+    }
+
+    /**
+     * Sends the same synthetic telemetry messages one by one then batched and compares them.
+     *
+     * @param pluginCall with "namespace", optional "messages" (default 500), "payloadBytes" (default 200)
+     *                   and the setMessageBatching options for the batched pass,
+     *                   resolved with {messages, payloadBytes, unbatched, batched}, each pass with
+     *                   {durationMs, messagesPerSec, failures, frames, wireBytes}
+     */
+    @PluginMethod
+    public void runMessageBenchmark(PluginCall pluginCall) {
+        String namespace = pluginCall.getString("namespace");
+        if (namespace == null) {
+            pluginCall.reject("namespace is required");
+            return;
+        }
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.runMessageBenchmark(namespace,
+                pluginCall.getInt("messages", 500),
+                pluginCall.getInt("payloadBytes", 200),
+                pluginCall.getInt("flushIntervalMs", (int) MessageBatcher.DEFAULT_FLUSH_INTERVAL),
+                pluginCall.getInt("maxBatchBytes", MessageBatcher.DEFAULT_MAX_BATCH_BYTES),
+                pluginCall.getInt("maxBatchCount", MessageBatcher.DEFAULT_MAX_BATCH_COUNT),
+                pluginCall.getInt("compressThresholdBytes", MessageBatcher.DEFAULT_COMPRESS_THRESHOLD),
+                pluginCall);
+    }
+
+    /**
+     * Sends a message larger than the Cast message limit, in acknowledged chunks.
+     * The receiver reassembles it (see custom-receiver/index.html) and can send large messages
+     * back the same way, they are raised as one RECEIVER_MESSAGE.
+     *
+     * @param pluginCall with "namespace", "message", optional "windowSize" (default 4),
+     *                   "chunkSize" (default 16000 chars) and "timeoutMs" per ack (default 10000),
+     *                   resolved with {id, chunks, bytes, durationMs, bytesPerSec}, rejected with
+     *                   code "timeout", "send_failed" or "aborted"
+     */
+    @PluginMethod
+    public void sendLargeMessage(PluginCall pluginCall) {
+        String namespace = pluginCall.getString("namespace");
+        String message = pluginCall.getString("message");
+        if (namespace == null || message == null) {
+            pluginCall.reject("namespace and message are required");
+            return;
+        }
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.sendLargeMessage(namespace, message,
+                pluginCall.getInt("windowSize", ChunkedTransfer.DEFAULT_WINDOW),
+                pluginCall.getInt("chunkSize", ChunkedTransfer.DEFAULT_CHUNK_SIZE),
+                pluginCall.getInt("timeoutMs", (int) ChunkedTransfer.DEFAULT_TIMEOUT),
+                pluginCall);
+    }
+
+    /**
+     * Calls a method on the receiver over a custom namespace and resolves with its answer.
+     * The receiver must answer {rpc: "res", id, result} (or error) as custom-receiver/index.html does.
+     *
+     * @param pluginCall with "namespace", "method", optional "params" and "timeoutMs" (default 10000),
+     *                   resolved with {result, latencyMs}, rejected with code "timeout",
+     *                   "send_failed" or the receiver's error code
+     */
+    @PluginMethod
+    public void rpcCall(PluginCall pluginCall) {
+        String namespace = pluginCall.getString("namespace");
+        String method = pluginCall.getString("method");
+        if (namespace == null || method == null) {
+            pluginCall.reject("namespace and method are required");
+            return;
+        }
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        Object params = pluginCall.getData().opt("params");
+        long timeout = pluginCall.getInt("timeoutMs", (int) RpcClient.DEFAULT_TIMEOUT);
+        media.rpcCall(namespace, method, params, timeout, pluginCall);
+    }
+
+    /**
+     * Returns the latency histograms of the answered RPC calls.
+     *
+     * @param pluginCall with optional "reset" to clear them after reading,
+     *                   resolved with {namespace: {method: {count, failures, minMs, maxMs, avgMs, p50Ms, p90Ms, p99Ms, buckets}}}
+     */
+    @PluginMethod
+    public void getRpcStats(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        try {
+            pluginCall.resolve(ChromecastUtilities.toJSObject(media.getRpcStats(pluginCall.getBoolean("reset", false))));
+        } catch (JSONException e) {
+            pluginCall.reject("json_parse_error", e);
+        }
+    }
+
+    /**
+     * Subscribes to the messages of a namespace, in this session and the next ones. They are sent
+     * as RECEIVER_MESSAGES {namespace, messages, dropped} instead of one RECEIVER_MESSAGE each.
+     *
+     * @param pluginCall with "namespace", optional "batchIntervalMs" (default 0, deliver each message),
+     *                   "maxBatchSize" (default 50) and "bufferSize" (default 500, messages kept while
+     *                   there is no RECEIVER_MESSAGES listener, the oldest are dropped first)
+     */
+    @PluginMethod
+    public void subscribeMessages(PluginCall pluginCall) {
+        String namespace = pluginCall.getString("namespace");
+        if (namespace == null) {
+            pluginCall.reject("namespace is required");
+            return;
+        }
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        router.subscribe(namespace,
+                pluginCall.getInt("batchIntervalMs", (int) MessageRouter.DEFAULT_BATCH_INTERVAL),
+                pluginCall.getInt("maxBatchSize", MessageRouter.DEFAULT_MAX_BATCH_SIZE),
+                pluginCall.getInt("bufferSize", MessageRouter.DEFAULT_BUFFER_SIZE));
+        media.subscribeNamespace(namespace);
+        pluginCall.resolve();
+    }
+
+    /**
+     * Unsubscribes from a namespace, buffered messages are dropped.
+     *
+     * @param pluginCall with "namespace"
+     */
+    @PluginMethod
+    public void unsubscribeMessages(PluginCall pluginCall) {
+        String namespace = pluginCall.getString("namespace");
+        if (namespace == null) {
+            pluginCall.reject("namespace is required");
+            return;
+        }
+        router.unsubscribe(namespace);
+        ChromecastSession media = currentSession();
+        if (media != null) {
+            media.unsubscribeNamespace(namespace);
+        }
+        pluginCall.resolve();
+    }
+
+    /**
+     * Sends the messages buffered while there was no RECEIVER_MESSAGES listener.
+     *
+     * @param pluginCall with optional "namespace", all of them if missing
+     */
+    @PluginMethod
+    public void flushMessages(PluginCall pluginCall) {
+        router.flush(pluginCall.getString("namespace"));
+        pluginCall.resolve();
+    }
+
+    /**
+     * Returns the counters of the subscribed namespaces.
+     *
+     * @param pluginCall resolved with {namespace: {received, delivered, dropped, frames, buffered}}
+     */
+    @PluginMethod
+    public void getMessageRouterStats(PluginCall pluginCall) {
+        try {
+            pluginCall.resolve(ChromecastUtilities.toJSObject(router.getStats()));
+        } catch (JSONException e) {
+            pluginCall.reject("json_parse_error", e);
+        }
+    }
+
     /**
      * Adds a listener to a specific namespace.
      *
@@ -368,13 +685,214 @@ public class Chromecast extends Plugin {
     public void addMessageListener(PluginCall pluginCall) {
         String namespace = pluginCall.getString("namespace");
         if (namespace != null) {
-            this.media.addMessageListener(namespace);
+            ChromecastSession media = requireSession(pluginCall);
+            if (media == null) {
+                return;
+            }
+            media.addMessageListener(namespace);
             pluginCall.resolve();
         } else {
             pluginCall.reject("namespace is required");
         }
     }
 
+    /**
+     * Switches MEDIA_UPDATE events between full media objects and deltas.
+     * Does not require a session, the next update after a session change is always a keyframe.
+     * In delta mode each event carries a sequence number ("seq") and is either a keyframe
+     * ({keyframe: true, media}) or the changed paths since the previous event
+     * ({keyframe: false, changes, removed}).
+     *
+     * @param pluginCall with "delta" (boolean) and optional "keyframeInterval" (number of deltas between keyframes)
+     */
+    @PluginMethod
+    public void setMediaUpdateMode(PluginCall pluginCall) {
+        boolean delta = pluginCall.getBoolean("delta", false);
+        int keyframeInterval = pluginCall.getInt("keyframeInterval", MediaUpdateEncoder.DEFAULT_KEYFRAME_INTERVAL);
+        mediaUpdateEncoder.setDeltaMode(delta, keyframeInterval);
+        pluginCall.resolve();
+    }
+
+    /**
+     * Limits how often MEDIA_UPDATE, SESSION_UPDATE and RECEIVER_MESSAGE (or any other event) are sent.
+     * Updates received within the limit are merged and only the latest one is sent, the
+     * RECEIVER_MESSAGE held back are all sent in order once the limit elapses.
+     *
+     * @param pluginCall with optional "windowMs" (coalescing window applied to every limited event
+     *                   and to MEDIA_UPDATE and SESSION_UPDATE even without a max rate, kept when
+     *                   omitted),
+     *                   "maxRates" ({eventName: max events per second}, 0 removes the limit) and
+     *                   "reset" (removes every previous limit first, sending what they held back)
+     */
+    @PluginMethod
+    public void setEventRateLimits(PluginCall pluginCall) {
+        if (pluginCall.getBoolean("reset", false)) {
+            events.clear();
+        }
+        if (pluginCall.hasOption("windowMs")) {
+            events.setWindow(pluginCall.getInt("windowMs", 0));
+        }
+        JSObject maxRates = pluginCall.getObject("maxRates", new JSObject());
+        Iterator<String> keys = maxRates.keys();
+        while (keys.hasNext()) {
+            String eventName = keys.next();
+            events.setMaxRate(eventName, maxRates.optDouble(eventName, 0));
+        }
+        pluginCall.resolve();
+    }
+
+    /**
+     * Starts or stops the lightweight MEDIA_PROGRESS events ({position, duration, rate, playerState}).
+     *
+     * @param pluginCall with "intervalMs" (0 stops the updates) and optional "useProgressListener"
+     *                   (let the Cast SDK drive the updates instead of the local estimator)
+     */
+    @PluginMethod
+    public void setProgressUpdates(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.setProgressUpdates(pluginCall.getInt("intervalMs", 0), pluginCall.getBoolean("useProgressListener", false));
+        pluginCall.resolve();
+    }
+
+    /**
+     * Returns the locally estimated playback position without waiting for a status update.
+     *
+     * @param pluginCall resolved with {position, duration, rate, playerState}
+     */
+    @PluginMethod
+    public void getEstimatedPosition(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        try {
+            pluginCall.resolve(ChromecastUtilities.toJSObject(media.getEstimatedPosition()));
+        } catch (JSONException e) {
+            pluginCall.reject("json_parse_error", e);
+        }
+    }
+
+    /**
+     * Switches between building the session and media objects on the serializer thread (default)
+     * and on the main thread inside the Cast callbacks, to compare them with getMainThreadStats.
+     *
+     * @param pluginCall with "enabled"
+     */
+    @PluginMethod
+    public void setBackgroundSerialization(PluginCall pluginCall) {
+        serializer.setEnabled(pluginCall.getBoolean("enabled", true));
+        pluginCall.resolve();
+    }
+
+    /**
+     * Returns the main thread time spent in each Cast callback since the last reset.
+     *
+     * @param pluginCall with optional "reset" to clear the stats after reading them,
+     *                   resolved with {backgroundSerialization, callbacks: {name: {count, totalMs, avgMs, maxMs}},
+     *                   commands: {tasks, inline, looperPosts, staleTasks, maxBatch, maxDrainMs}}
+     */
+    @PluginMethod
+    public void getMainThreadStats(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        CallbackTimer timer = media.getCallbackTimer();
+        JSObject out = new JSObject();
+        out.put("backgroundSerialization", serializer.isEnabled());
+        out.put("callbacks", timer.toJSON());
+        out.put("commands", media.getExecutor().getStats());
+        if (pluginCall.getBoolean("reset", false)) {
+            timer.reset();
+            media.getExecutor().resetStats();
+        }
+        pluginCall.resolve(out);
+    }
+
+    /**
+     * Sets how many queue items around the current item are included in the media objects.
+     *
+     * @param pluginCall with "before" and "after" (number of items, default 1 each)
+     */
+    @PluginMethod
+    public void setQueueWindow(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.setQueueWindow(pluginCall.getInt("before", 1), pluginCall.getInt("after", 1));
+        pluginCall.resolve();
+    }
+
+    /**
+     * Gets a page of the queue in a single call.
+     *
+     * @param pluginCall with "offset" and "limit" (at most 100), resolved with {offset, total, items}
+     */
+    @PluginMethod
+    public void getQueueItems(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.getQueueItems(pluginCall.getInt("offset", 0), pluginCall.getInt("limit", 20), pluginCall);
+    }
+
+    /**
+     * Loads a whole queue in a few requests.  Sends a QUEUE_PROGRESS event per applied chunk.
+     *
+     * @param pluginCall with "items" (queue items), optional "startIndex", "repeatMode" (REPEAT_OFF by default)
+     *                   and "chunkSize" (max items per request, default 20)
+     */
+    @PluginMethod
+    public void queueLoad(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        try {
+            List<MediaQueueItem> items = parseQueueItems(pluginCall);
+            int repeatMode = ChromecastUtilities.getAndroidRepeatMode(pluginCall.getString("repeatMode", "REPEAT_OFF"));
+            media.queueLoad(items, pluginCall.getInt("startIndex", 0), repeatMode,
+                    pluginCall.getInt("chunkSize", QUEUE_CHUNK_SIZE), pluginCall);
+        } catch (JSONException e) {
+            pluginCall.reject("invalid_parameter", e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts many items in the queue in a few requests.  Sends a QUEUE_PROGRESS event per applied chunk.
+     *
+     * @param pluginCall with "items" (queue items), optional "insertBeforeItemId" (appends if missing)
+     *                   and "chunkSize" (max items per request, default 20)
+     */
+    @PluginMethod
+    public void queueInsertItems(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        try {
+            List<MediaQueueItem> items = parseQueueItems(pluginCall);
+            media.queueInsertItems(items, pluginCall.getInt("insertBeforeItemId", MediaQueueItem.INVALID_ITEM_ID),
+                    pluginCall.getInt("chunkSize", QUEUE_CHUNK_SIZE), pluginCall);
+        } catch (JSONException e) {
+            pluginCall.reject("invalid_parameter", e.getMessage());
+        }
+    }
+
+    private List<MediaQueueItem> parseQueueItems(PluginCall pluginCall) throws JSONException {
+        JSArray jsonItems = pluginCall.getArray("items", new JSArray());
+        List<MediaQueueItem> items = new ArrayList<>();
+        for (int i = 0; i < jsonItems.length(); i++) {
+            items.add(ChromecastUtilities.createMediaQueueItem(jsonItems.getJSONObject(i)));
+        }
+        return items;
+    }
+
     /**
      * Loads some media on the Chromecast using the media APIs.
      *
@@ -391,6 +909,10 @@ public class Chromecast extends Plugin {
      */
     @PluginMethod
     public void loadMedia(final PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
         String contentId = pluginCall.getString("contentId");
         JSObject customData = pluginCall.getObject("customData", new JSObject());
         String contentType = pluginCall.getString("contentType", "");
@@ -424,7 +946,7 @@ public class Chromecast extends Plugin {
         Log.d(TAG, "currentTime: " + currentTime);
         Log.d(TAG, "========================");
 
-        this.connection.getChromecastSession().loadMedia(contentId, customData, contentType, duration, streamType, autoPlay, currentTime, metadata, textTrackStyle, pluginCall);
+        media.loadMedia(contentId, customData, contentType, duration, streamType, autoPlay, currentTime, metadata, textTrackStyle, pluginCall);
     }
     
     /**
@@ -446,6 +968,10 @@ public class Chromecast extends Plugin {
      */
     @PluginMethod
     public void loadMediaWithHeaders(final PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
         String contentId = pluginCall.getString("contentId");
         JSObject customData = pluginCall.getObject("customData", new JSObject());
         String contentType = pluginCall.getString("contentType", "");
@@ -502,7 +1028,7 @@ public class Chromecast extends Plugin {
         Log.d(TAG, "customData: " + customData.toString());
         Log.d(TAG, "=====================================");
 
-        this.connection.getChromecastSession().loadMedia(contentId, customData, contentType, duration, streamType, autoPlay, currentTime, metadata, textTrackStyle, pluginCall);
+        media.loadMedia(contentId, customData, contentType, duration, streamType, autoPlay, currentTime, metadata, textTrackStyle, pluginCall);
     }
 
     /**
@@ -580,14 +1106,9 @@ public class Chromecast extends Plugin {
         
         Log.d(TAG, "URL finale utilisée: " + mediaUrl);
 
-        // Vérifier si une session est active
-        if (this.connection == null) {
-            Log.e(TAG, "ERREUR: Aucune connexion Chromecast initialisée");
-            pluginCall.resolve(new JSObject().put("value", false));
-            return;
-        }
-        
-        if (this.connection.getChromecastSession() == null) {
+        // Vérifier si une session est active, résout false sans session comme documenté
+        ChromecastSession media = currentSession();
+        if (media == null) {
             Log.e(TAG, "ERREUR: Aucune session Chromecast active");
             pluginCall.resolve(new JSObject().put("value", false));
             return;
@@ -632,7 +1153,7 @@ public class Chromecast extends Plugin {
                 JSONObject textTrackStyleJSON = new JSONObject(textTrackStyle.toString());
                 
                 // Appeler directement la méthode loadMedia de ChromecastSession
-                this.connection.getChromecastSession().loadMedia(
+                media.loadMedia(
                     mediaUrl, 
                     customDataJSON, 
                     contentType, 
@@ -687,6 +1208,11 @@ public class Chromecast extends Plugin {
      * Will actively scan for routes and send a json array to the client.
      * It is super important that client calls "stopRouteScan", otherwise the
      * battery could drain quickly.
+     * The call resolves with the first list, the following updates are sent as ROUTE_ADDED and
+     * ROUTE_CHANGED events ({route: {name, id, isNearbyDevice, isCastGroup}}) and ROUTE_REMOVED
+     * events ({id}), one per route that differs from the previous list.
+     * The scan alternates active bursts and passive discovery and pauses in the background, see
+     * setDiscoveryOptions.
      *
      * @param pluginCall called with .success or .error depending on the result
      * @return true for cordova
@@ -703,25 +1229,30 @@ public class Chromecast extends Plugin {
             @Override
             public void run() {
                 clientScan = new ChromecastConnection.ScanCallback() {
+                    /** Diffs the updates of this scan. */
+                    private final RouteDiffer differ = new RouteDiffer();
+                    /** Whether the first list was resolved. */
+                    private boolean resolved = false;
+
                     @Override
                     void onRouteUpdate(List<MediaRouter.RouteInfo> routes) {
                         if (scanPluginCall != null) {
-                            JSObject ret = new JSObject();
-                            JSArray retArr = new JSArray();
-
-                            for (int i = 0; i < routes.size(); i++) {
-                                retArr.put(routes.get(i));
+                            RouteDiffer.Diff diff = differ.update(routes);
+                            if (!resolved) {
+                                resolved = true;
+                                JSObject ret = new JSObject();
+                                ret.put("routes", diff.added);
+                                scanPluginCall.resolve(ret);
+                                return;
                             }
-                            ret.put("routes", retArr);
-
-                            scanPluginCall.resolve(ret);
+                            sendRouteEvents(diff);
                         } else {
                             // Try to get the scan to stop because we already ended the scanCallback
                             connection.stopRouteScan(clientScan, null);
                         }
                     }
                 };
-                connection.startRouteScan(null, clientScan, null);
+                connection.startScheduledRouteScan(clientScan, discoveryOptions);
             }
         };
         if (clientScan != null) {
@@ -733,6 +1264,80 @@ public class Chromecast extends Plugin {
         return true;
     }
 
+    /**
+     * Sends one event per route that changed during a scan.
+     *
+     * @param diff the changes since the previous update
+     */
+    private void sendRouteEvents(RouteDiffer.Diff diff) {
+        for (int i = 0; i < diff.added.length(); i++) {
+            sendEvent("ROUTE_ADDED", new JSObject().put("route", diff.added.optJSONObject(i)));
+        }
+        for (int i = 0; i < diff.changed.length(); i++) {
+            sendEvent("ROUTE_CHANGED", new JSObject().put("route", diff.changed.optJSONObject(i)));
+        }
+        for (int i = 0; i < diff.removed.length(); i++) {
+            sendEvent("ROUTE_REMOVED", new JSObject().put("id", diff.removed.optString(i)));
+        }
+    }
+
+    /**
+     * Sets how startRouteScan discovers routes: an active burst of burstMs when the scan starts or
+     * the app comes back to the foreground, then passive discovery with a new burst every interval,
+     * between minIntervalMs and maxIntervalMs depending on how often the routes changed lately.
+     * A running scan picks the new timings up from its next burst, the omitted ones are kept.
+     *
+     * @param pluginCall with optional "burstMs" (default 8000), "minIntervalMs" (default 15000)
+     *                   and "maxIntervalMs" (default 240000)
+     */
+    @PluginMethod
+    public void setDiscoveryOptions(PluginCall pluginCall) {
+        discoveryOptions.set(optionalLong(pluginCall, "burstMs"), optionalLong(pluginCall, "minIntervalMs"),
+                optionalLong(pluginCall, "maxIntervalMs"));
+        pluginCall.resolve();
+    }
+
+    /**
+     * @return the option as a long, null if it was not passed
+     */
+    private static Long optionalLong(PluginCall pluginCall, String name) {
+        Integer value = pluginCall.getInt(name);
+        return value != null ? Long.valueOf(value) : null;
+    }
+
+    /**
+     * Returns the discovery mode transitions and the time spent in each mode by the scans.
+     *
+     * @param pluginCall resolved with {mode, intervalMs, burstMs, activeStarts, passiveStarts, stops,
+     *                   activeMs, passiveMs, stoppedMs, routeChanges, routeChangesPerMinute,
+     *                   filter: {evaluations, cacheHits, skippedUpdates}}
+     */
+    @PluginMethod
+    public void getDiscoveryStats(PluginCall pluginCall) {
+        JSObject out = DiscoveryScheduler.getStats(discoveryOptions);
+        out.put("filter", RouteFilter.getStats());
+        pluginCall.resolve(out);
+    }
+
+    /**
+     * Lists the routes found by the scans of this and previous launches, without scanning, so a
+     * picker can be shown straight away and completed by startRouteScan.  Works before initialize.
+     *
+     * @param pluginCall resolved with {routes: [{id, name, modelName, lastSeen, successRate, available}]},
+     *                   most recently seen first
+     */
+    @PluginMethod
+    public void getKnownRoutes(final PluginCall pluginCall) {
+        knownRoutes.list(new KnownRoutes.Callback() {
+            @Override
+            public void onList(JSArray routes) {
+                JSObject out = new JSObject();
+                out.put("routes", routes);
+                pluginCall.resolve(out);
+            }
+        });
+    }
+
     /**
      * Stops the scan started by startRouteScan.
      *
@@ -778,14 +1383,174 @@ public class Chromecast extends Plugin {
         return true;
     }
 
+    /**
+     * Loads media in turn like a user tapping through channels and measures the last tap.
+     * Only the newest load is sent, see ChromecastSession.loadMedia.
+     *
+     * @param pluginCall with "media" ([{contentId, contentType, streamType, metadata}], used in turn),
+     *                   optional "taps" (default 5), "tapIntervalMs" (default 300) and "timeoutMs"
+     *                   (default 30000), resolved with {taps, tapIntervalMs, superseded,
+     *                   supersededAfterSend, failures, timedOut, lastTapToLoadedMs, lastTapToPlayingMs}
+     */
+    @PluginMethod
+    public void runZapBenchmark(PluginCall pluginCall) {
+        JSArray mediaList = pluginCall.getArray("media");
+        if (mediaList == null || mediaList.length() == 0) {
+            pluginCall.reject("media is required", "invalid_parameter");
+            return;
+        }
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        media.runZapBenchmark(mediaList, pluginCall.getInt("taps", 5), pluginCall.getInt("tapIntervalMs", 300),
+                pluginCall.getInt("timeoutMs", 30000), pluginCall);
+    }
+
+    /**
+     * Returns how many loads were requested, sent, and superseded before or after being sent.
+     *
+     * @param pluginCall resolved with {requested, sent, skipped, interrupted}
+     */
+    @PluginMethod
+    public void getLoadStats(PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
+        pluginCall.resolve(media.getLoadStats());
+    }
+
+    /**
+     * Runs several commands against the current session from a single bridge call, in order.
+     *
+     * @param pluginCall with "commands" ([{op, args}], op being play, pause, seek, next, prev,
+     *                   sendMessage, sendLargeMessage, rpcCall, loadMedia, setVolume or setMute and args the data of
+     *                   the matching method) and optional "stopOnError" (default false),
+     *                   resolved with {results: [{op, success, latencyMs, result | error, code | skipped}],
+     *                   completed, failed, totalMs}
+     */
+    @PluginMethod
+    public void executeBatch(PluginCall pluginCall) {
+        JSArray commands = pluginCall.getArray("commands");
+        if (commands == null || commands.length() == 0) {
+            pluginCall.reject("commands is required", "invalid_parameter");
+            return;
+        }
+        if (commands.length() > CommandBatch.MAX_COMMANDS) {
+            pluginCall.reject("At most " + CommandBatch.MAX_COMMANDS + " commands per batch", "invalid_parameter");
+            return;
+        }
+        if (requireSession(pluginCall) == null) {
+            return;
+        }
+        new CommandBatch(commands, pluginCall.getBoolean("stopOnError", false), new CommandBatch.Dispatcher() {
+            @Override
+            public boolean dispatch(String op, PluginCall call) {
+                switch (op) {
+                    case "play":
+                        mediaPlay(call);
+                        return true;
+                    case "pause":
+                        mediaPause(call);
+                        return true;
+                    case "seek":
+                        mediaSeek(call);
+                        return true;
+                    case "next":
+                        mediaNext(call);
+                        return true;
+                    case "prev":
+                        mediaPrev(call);
+                        return true;
+                    case "sendMessage":
+                        sendMessage(call);
+                        return true;
+                    case "sendLargeMessage":
+                        sendLargeMessage(call);
+                        return true;
+                    case "rpcCall":
+                        rpcCall(call);
+                        return true;
+                    case "loadMedia":
+                        loadMedia(call);
+                        return true;
+                    case "setVolume":
+                        setVolume(call);
+                        return true;
+                    case "setMute":
+                        setMute(call);
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+        }, pluginCall).run();
+    }
+
+    /**
+     * Reads the session controller from the current connection, so that a method uses a single
+     * instance throughout even if initialize runs meanwhile.
+     *
+     * @return the session controller, null if initialize did not complete yet
+     */
+    private ChromecastSession currentSession() {
+        ChromecastConnection current = connection;
+        return current != null ? current.getChromecastSession() : null;
+    }
+
+    /**
+     * Same as currentSession, but rejects the call with session_error when there is none.
+     *
+     * @param pluginCall the call to reject
+     * @return the session controller, or null if the call was rejected
+     */
+    private ChromecastSession requireSession(PluginCall pluginCall) {
+        ChromecastSession media = currentSession();
+        if (media == null) {
+            pluginCall.reject("session_error");
+        }
+        return media;
+    }
+
     /**
      * This triggers an event on the JS-side.
      *
      * @param eventName - The name of the JS event to trigger
      * @param args      - The arguments to pass the JS event
      */
-    private void sendEvent(String eventName, JSObject args) {
-        notifyListeners(eventName, args);
+    private void sendEvent(final String eventName, final JSObject args) {
+        // Through the serializer so the events stay in order with the ones built there
+        serializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                notifyListeners(eventName, args);
+            }
+        });
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        ChromecastConnection current = connection;
+        if (current != null) {
+            current.setForeground(true);
+        }
+    }
+
+    @Override
+    protected void handleOnPause() {
+        super.handleOnPause();
+        ChromecastConnection current = connection;
+        if (current != null) {
+            current.setForeground(false);
+        }
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        serializer.quit();
+        super.handleOnDestroy();
     }
 
     /**
@@ -1270,8 +2035,12 @@ public class Chromecast extends Plugin {
      */
     private void loadMediaWithCustomData(String contentId, JSObject customData, String contentType, 
                                        String streamType, boolean autoPlay, JSObject metadata, PluginCall pluginCall) {
+        ChromecastSession media = requireSession(pluginCall);
+        if (media == null) {
+            return;
+        }
         try {
-            this.connection.getChromecastSession().loadMedia(
+            media.loadMedia(
                 contentId, 
                 customData, 
                 contentType, 
@@ -1288,79 +2057,158 @@ public class Chromecast extends Plugin {
             pluginCall.reject("Failed to load media: " + e.getMessage());
         }
     }
+    /**
+     * Pauses the current media.
+     *
+     * @param call resolved once the receiver acknowledged it with {command, latencyMs, playerState,
+     *             currentItemId, currentTime}, and skipped: true if it was a no-op that was not sent
+     */
     @PluginMethod
     public void mediaPause(PluginCall call) {
-        JSObject returnObj = new JSObject();
-        returnObj.put("success",false);
-        //If we don't have a session here we need to try and get it
-        if(this.media == null) this.media = connection.getChromecastSession();
-        //If we still don't have a session we can't call sendMessage return false;
-        if(this.media == null){
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
             Log.d(TAG, "mediaPause Session Not Found");
+            return;
         }
-        this.media = connection.getChromecastSession();
-        this.media.pause();
-        call.resolve();
+        media.pause(call);
     }
-    
+
+    /**
+     * Resumes the current media.
+     *
+     * @param call resolved once the receiver acknowledged it with {command, latencyMs, playerState,
+     *             currentItemId, currentTime}, and skipped: true if it was a no-op that was not sent
+     */
     @PluginMethod
     public void mediaPlay(PluginCall call) {
-        JSObject returnObj = new JSObject();
-        returnObj.put("success",false);
-        //If we don't have a session here we need to try and get it
-        if(this.media == null) this.media = connection.getChromecastSession();
-        //If we still don't have a session we can't call sendMessage return false;
-        if(this.media == null){
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
             Log.d(TAG, "mediaPlay Session Not Found");
+            return;
         }
-        this.media = connection.getChromecastSession();
-        
-        this.media.play();
-        call.resolve();
+        media.play(call);
     }
-    
+
+    /**
+     * Seeks the current media.  Scrub gestures can call it continuously: while a seek is in
+     * flight only the newest target is sent next and the replaced calls resolve with superseded.
+     *
+     * @param call with "currentTime", optional "preview" to only move the estimated position
+     *             locally, or "commit" to seek to the last previewed position
+     */
     @PluginMethod
     public void mediaSeek(PluginCall call) {
-        JSObject returnObj = new JSObject();
-        returnObj.put("success",false);
-        //If we don't have a session here we need to try and get it
-        if(this.media == null) this.media = connection.getChromecastSession();
-        //If we still don't have a session we can't call sendMessage return false;
-        if(this.media == null){
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
             Log.d(TAG, "mediaSeek Session Not Found");
+            return;
+        }
+        if (call.getBoolean("commit", false)) {
+            media.commitSeek(call);
+            return;
         }
         long position = call.getInt("currentTime", 0);
-        this.media = connection.getChromecastSession();
-        this.media.seek(position);
-        //if(client != null) client.seek(position);
-        call.resolve();
+        if (call.getBoolean("preview", false)) {
+            media.seekPreview(position);
+            JSObject out = new JSObject();
+            out.put("position", position);
+            out.put("superseded", false);
+            call.resolve(out);
+            return;
+        }
+        media.seek(position, call);
     }
+
+    /**
+     * Jumps to the next queue item.
+     *
+     * @param call resolved once the receiver acknowledged it with {command, latencyMs, playerState,
+     *             currentItemId, currentTime}, and skipped: true if it was a no-op that was not sent
+     */
+    @PluginMethod
     public void mediaNext(PluginCall call) {
-        JSObject returnObj = new JSObject();
-        returnObj.put("success",false);
-        //If we don't have a session here we need to try and get it
-        if(this.media == null) this.media = connection.getChromecastSession();
-        //If we still don't have a session we can't call sendMessage return false;
-        if(this.media == null){
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
             Log.d(TAG, "mediaNext Session Not Found");
+            return;
         }
-        this.media = connection.getChromecastSession();
-        
-        this.media.next();
-        call.resolve();
+        media.next(call);
     }
+
+    /**
+     * Jumps to the previous queue item.
+     *
+     * @param call resolved once the receiver acknowledged it with {command, latencyMs, playerState,
+     *             currentItemId, currentTime}, and skipped: true if it was a no-op that was not sent
+     */
+    @PluginMethod
     public void mediaPrev(PluginCall call) {
-        JSObject returnObj = new JSObject();
-        returnObj.put("success",false);
-        //If we don't have a session here we need to try and get it
-        if(this.media == null) this.media = connection.getChromecastSession();
-        //If we still don't have a session we can't call sendMessage return false;
-        if(this.media == null){
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
             Log.d(TAG, "mediaPrev Session Not Found");
+            return;
         }
-        this.media = connection.getChromecastSession();
-        
-        this.media.prev();
-        call.resolve();
+        media.prev(call);
+    }
+
+    /**
+     * Sets the receiver's device volume.  Sliders can call it continuously: while a change is in
+     * flight only the newest level is sent next and the replaced calls resolve with superseded.
+     *
+     * @param call with "level" (0 to 1), resolved once the receiver reported it with {level, muted,
+     *             superseded, latencyMs}
+     */
+    @PluginMethod
+    public void setVolume(PluginCall call) {
+        Double level = call.getDouble("level");
+        if (level == null) {
+            call.reject("level is required", "invalid_parameter");
+            return;
+        }
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
+            return;
+        }
+        media.setVolume(level, call);
+    }
+
+    /**
+     * Mutes or unmutes the receiver, coalesced like setVolume.
+     *
+     * @param call with "muted", resolved with {level, muted, superseded, latencyMs}
+     */
+    @PluginMethod
+    public void setMute(PluginCall call) {
+        Boolean muted = call.getBoolean("muted");
+        if (muted == null) {
+            call.reject("muted is required", "invalid_parameter");
+            return;
+        }
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
+            return;
+        }
+        media.setMute(muted, call);
+    }
+
+    /**
+     * Fades the receiver's device volume to a level.
+     *
+     * @param call with "target" (0 to 1) and optional "durationMs" (default 1000), resolved once the
+     *             target was reached with {level, muted, superseded, latencyMs}, or with
+     *             cancelled: true if another volume change stopped the ramp
+     */
+    @PluginMethod
+    public void rampVolume(PluginCall call) {
+        Double target = call.getDouble("target");
+        if (target == null) {
+            call.reject("target is required", "invalid_parameter");
+            return;
+        }
+        ChromecastSession media = requireSession(call);
+        if (media == null) {
+            return;
+        }
+        media.rampVolume(target, call.getInt("durationMs", 1000), call);
     }
 }
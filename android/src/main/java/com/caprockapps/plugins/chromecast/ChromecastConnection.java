@@ -4,7 +4,6 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
-import android.os.Bundle;
 import android.os.Handler;
 import android.util.Log;
 
@@ -30,7 +29,9 @@ import com.google.android.gms.cast.framework.SessionManagerListener;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ChromecastConnection {
 
@@ -38,13 +39,19 @@ public class ChromecastConnection {
     private Activity activity;
     /** settings object. */
     private SharedPreferences settings;
-    /** Controls the media. */
-    private ChromecastSession media;
+    /** Controls the media, created on the main thread and read from the bridge thread. */
+    private volatile ChromecastSession media;
 
     /** Lifetime variable. */
     private SessionListener newConnectionListener;
     /** The Listener callback. */
     private Listener listener;
+    /** Remembers the routes the scans found, null if not kept. */
+    private final KnownRoutes knownRoutes;
+    /** Schedules the discovery of the long running scan, null if none.  Main thread only. */
+    private DiscoveryScheduler scheduler;
+    /** Whether the app is in the foreground.  Main thread only. */
+    private boolean foreground = true;
 
     /** Initialize lifetime variable. */
     private String appId;
@@ -52,10 +59,13 @@ public class ChromecastConnection {
     /**
      * Constructor.
      * @param act the current context
+     * @param serializer where the session and media objects are built
      * @param connectionListener client callbacks for specific events
+     * @param routes updated with the routes the scans find and the connection results, may be null
      */
-    ChromecastConnection(final Activity act, final Listener connectionListener) {
+    ChromecastConnection(final Activity act, final EventSerializer serializer, final Listener connectionListener, final KnownRoutes routes) {
         this.activity = act;
+        this.knownRoutes = routes;
 
         act.runOnUiThread(new Runnable() {
             @Override
@@ -63,7 +73,7 @@ public class ChromecastConnection {
                 settings = activity.getSharedPreferences("CORDOVA-PLUGIN-CHROMECAST_ChromecastConnection", 0);
                 appId = settings.getString("appId", CastMediaControlIntent.DEFAULT_MEDIA_RECEIVER_APPLICATION_ID);
                 listener = connectionListener;
-                media = new ChromecastSession(activity, listener);
+                media = new ChromecastSession(activity, listener, serializer);
 
                 // Set the initial appId
                 CastOptionsProvider.setAppId(appId);
@@ -143,7 +153,13 @@ public class ChromecastConnection {
                                 Log.d("ChromecastConnection", "Found existing session: " + session.getSessionId());
                                 // Let the client know
                                 media.setSession(session);
-                                listener.onSessionRejoin(ChromecastUtilities.createSessionObject(session));
+                                media.createSessionObject(session, null, new Function<JSONObject, Void>() {
+                                    @Override
+                                    public Void apply(JSONObject jsonSession) {
+                                        listener.onSessionRejoin(jsonSession);
+                                        return null;
+                                    }
+                                });
                             } else {
                                 Log.d("ChromecastConnection", "No existing session found");
                             }
@@ -211,6 +227,9 @@ public class ChromecastConnection {
 
     /**
      * This will create a new session or seamlessly selectRoute an existing one if we created it.
+     * If the router already lists the route it is selected straight away, else (or if that
+     * attempt has to be retried) an active scan looks for it.  The phases of the join are sent
+     * to listener.onJoinTiming.
      * @param routeId the id of the route to selectRoute
      * @param callback calls callback.onJoin when we have joined a session,
      *                 or callback.onError if an error occurred
@@ -228,7 +247,10 @@ public class ChromecastConnection {
                 // to store it as a global variable, just always access first element
                 final boolean[] foundRoute = {false};
                 final boolean[] sentResult = {false};
+                final boolean[] scanStarted = {false};
                 final int[] retries = {0};
+                final JoinTimer timer = new JoinTimer(routeId, listener);
+                final Handler timeoutHandler = new Handler();
 
                 // We need to start an active scan because getMediaRouter().getRoutes() may be out
                 // of date.  Also, maintaining a list of known routes doesn't work.  It is possible
@@ -240,6 +262,8 @@ public class ChromecastConnection {
                 // getRoutes() fn will have no record of the route.  We need the active scan to
                 // avoid this situation as well.  PS. Just running the scan non-stop is a poor idea
                 // since it will drain battery power quickly.
+                // So the fast path below only skips the scan when the router still has the route
+                // and actually selected it, anything else falls back to the scan.
                 final ScanCallback scan = new ScanCallback() {
                     @Override
                     void onRouteUpdate(List<RouteInfo> routes) {
@@ -252,6 +276,7 @@ public class ChromecastConnection {
                                 // https://github.com/jellyfin/cordova-plugin-chromecast/issues/48
                                 try {
                                     // Try selecting the route!
+                                    timer.routeFound(routeId, false);
                                     getMediaRouter().selectRoute(route);
                                 } catch (NullPointerException e) {
                                     // Let it try to find the route again
@@ -262,11 +287,24 @@ public class ChromecastConnection {
                     }
                 };
 
+                final Runnable startScan = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!scanStarted[0]) {
+                            scanStarted[0] = true;
+                            // Stopped by stopRouteScan once there is a result
+                            startRouteScan(null, scan, null);
+                        }
+                    }
+                };
+
                 final Runnable retry = new Runnable() {
                     @Override
                     public void run() {
                         // Reset foundRoute
                         foundRoute[0] = false;
+                        // The route may be stale, make sure a scan refreshes it
+                        startScan.run();
                         // Feed current routes into scan so that it can retry.
                         // If route is there, it will try to join,
                         // if not, it should wait for the scan to find the route
@@ -279,7 +317,9 @@ public class ChromecastConnection {
                     public Void apply(JSONObject message) {
                         if (!sentResult[0]) {
                             sentResult[0] = true;
+                            timeoutHandler.removeCallbacksAndMessages(null);
                             stopRouteScan(scan, null);
+                            timer.failed(message.optString("code"));
                             callback.onError(message);
                         }
                         return null;
@@ -290,6 +330,7 @@ public class ChromecastConnection {
                     @Override
                     public void onJoin(JSONObject jsonSession) {
                         sentResult[0] = true;
+                        timeoutHandler.removeCallbacksAndMessages(null);
                         stopRouteScan(scan, null);
                         callback.onJoin(jsonSession);
                     }
@@ -317,15 +358,35 @@ public class ChromecastConnection {
                             return true;
                         }
                     }
-                });
+                }, timer);
 
-                startRouteScan(15000L, scan, new Runnable() {
+                timeoutHandler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
                         sendErrorResult.apply(ChromecastUtilities.createError("timeout",
                                 "Failed to join route (" + routeId + ") after 15s and " + (retries[0] + 1) + " tries."));
                     }
-                });
+                }, 15000L);
+
+                // Fast path: the router already has the route, no need to wait for a scan
+                for (RouteInfo route : getMediaRouter().getRoutes()) {
+                    if (route.getId().equals(routeId) && RouteFilter.accepts(route)) {
+                        foundRoute[0] = true;
+                        try {
+                            timer.routeFound(routeId, true);
+                            getMediaRouter().selectRoute(route);
+                            // A stale route is ignored by the router, it stays unselected
+                            if (routeId.equals(getMediaRouter().getSelectedRoute().getId())) {
+                                return;
+                            }
+                        } catch (NullPointerException e) {
+                            // Same as in the scan, look for it again
+                        }
+                        foundRoute[0] = false;
+                        break;
+                    }
+                }
+                startScan.run();
             }
         });
     }
@@ -358,8 +419,14 @@ public class ChromecastConnection {
                     Log.d("ChromecastConnection", "No existing session, showing device chooser dialog");
                     // show the "choose a connection" dialog
 
-                    // Add the connection listener callback
-                    listenForConnection(callback);
+                    // Add the connection listener callback, the timing starts with the picker
+                    final JoinTimer timer = new JoinTimer(null, listener);
+                    listenForConnection(callback, timer);
+
+                    // The picker lists what the scans find, so burst straight away
+                    if (scheduler != null) {
+                        scheduler.onForeground();
+                    }
 
                     // Create the dialog
                     // TODO accept theme as a config.xml option
@@ -373,6 +440,7 @@ public class ChromecastConnection {
                         public void onCancel(DialogInterface dialog) {
                             Log.d("ChromecastConnection", "Device chooser dialog was canceled");
                             getSessionManager().removeSessionManagerListener(newConnectionListener, CastSession.class);
+                            timer.failed("cancel");
                             callback.onCancel();
                         }
                     });
@@ -409,18 +477,39 @@ public class ChromecastConnection {
     /**
      * Must be called from the main thread.
      * @param callback calls callback.success when we have joined, or callback.error if an error occurred
+     * @param timer times the phases of this join
      */
-    private void listenForConnection(final ConnectionCallback callback) {
+    private void listenForConnection(final ConnectionCallback callback, final JoinTimer timer) {
         // We should only ever have one of these listeners active at a time, so remove previous
         getSessionManager().removeSessionManagerListener(newConnectionListener, CastSession.class);
         newConnectionListener = new SessionListener() {
+            @Override
+            public void onSessionStarting(CastSession castSession) {
+                // For the picker, the route is found when the user picks it
+                RouteInfo selected = getMediaRouter().getSelectedRoute();
+                timer.routePicked(selected != null ? selected.getId() : null);
+                timer.sessionStarting();
+            }
             @Override
             public void onSessionStarted(CastSession castSession, String sessionId) {
                 Log.d("ChromecastConnection", "Session started successfully. SessionId: " + sessionId + ", Device: " + 
                     (castSession.getCastDevice() != null ? castSession.getCastDevice().getFriendlyName() : "Unknown"));
                 getSessionManager().removeSessionManagerListener(this, CastSession.class);
+                recordConnection(true);
+                timer.sessionStarted(castSession);
                 media.setSession(castSession);
-                callback.onJoin(ChromecastUtilities.createSessionObject(castSession));
+                media.createSessionObject(castSession, null, new Function<JSONObject, Void>() {
+                    @Override
+                    public Void apply(final JSONObject jsonSession) {
+                        // The connection callbacks expect the main thread
+                        activity.runOnUiThread(new Runnable() {
+                            public void run() {
+                                callback.onJoin(jsonSession);
+                            }
+                        });
+                        return null;
+                    }
+                });
             }
             @Override
             public void onSessionStartFailed(CastSession castSession, int errCode) {
@@ -469,8 +558,10 @@ public class ChromecastConnection {
                     }
                 }
                 
+                recordConnection(false);
                 if (callback.onSessionStartFailed(errCode)) {
                     getSessionManager().removeSessionManagerListener(this, CastSession.class);
+                    timer.failed("session_error");
                 }
             }
             @Override
@@ -480,6 +571,7 @@ public class ChromecastConnection {
                     castSession.getCastDevice().getFriendlyName() : "Unknown"));
                 if (callback.onSessionEndedBeforeStart(errCode)) {
                     getSessionManager().removeSessionManagerListener(this, CastSession.class);
+                    timer.failed("session_error");
                 }
             }
         };
@@ -487,6 +579,17 @@ public class ChromecastConnection {
         Log.d("ChromecastConnection", "Listening for connection with appId: " + appId);
     }
 
+    /**
+     * Records a connection attempt to the selected route in the known routes.  Must be called from the main thread.
+     * @param success whether the session started
+     */
+    private void recordConnection(boolean success) {
+        if (knownRoutes != null) {
+            RouteInfo route = getMediaRouter().getSelectedRoute();
+            knownRoutes.onConnectionResult(route != null ? route.getId() : null, success);
+        }
+    }
+
     /**
      * Starts listening for receiver updates.
      * Must call stopRouteScan(callback) or the battery will drain with non-stop active scanning.
@@ -501,6 +604,7 @@ public class ChromecastConnection {
         activity.runOnUiThread(new Runnable() {
             public void run() {
                 callback.setMediaRouter(getMediaRouter());
+                callback.setKnownRoutes(knownRoutes);
 
                 if (timeout != null && timeout == 0) {
                     // Send out the one time routes
@@ -539,6 +643,54 @@ public class ChromecastConnection {
         });
     }
 
+    /**
+     * Starts a scan that runs until stopRouteScan, alternating active bursts and passive
+     * discovery (see DiscoveryScheduler) instead of scanning actively all along.
+     * @param callback the callback to receive route updates on
+     * @param options the timings of the discovery
+     */
+    public void startScheduledRouteScan(final ScanCallback callback, final DiscoveryScheduler.Options options) {
+        activity.runOnUiThread(new Runnable() {
+            public void run() {
+                callback.setMediaRouter(getMediaRouter());
+                callback.setKnownRoutes(knownRoutes);
+                if (scheduler != null) {
+                    scheduler.stop();
+                }
+                scheduler = new DiscoveryScheduler(getMediaRouter(), new MediaRouteSelector.Builder()
+                        .addControlCategory(CastMediaControlIntent.categoryForCast(appId))
+                        .build(), callback, options);
+                callback.setScheduler(scheduler);
+                if (!foreground) {
+                    scheduler.onBackground();
+                }
+                scheduler.start();
+                // After the callback was added, see startRouteScan
+                callback.onFilteredRouteUpdate();
+            }
+        });
+    }
+
+    /**
+     * Tells the discovery of the running scan whether the app is visible.
+     * @param isForeground true when the app comes to the foreground, false when it leaves it
+     */
+    void setForeground(final boolean isForeground) {
+        activity.runOnUiThread(new Runnable() {
+            public void run() {
+                foreground = isForeground;
+                if (scheduler == null) {
+                    return;
+                }
+                if (isForeground) {
+                    scheduler.onForeground();
+                } else {
+                    scheduler.onBackground();
+                }
+            }
+        });
+    }
+
     /**
      * Call to stop the active scan if any exist.
      * @param callback the callback to stop and remove
@@ -552,6 +704,9 @@ public class ChromecastConnection {
         activity.runOnUiThread(new Runnable() {
             public void run() {
                 callback.stop();
+                if (scheduler != null && scheduler.getCallback() == callback) {
+                    scheduler = null;
+                }
                 getMediaRouter().removeCallback(callback);
                 if (completionCallback != null) {
                     completionCallback.run();
@@ -572,11 +727,18 @@ public class ChromecastConnection {
                     @Override
                     public void onSessionEnded(CastSession castSession, int error) {
                         getSessionManager().removeSessionManagerListener(this, CastSession.class);
+                        // Capture it before the session state is dropped so it keeps the last queue items
+                        media.createSessionObject(castSession, stopCasting ? "stopped" : "disconnected", new Function<JSONObject, Void>() {
+                            @Override
+                            public Void apply(JSONObject jsonSession) {
+                                listener.onSessionEnd(jsonSession);
+                                return null;
+                            }
+                        });
                         media.setSession(null);
                         if (pluginCall != null) {
                             pluginCall.resolve();
                         }
-                        listener.onSessionEnd(ChromecastUtilities.createSessionObject(castSession, stopCasting ? "stopped" : "disconnected"));
                     }
                 }, CastSession.class);
 
@@ -667,6 +829,12 @@ public class ChromecastConnection {
         private boolean stopped = false;
         /** Global mediaRouter object. */
         private MediaRouter mediaRouter;
+        /** Updated with each route update, may be null. */
+        private KnownRoutes knownRoutes;
+        /** Told when the route set changes, null if the scan is not scheduled. */
+        private DiscoveryScheduler scheduler;
+        /** Ids of the routes this callback reported in its last update. */
+        private Set<String> reportedIds = new HashSet<>();
 
         /**
          * Sets the mediaRouter object.
@@ -676,6 +844,22 @@ public class ChromecastConnection {
             this.mediaRouter = router;
         }
 
+        /**
+         * Sets where the routes found are remembered.
+         * @param routes the known routes, may be null
+         */
+        void setKnownRoutes(KnownRoutes routes) {
+            this.knownRoutes = routes;
+        }
+
+        /**
+         * Sets the scheduler of this scan.
+         * @param discoveryScheduler the scheduler, stopped along with the scan
+         */
+        void setScheduler(DiscoveryScheduler discoveryScheduler) {
+            this.scheduler = discoveryScheduler;
+        }
+
         /**
          * Call this method when you wish to stop scanning.
          * It is important that it is called, otherwise battery
@@ -683,6 +867,9 @@ public class ChromecastConnection {
          */
         void stop() {
             stopped = true;
+            if (scheduler != null) {
+                scheduler.stop();
+            }
         }
         private void onFilteredRouteUpdate() {
             if (stopped || mediaRouter == null) {
@@ -693,37 +880,56 @@ public class ChromecastConnection {
             for (RouteInfo route : mediaRouter.getRoutes()) {
                 // We don't want default routes, or duplicate active routes
                 // or multizone duplicates https://github.com/jellyfin/cordova-plugin-chromecast/issues/32
-                Bundle extras = route.getExtras();
-                if (extras != null) {
-                    CastDevice.getFromBundle(extras);
-                    if (extras.getString("com.google.android.gms.cast.EXTRA_SESSION_ID") != null) {
-                        continue;
-                    }
-                }
-                if (!route.isDefault()
-                        && !route.getDescription().equals("Google Cast Multizone Member")
-                        && route.getPlaybackType() == RouteInfo.PLAYBACK_TYPE_REMOTE
-                ) {
+                // The verdicts are cached per route, only changed routes are looked at again
+                if (RouteFilter.accepts(route)) {
                     outRoutes.add(route);
                 }
             }
+            if (knownRoutes != null) {
+                knownRoutes.onRoutesSeen(outRoutes);
+            }
+            Set<String> ids = new HashSet<>();
+            for (RouteInfo route : outRoutes) {
+                ids.add(route.getId());
+            }
+            if (!ids.equals(reportedIds)) {
+                reportedIds = ids;
+                if (scheduler != null) {
+                    scheduler.onRouteSetChanged();
+                }
+            }
             onRouteUpdate(outRoutes);
         }
         @Override
         public final void onRouteAdded(MediaRouter router, RouteInfo route) {
-            onFilteredRouteUpdate();
+            onRouteEvent(route, false);
         }
         @Override
         public final void onRouteChanged(MediaRouter router, RouteInfo route) {
-            onFilteredRouteUpdate();
+            onRouteEvent(route, false);
         }
         @Override
         public final void onRouteRemoved(MediaRouter router, RouteInfo route) {
+            onRouteEvent(route, true);
+        }
+
+        /**
+         * Sends the route list again unless the route was not in this callback's last update
+         * and still is not.  Decided per callback: another scan may have already cached the
+         * route's new verdict.
+         */
+        private void onRouteEvent(RouteInfo route, boolean removed) {
+            RouteFilter.invalidate(route.getId());
+            if (!reportedIds.contains(route.getId()) && (removed || !RouteFilter.accepts(route))) {
+                // Was not reported and still is not
+                RouteFilter.countSkippedUpdate();
+                return;
+            }
             onFilteredRouteUpdate();
         }
     }
 
-    abstract static class Listener implements SessionManagerListener, CastStateListener, ChromecastSession.Listener {
+    abstract static class Listener implements SessionManagerListener, CastStateListener, ChromecastSession.Listener, JoinTimer.Sink {
         abstract void onReceiverAvailableUpdate(boolean available);
         abstract void onSessionRejoin(JSONObject jsonSession);
 
@@ -1,7 +1,18 @@
 package com.caprockapps.plugins.chromecast;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 import org.json.JSONArray;
@@ -13,6 +24,7 @@ import com.getcapacitor.JSObject;
 import com.getcapacitor.PluginCall;
 import com.google.android.gms.cast.ApplicationMetadata;
 import com.google.android.gms.cast.Cast;
+import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaLoadRequestData;
 import com.google.android.gms.cast.MediaQueueItem;
@@ -23,12 +35,17 @@ import com.google.android.gms.cast.framework.SessionManagerListener;
 import com.google.android.gms.cast.framework.media.MediaQueue;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient;
 import com.google.android.gms.cast.framework.media.RemoteMediaClient.MediaChannelResult;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.common.api.Status;
 
 import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.arch.core.util.Function;
 
 /*
  * All of the Chromecast session specific functions should start here.
@@ -39,27 +56,171 @@ public class ChromecastSession {
     private Activity activity;
     /** A registered callback that we will un-register and re-register each time the session changes. */
     private Listener clientListener;
-    /** The current session. */
-    private CastSession session;
+    /** The current session, written on the main thread and read from the bridge thread. */
+    private volatile CastSession session;
+    /** The media state owned by the current session, read from any thread. **/
+    private volatile SessionState state = new SessionState(null);
     /** The current session's client for controlling playback. */
-    private RemoteMediaClient client;
+    private volatile RemoteMediaClient client;
     /** Indicates whether we are requesting media or not. **/
     private boolean requestingMedia = false;
+    /** Id of the newest loadMedia call, incremented on the calling thread. **/
+    private final AtomicInteger latestLoadId = new AtomicInteger();
+    /** The load sent to the receiver and not settled yet, null if none. **/
+    private LoadRequest currentLoad;
+    /** Load counters. **/
+    private final AtomicLong loadsRequested = new AtomicLong();
+    private final AtomicLong loadsSent = new AtomicLong();
+    /** Superseded before being sent. **/
+    private final AtomicLong loadsSkipped = new AtomicLong();
+    /** Superseded once sent. **/
+    private final AtomicLong loadsInterrupted = new AtomicLong();
     /** Handles and used to trigger queue updates. **/
     private MediaQueueController mediaQueueCallback;
     /** Stores a callback that should be called when the queue is loaded. **/
     private Runnable queueReloadCallback;
     /** Stores a callback that should be called when the queue status is updated. **/
     private Runnable queueStatusUpdatedCallback;
+    /** Estimates the playback position between status updates. **/
+    private final PositionEstimator positionEstimator = new PositionEstimator();
+    /** Interval between MEDIA_PROGRESS updates in ms, 0 when disabled. **/
+    private long progressInterval = 0;
+    /** Registered on the client when the progress updates are driven by the Cast SDK. **/
+    private RemoteMediaClient.ProgressListener progressListener;
+    /** Runs the progress updates when they are driven by the estimator. **/
+    private final Handler progressHandler = new Handler(Looper.getMainLooper());
+    /** Last position sent in MEDIA_PROGRESS. **/
+    private long lastProgressPosition = -1;
+    /** Number of queue items before the current item included in media objects. **/
+    private int queueWindowBefore = 1;
+    /** Number of queue items after the current item included in media objects. **/
+    private int queueWindowAfter = 1;
+    /** How long a getQueueItems request waits for the items to be fetched. **/
+    private static final long QUEUE_PAGE_TIMEOUT = 10000;
+    /**
+     * Most JSON bytes of items per queue request, the request must fit in a Cast message with
+     * its other fields.
+     **/
+    private static final int QUEUE_CHUNK_MAX_BYTES = 40000;
+    /** Most items returned by a getQueueItems request. **/
+    static final int MAX_QUEUE_PAGE = 100;
+    /**
+     * Most items a getQueueItems request fetches at once, the MediaQueue cache (20 items) is
+     * shared with the queue window and must keep them until they are collected.
+     **/
+    private static final int QUEUE_PAGE_FETCH = 10;
+    /** Builds the media and session objects and calls the listener off the main thread. **/
+    private final EventSerializer serializer;
+    /** Runs the Cast SDK calls on the main thread, batched, and drops those meant for a previous session. **/
+    private final CastCommandExecutor executor = new CastCommandExecutor();
+    /** Main thread time spent in the Cast SDK callbacks. **/
+    private final CallbackTimer callbackTimer = new CallbackTimer();
+    /** Namespaces routed to the message dispatcher in the current session. **/
+    private final Set<String> messageNamespaces = new HashSet<>();
+    /** Of those, the ones also used by addMessageListener, RPC calls or chunked transfers. **/
+    private final Set<String> sharedNamespaces = new HashSet<>();
+    /** Namespaces registered again on every new session (see MessageRouter). **/
+    private final Set<String> subscribedNamespaces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** Sends the messages on the current session. **/
+    private final MessageTransport messageTransport = new MessageTransport() {
+        @Override
+        public boolean send(final String namespace, final String message, final ResultCallback<Status> callback) {
+            if (session == null) {
+                return false;
+            }
+            executor.executeForSession(new CastCommandExecutor.SessionTask() {
+                public void run() {
+                    if (session == null) {
+                        callback.onResult(new Status(CommonStatusCodes.ERROR));
+                        return;
+                    }
+                    session.sendMessage(namespace, message).setResultCallback(callback);
+                }
+
+                @Override
+                void stale() {
+                    callback.onResult(new Status(CommonStatusCodes.ERROR));
+                }
+            });
+            return true;
+        }
+    };
+    /** Batches the messages of the namespaces configured with setMessageBatching. **/
+    private final Map<String, MessageBatcher> batchers = new ConcurrentHashMap<>();
+    /** Request/response calls over custom namespaces. **/
+    private final RpcClient rpc = new RpcClient(new MessageTransport() {
+        @Override
+        public boolean send(final String namespace, final String message, final ResultCallback<Status> callback) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    // The answer comes back through the message dispatcher
+                    registerNamespace(namespace, true);
+                }
+            });
+            return sendMessage(namespace, message, callback);
+        }
+    });
+    /** Payloads larger than a Cast message, both ways. **/
+    private final ChunkedTransfer chunks;
+    /** Orders the media commands of the current session. **/
+    private MediaCommandPipeline commands;
+    /** Coalesces the volume changes of the current session. **/
+    private VolumeController volume;
+    /** Whether a seek request is waiting for the receiver. **/
+    private boolean seekInFlight = false;
+    /** The newest seek target, sent or pending. **/
+    private long seekTarget;
+    /** The newest seek target received while a seek was in flight. **/
+    private long pendingSeekPosition;
+    /** The call waiting for pendingSeekPosition, null if none. **/
+    private PluginCall pendingSeekCall;
+    /** Position set by seekPreview and not committed yet, -1 if none. **/
+    private long previewPosition = -1;
+    /** Incremented on session change so results of the previous session don't send pending seeks. **/
+    private int seekGeneration = 0;
 
     /**
      * ChromecastSession constructor.
      * @param act the current activity
      * @param listener callback that will notify of certain events
+     * @param eventSerializer where the listener is called from
      */
-    public ChromecastSession(Activity act, @NonNull Listener listener) {
+    public ChromecastSession(Activity act, @NonNull Listener listener, @NonNull EventSerializer eventSerializer) {
         this.activity = act;
         this.clientListener = listener;
+        this.serializer = eventSerializer;
+        this.chunks = new ChunkedTransfer(new MessageTransport() {
+            @Override
+            public boolean send(final String namespace, final String message, final ResultCallback<Status> callback) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        // The acks come back through the message dispatcher
+                        registerNamespace(namespace, true);
+                    }
+                });
+                // Chunks are already as large as a frame, they skip the batcher
+                return messageTransport.send(namespace, message, callback);
+            }
+        }, eventSerializer.getLooper(), new Cast.MessageReceivedCallback() {
+            @Override
+            public void onMessageReceived(CastDevice device, String namespace, String message) {
+                clientListener.onMessageReceived(device, namespace, message);
+            }
+        });
+    }
+
+    /**
+     * @return the main thread time spent in the Cast SDK callbacks
+     */
+    CallbackTimer getCallbackTimer() {
+        return callbackTimer;
+    }
+
+    /**
+     * @return the executor the Cast SDK calls are made from
+     */
+    CastCommandExecutor getExecutor() {
+        return executor;
     }
 
     /**
@@ -67,27 +228,53 @@ public class ChromecastSession {
      * @param castSession the session to use
      */
     public void setSession(final CastSession castSession) {
-        activity.runOnUiThread(new Runnable() {
+        executor.execute(new Runnable() {
             public void run() {
                 if (castSession == null) {
+                    executor.invalidate();
+                    detachProgressListener();
+                    resetSeek();
+                    resetSessionRequests();
+                    session = null;
                     client = null;
+                    state = new SessionState(null);
+                    positionEstimator.reset();
+                    ChromecastUtilities.clearJsonCaches();
                     return;
                 }
                 if (castSession.equals(session)) {
                     // Don't client and listeners if session did not change
                     return;
                 }
+                executor.invalidate();
+                detachProgressListener();
+                resetSeek();
+                resetSessionRequests();
+                positionEstimator.reset();
+                ChromecastUtilities.clearJsonCaches();
                 session = castSession;
+                state = new SessionState(castSession);
+                volume = new VolumeController(castSession);
+                for (String namespace : subscribedNamespaces) {
+                    registerNamespace(namespace, false);
+                }
                 client = session.getRemoteMediaClient();
                 if (client == null) {
                     return;
                 }
+                commands = new MediaCommandPipeline(client);
                 setupQueue();
+                attachProgressListener();
                 client.registerCallback(new RemoteMediaClient.Callback() {
-                    private Integer prevItemId;
                     @Override
                     public void onStatusUpdated() {
+                        long start = CallbackTimer.start();
+                        statusUpdated();
+                        callbackTimer.record("onStatusUpdated", start);
+                    }
+                    private void statusUpdated() {
                         final MediaStatus status = client.getMediaStatus();
+                        updatePositionEstimator(status);
                         if (requestingMedia
                                 || queueStatusUpdatedCallback != null
                                 || queueReloadCallback != null) {
@@ -95,22 +282,25 @@ public class ChromecastSession {
                         }
 
                         if (status != null) {
+                            final SessionState current = state;
+                            Integer prevItemId = current.getSnapshot().currentItemId;
                             if (prevItemId == null) {
                                 prevItemId = status.getCurrentItemId();
+                                current.setCurrentItemId(prevItemId);
                             }
                             boolean shouldSkipUpdate = false;
                             if (status.getPlayerState() == MediaStatus.PLAYER_STATE_LOADING) {
                                 // It appears the queue has advanced to the next item
                                 // So send an update to indicate the previous has finished
-                                clientListener.onMediaUpdate(createMediaObject(MediaStatus.IDLE_REASON_FINISHED));
+                                sendMediaUpdate(MediaStatus.IDLE_REASON_FINISHED);
                                 shouldSkipUpdate = true;
                             }
-                            if (prevItemId != null && prevItemId != status.getCurrentItemId() && mediaQueueCallback.getCurrentItemIndex() != -1) {
+                            if (prevItemId != status.getCurrentItemId() && mediaQueueCallback.getCurrentItemIndex() != -1) {
                                 // The currentItem has changed, so update the current queue items
                                 setQueueReloadCallback(new Runnable() {
                                     @Override
                                     public void run() {
-                                        prevItemId = status.getCurrentItemId();
+                                        current.setCurrentItemId(status.getCurrentItemId());
                                     }
                                 });
                                 mediaQueueCallback.refreshQueueItems();
@@ -121,173 +311,667 @@ public class ChromecastSession {
                             }
                         }
                         // Send update
-                        clientListener.onMediaUpdate(createMediaObject());
+                        sendMediaUpdate(null);
                     }
                     @Override
                     public void onQueueStatusUpdated() {
+                        long start = CallbackTimer.start();
                         if (queueStatusUpdatedCallback != null) {
                             queueStatusUpdatedCallback.run();
                             setQueueStatusUpdatedCallback(null);
                         }
+                        callbackTimer.record("onQueueStatusUpdated", start);
                     }
                 });
                 session.addCastListener(new Cast.Listener() {
                     @Override
                     public void onApplicationStatusChanged() {
-                        clientListener.onSessionUpdate(createSessionObject());
+                        long start = CallbackTimer.start();
+                        sendSessionUpdate(null);
+                        callbackTimer.record("onApplicationStatusChanged", start);
                     }
                     @Override
                     public void onApplicationMetadataChanged(ApplicationMetadata appMetadata) {
-                        clientListener.onSessionUpdate(createSessionObject());
+                        long start = CallbackTimer.start();
+                        sendSessionUpdate(null);
+                        callbackTimer.record("onApplicationMetadataChanged", start);
                     }
                     @Override
                     public void onApplicationDisconnected(int i) {
-                        clientListener.onSessionEnd(
-                                ChromecastUtilities.createSessionObject(session, "stopped"));
+                        long start = CallbackTimer.start();
+                        sendSessionUpdate("stopped");
+                        callbackTimer.record("onApplicationDisconnected", start);
                     }
                     @Override
                     public void onActiveInputStateChanged(int i) {
-                        clientListener.onSessionUpdate(createSessionObject());
+                        long start = CallbackTimer.start();
+                        sendSessionUpdate(null);
+                        callbackTimer.record("onActiveInputStateChanged", start);
                     }
                     @Override
                     public void onStandbyStateChanged(int i) {
-                        clientListener.onSessionUpdate(createSessionObject());
+                        long start = CallbackTimer.start();
+                        sendSessionUpdate(null);
+                        callbackTimer.record("onStandbyStateChanged", start);
                     }
                     @Override
                     public void onVolumeChanged() {
-                        clientListener.onSessionUpdate(createSessionObject());
+                        long start = CallbackTimer.start();
+                        // Our own changes are reported once they are all acknowledged
+                        if (volume == null || volume.onVolumeChanged()) {
+                            sendSessionUpdate(null);
+                        }
+                        callbackTimer.record("onVolumeChanged", start);
                     }
                 });
             }
         });
     }
-    public void pause() {
-        if (client == null || session == null) {
-            //callback.error("session_error");
-            return;
-        }
-        activity.runOnUiThread(new Runnable() {
+/* ------------------------------------   COMMAND FNs   ----------------------------------------- */
+
+    /**
+     * Pauses playback.
+     * @param callback resolved once the receiver acknowledged it, see MediaCommandPipeline
+     */
+    public void pause(final PluginCall callback) {
+        enqueueCommand(new MediaCommandPipeline.Command("pause", callback) {
+            @Override
+            PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+                return client.pause();
+            }
+            @Override
+            Boolean playingAfter() {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Resumes playback.
+     * @param callback resolved once the receiver acknowledged it, see MediaCommandPipeline
+     */
+    public void play(final PluginCall callback) {
+        enqueueCommand(new MediaCommandPipeline.Command("play", callback) {
+            @Override
+            PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+                return client.play();
+            }
+            @Override
+            Boolean playingAfter() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Jumps to the next queue item.
+     * @param callback resolved once the receiver acknowledged it, see MediaCommandPipeline
+     */
+    public void next(final PluginCall callback) {
+        enqueueCommand(new MediaCommandPipeline.Command("next", callback) {
+            @Override
+            PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+                return client.queueNext(null);
+            }
+        });
+    }
+
+    /**
+     * Jumps to the previous queue item.
+     * @param callback resolved once the receiver acknowledged it, see MediaCommandPipeline
+     */
+    public void prev(final PluginCall callback) {
+        enqueueCommand(new MediaCommandPipeline.Command("prev", callback) {
+            @Override
+            PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+                return client.queuePrev(null);
+            }
+        });
+    }
+
+    private void enqueueCommand(final MediaCommandPipeline.Command command) {
+        executor.executeForSession(new CastCommandExecutor.SessionTask() {
             public void run() {
-                try {
-                    client.pause();
-                } catch (Exception e) {
-                    Log.e(TAG, "Seek error: " + e.getMessage(), e);
-                }    
+                if (commands == null) {
+                    command.fail("session_error", "session_error");
+                    return;
+                }
+                commands.enqueue(command);
+            }
 
+            @Override
+            void stale() {
+                command.fail("session_error", "session_error");
             }
         });
     }
-    
-    public void play() {
-        if (client == null || session == null) {
-            //callback.error("session_error");
-            return;
-        }
-        activity.runOnUiThread(new Runnable() {
+
+/* ------------------------------------   VOLUME FNs   ------------------------------------------ */
+
+    /**
+     * Sets the device volume.  While a change is in flight only the newest level is kept, it is
+     * sent once the current one is acknowledged and the calls it replaced resolve with superseded: true.
+     * @param level the level between 0 and 1
+     * @param callback resolved with {level, muted, superseded, latencyMs}
+     */
+    public void setVolume(final double level, final PluginCall callback) {
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            @Override
             public void run() {
-                try {
-                    client.play();
-                } catch (Exception e) {
-                    Log.e(TAG, "Seek error: " + e.getMessage(), e);
-                }    
+                if (volume == null) {
+                    callback.reject("session_error");
+                    return;
+                }
+                volume.setLevel(level, callback);
+            }
+        });
+    }
 
+    /**
+     * Mutes or unmutes the device, coalesced like setVolume.
+     * @param muted the mute state
+     * @param callback resolved with {level, muted, superseded, latencyMs}
+     */
+    public void setMute(final boolean muted, final PluginCall callback) {
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            @Override
+            public void run() {
+                if (volume == null) {
+                    callback.reject("session_error");
+                    return;
+                }
+                volume.setMuted(muted, callback);
             }
         });
     }
-    
-    public void next() {
-        if (client == null || session == null) {
-            //callback.error("session_error");
-            return;
-        }
-        activity.runOnUiThread(new Runnable() {
+
+    /**
+     * Moves the device volume to a level progressively.  Any other volume change stops it.
+     * @param target the final level between 0 and 1
+     * @param durationMs the ramp duration
+     * @param callback resolved with {level, muted, superseded, latencyMs} once the final level was
+     *                 acknowledged, or with cancelled: true if the ramp was stopped
+     */
+    public void rampVolume(final double target, final long durationMs, final PluginCall callback) {
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            @Override
             public void run() {
-                try {
-                    client.queueNext(null);
-                } catch (Exception e) {
-                    Log.e(TAG, "Seek error: " + e.getMessage(), e);
-                }    
+                if (volume == null) {
+                    callback.reject("session_error");
+                    return;
+                }
+                volume.ramp(target, durationMs, callback);
+            }
+        });
+    }
+
+/* ------------------------------------   SEEK FNs   -------------------------------------------- */
+
+    /**
+     * Seeks to a position.  While a seek is in flight only the newest target is kept, it is sent
+     * when the current one completes and the calls it replaced resolve with superseded: true.
+     * @param positionMs the target position
+     * @param callback resolved with {position, superseded} once the receiver replied
+     */
+    public void seek(final long positionMs, final PluginCall callback) {
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            @Override
+            public void run() {
+                if (commands == null) {
+                    Log.e(TAG, "Seek failed: no client or session");
+                    callback.reject("session_error");
+                    return;
+                }
+                previewPosition = -1;
+                if (seekInFlight) {
+                    if (pendingSeekCall != null) {
+                        resolveSeek(pendingSeekCall, pendingSeekPosition, true);
+                    }
+                    pendingSeekPosition = positionMs;
+                    pendingSeekCall = callback;
+                    seekTarget = positionMs;
+                    positionEstimator.setPosition(positionMs);
+                    return;
+                }
+                sendSeek(positionMs, callback);
+            }
+        });
+    }
+
+    /**
+     * Moves the estimated position without contacting the receiver, eg. while scrubbing.
+     * The position is sent by the next commitSeek (or seek).
+     * @param positionMs the previewed position
+     */
+    public void seekPreview(final long positionMs) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                previewPosition = positionMs;
+                positionEstimator.setPosition(positionMs);
+                if (progressInterval > 0) {
+                    sendProgress();
+                }
+            }
+        });
+    }
+
+    /**
+     * Seeks to the last previewed position.
+     * @param callback resolved as in seek, rejected with "no_preview" if nothing was previewed
+     */
+    public void commitSeek(final PluginCall callback) {
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            @Override
+            public void run() {
+                if (previewPosition < 0) {
+                    callback.reject("no_preview");
+                    return;
+                }
+                seek(previewPosition, callback);
+            }
+        });
+    }
 
+    /**
+     * Sends a seek request.  Must be called from the main thread.
+     */
+    private void sendSeek(final long positionMs, final PluginCall callback) {
+        final int generation = seekGeneration;
+        seekInFlight = true;
+        seekTarget = positionMs;
+        positionEstimator.setPosition(positionMs);
+        final MediaSeekOptions options = new MediaSeekOptions.Builder()
+                .setPosition(positionMs)
+                .setResumeState(MediaSeekOptions.RESUME_STATE_UNCHANGED)
+                .build();
+        commands.enqueue(new MediaCommandPipeline.Command("seek", callback) {
+            @Override
+            PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+                return client.seek(options);
+            }
+            @Override
+            void complete(JSObject result) {
+                result.put("position", positionMs);
+                result.put("superseded", false);
+                super.complete(result);
+                seekDone(generation);
+            }
+            @Override
+            void fail(String message, String code) {
+                super.fail(message, code);
+                seekDone(generation);
             }
         });
     }
-    public void prev() {
+
+    /**
+     * Sends the pending seek once the previous one completed.  Must be called from the main thread.
+     */
+    private void seekDone(int generation) {
+        if (generation != seekGeneration) {
+            // The session changed, the pending seek was already dropped
+            return;
+        }
+        seekInFlight = false;
+        if (pendingSeekCall != null) {
+            PluginCall next = pendingSeekCall;
+            pendingSeekCall = null;
+            sendSeek(pendingSeekPosition, next);
+        }
+    }
+
+    private void resolveSeek(PluginCall callback, long positionMs, boolean superseded) {
+        JSObject out = new JSObject();
+        out.put("position", positionMs);
+        out.put("superseded", superseded);
+        callback.resolve(out);
+    }
+
+    /**
+     * Fails the load, commands, volume changes, RPC calls, chunked transfers and batched messages of the previous session.  Must be called from the main thread.
+     */
+    private void resetSessionRequests() {
+        if (currentLoad != null) {
+            currentLoad.call.reject("session_error");
+            currentLoad = null;
+        }
+        requestingMedia = false;
+        if (volume != null) {
+            volume.cancel();
+            volume = null;
+        }
+        if (commands != null) {
+            commands.cancel();
+            commands = null;
+        }
+        messageNamespaces.clear();
+        sharedNamespaces.clear();
+        rpc.cancelAll("session_error");
+        chunks.cancelAll("session_error");
+        for (MessageBatcher batcher : batchers.values()) {
+            batcher.discard();
+        }
+    }
+
+    /**
+     * Drops the seek state of the previous session.  Must be called from the main thread.
+     */
+    private void resetSeek() {
+        seekGeneration++;
+        seekInFlight = false;
+        previewPosition = -1;
+        if (pendingSeekCall != null) {
+            pendingSeekCall.reject("session_error");
+            pendingSeekCall = null;
+        }
+    }
+
+    /**
+     * Adds a message listener if one does not already exist.
+     * @param namespace namespace
+     */
+    public void addMessageListener(final String namespace) {
         if (client == null || session == null) {
-            //callback.error("session_error");
             return;
         }
-        activity.runOnUiThread(new Runnable() {
+        executor.execute(new Runnable() {
             public void run() {
-                try {
-                    client.queuePrev(null);
-                } catch (Exception e) {
-                    Log.e(TAG, "Seek error: " + e.getMessage(), e);
-                }    
+                registerNamespace(namespace, true);
+            }
+        });
+    }
 
+    /**
+     * Listens to a namespace in this session and the next ones.
+     * @param namespace namespace
+     */
+    public void subscribeNamespace(final String namespace) {
+        subscribedNamespaces.add(namespace);
+        executor.execute(new Runnable() {
+            public void run() {
+                registerNamespace(namespace, false);
             }
         });
     }
 
-    public void seek(long positionMs) {
-        if (client == null || session == null) {
-            Log.e(TAG, "Seek failed: no client or session");
+    /**
+     * Stops listening to a namespace subscribed with subscribeNamespace.  The namespace stays
+     * registered if addMessageListener, an RPC call or a chunked transfer also uses it, its
+     * messages are then raised as RECEIVER_MESSAGE again.
+     * @param namespace namespace
+     */
+    public void unsubscribeNamespace(final String namespace) {
+        if (!subscribedNamespaces.remove(namespace)) {
             return;
         }
-    
-        activity.runOnUiThread(new Runnable() {
-            @Override
+        executor.execute(new Runnable() {
             public void run() {
+                if (session == null || sharedNamespaces.contains(namespace)
+                        || !messageNamespaces.remove(namespace)) {
+                    return;
+                }
                 try {
-                    Log.d(TAG, "Seek position LOG: " + positionMs);
-                    MediaSeekOptions options = new MediaSeekOptions.Builder()
-                            .setPosition(positionMs) 
-                            .setResumeState(MediaSeekOptions.RESUME_STATE_UNCHANGED)
-                            .build();
-    
-                    client.seek(options);
-    
-                } catch (Exception e) {
-                    Log.e(TAG, "Seek error: " + e.getMessage(), e);
+                    session.removeMessageReceivedCallbacks(namespace);
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
             }
         });
     }
 
+    /**
+     * Routes the messages of a namespace to the message dispatcher, once per session.
+     * Must be called from the main thread.
+     * @param namespace namespace
+     * @param shared true unless registered for subscribeNamespace only
+     */
+    private void registerNamespace(String namespace, boolean shared) {
+        if (session == null) {
+            return;
+        }
+        if (shared) {
+            sharedNamespaces.add(namespace);
+        }
+        if (messageNamespaces.contains(namespace)) {
+            return;
+        }
+        try {
+            session.setMessageReceivedCallbacks(namespace, messageDispatcher);
+            messageNamespaces.add(namespace);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
     /**
-     * Adds a message listener if one does not already exist.
+     * Sends a message to a specified namespace.
      * @param namespace namespace
+     * @param message the message to send
+     * @param callback called with success or error
+     * @return false if there is no session, the callback is not called then
      */
-    public void addMessageListener(final String namespace) {
+    public boolean sendMessage(final String namespace, final String message, final ResultCallback<Status> callback) {
+        if (client == null || session == null) {
+            return false;
+        }
+        MessageBatcher batcher = batchers.get(namespace);
+        if (batcher != null) {
+            batcher.add(message, callback);
+            return true;
+        }
+        return messageTransport.send(namespace, message, callback);
+    }
+
+    /**
+     * Batches the messages sent on a namespace, see MessageBatcher.
+     * @param namespace the namespace
+     * @param enabled false to send them one by one again, what is pending is flushed
+     * @param flushIntervalMs how long a message can wait for others
+     * @param maxBatchBytes flush once the batch reaches this many UTF-8 bytes
+     * @param maxBatchCount flush once the batch has this many messages
+     * @param compressThreshold deflate the envelopes of at least this many bytes, 0 to never deflate
+     */
+    public void setMessageBatching(String namespace, boolean enabled, long flushIntervalMs,
+                                   int maxBatchBytes, int maxBatchCount, int compressThreshold) {
+        MessageBatcher previous = enabled
+                ? batchers.put(namespace, new MessageBatcher(namespace, messageTransport, serializer.getLooper(),
+                        flushIntervalMs, maxBatchBytes, maxBatchCount, compressThreshold))
+                : batchers.remove(namespace);
+        if (previous != null) {
+            previous.flushNow();
+        }
+    }
+
+    /**
+     * @return {namespace: {messages, frames, compressedFrames, payloadBytes, wireBytes}}
+     */
+    public JSONObject getMessageBatchStats() {
+        JSONObject out = new JSObject();
+        try {
+            for (Map.Entry<String, MessageBatcher> entry : batchers.entrySet()) {
+                out.put(entry.getKey(), entry.getValue().getStats());
+            }
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+
+    /**
+     * Compares sending messages one by one and batched, see MessageBenchmark.
+     */
+    public void runMessageBenchmark(String namespace, int count, int payloadBytes, long flushIntervalMs,
+                                    int maxBatchBytes, int maxBatchCount, int compressThreshold, PluginCall callback) {
         if (client == null || session == null) {
+            callback.reject("session_error");
             return;
         }
-        activity.runOnUiThread(new Runnable() {
+        new MessageBenchmark(messageTransport, serializer.getLooper(), namespace, count, payloadBytes,
+                flushIntervalMs, maxBatchBytes, maxBatchCount, compressThreshold, callback).run();
+    }
+
+    /**
+     * Sends a payload of any size in chunks, see ChunkedTransfer.
+     * @param namespace the namespace
+     * @param message the payload
+     * @param window how many chunks can be unacknowledged
+     * @param chunkSize chunk size in chars
+     * @param timeoutMs time to wait for each ack
+     * @param callback resolved with {id, chunks, bytes, durationMs, bytesPerSec}
+     */
+    public void sendLargeMessage(String namespace, String message, int window, int chunkSize, long timeoutMs, PluginCall callback) {
+        if (client == null || session == null) {
+            callback.reject("session_error");
+            return;
+        }
+        chunks.send(namespace, message, window, chunkSize, timeoutMs, callback);
+    }
+
+/* ------------------------------------   RPC FNs   --------------------------------------------- */
+
+    /**
+     * Calls a method on the receiver and waits for the matching answer, see RpcClient.
+     * @param namespace the namespace the receiver answers on
+     * @param method the method name
+     * @param params the params, may be null
+     * @param timeoutMs time to wait for the answer
+     * @param callback resolved with {result, latencyMs}
+     */
+    public void rpcCall(String namespace, String method, Object params, long timeoutMs, PluginCall callback) {
+        rpc.call(namespace, method, params, timeoutMs, callback);
+    }
+
+    /**
+     * @return the RPC latency histograms per namespace and method
+     */
+    public JSONObject getRpcStats(boolean reset) {
+        JSONObject out = rpc.getStats();
+        if (reset) {
+            rpc.resetStats();
+        }
+        return out;
+    }
+
+/* ------------------------------------   PROGRESS FNs   ---------------------------------------- */
+
+    /**
+     * Starts or stops the MEDIA_PROGRESS updates.
+     * @param intervalMs interval between updates, 0 to stop them
+     * @param useProgressListener if true the updates are driven by the Cast SDK's progress
+     *                            listener, otherwise they are extrapolated locally
+     */
+    public void setProgressUpdates(final long intervalMs, final boolean useProgressListener) {
+        executor.execute(new Runnable() {
             public void run() {
-                try {
-                    session.setMessageReceivedCallbacks(namespace, clientListener);
-                } catch (IOException e) {
-                    e.printStackTrace();
+                detachProgressListener();
+                progressListener = null;
+                progressInterval = Math.max(0, intervalMs);
+                if (progressInterval == 0) {
+                    return;
                 }
+                if (useProgressListener) {
+                    progressListener = new RemoteMediaClient.ProgressListener() {
+                        @Override
+                        public void onProgressUpdated(long progressMs, long durationMs) {
+                            long start = CallbackTimer.start();
+                            positionEstimator.setPosition(progressMs);
+                            sendProgress();
+                            callbackTimer.record("onProgressUpdated", start);
+                        }
+                    };
+                }
+                attachProgressListener();
+            }
+        });
+    }
+
+    /**
+     * @return the estimated playback position, see PositionEstimator.toJSON
+     */
+    public JSONObject getEstimatedPosition() {
+        return positionEstimator.toJSON();
+    }
+
+    /**
+     * Seeds the estimator from a status.  Only reads the cheap fields.
+     * @param status the latest media status, may be null
+     */
+    private void updatePositionEstimator(MediaStatus status) {
+        if (status == null) {
+            return;
+        }
+        MediaInfo info = status.getMediaInfo();
+        positionEstimator.update(
+                status.getStreamPosition(),
+                info != null ? info.getStreamDuration() : 0,
+                status.getPlaybackRate(),
+                status.getPlayerState());
+        if (previewPosition >= 0) {
+            // Keep the previewed position until it is committed
+            positionEstimator.setPosition(previewPosition);
+        } else if (seekInFlight) {
+            // The status may still report the position from before the seek
+            positionEstimator.setPosition(seekTarget);
+        }
+        if (progressInterval > 0) {
+            // Send out the change straight away (eg. paused, seeked)
+            sendProgress();
+        }
+    }
+
+    /** Periodically sends the estimated position. */
+    private final Runnable progressTick = new Runnable() {
+        @Override
+        public void run() {
+            sendProgress();
+            progressHandler.postDelayed(this, progressInterval);
+        }
+    };
+
+    /**
+     * Starts the progress updates on the current client.  Must be called from the main thread.
+     */
+    private void attachProgressListener() {
+        if (progressInterval == 0) {
+            return;
+        }
+        if (progressListener != null) {
+            if (client != null) {
+                client.addProgressListener(progressListener, progressInterval);
             }
-        });
+        } else {
+            progressHandler.removeCallbacks(progressTick);
+            progressHandler.postDelayed(progressTick, progressInterval);
+        }
     }
 
     /**
-     * Sends a message to a specified namespace.
-     * @param namespace namespace
-     * @param message the message to send
-     * @param callback called with success or error
+     * Stops the progress updates on the current client.  Must be called from the main thread.
      */
-    public void sendMessage(final String namespace, final String message, final ResultCallback<Status> callback) {
-        if (client == null || session == null) {
-            //callback.error("session_error");
+    private void detachProgressListener() {
+        progressHandler.removeCallbacks(progressTick);
+        if (progressListener != null && client != null) {
+            client.removeProgressListener(progressListener);
+        }
+    }
+
+    /**
+     * Sends a MEDIA_PROGRESS update if the position changed since the last one.
+     */
+    private void sendProgress() {
+        if (client == null) {
+            return;
+        }
+        long position = positionEstimator.getPosition();
+        if (position == lastProgressPosition) {
             return;
         }
-        activity.runOnUiThread(new Runnable() {
+        lastProgressPosition = position;
+        final JSONObject progress = positionEstimator.toJSON();
+        serializer.execute(new Runnable() {
+            @Override
             public void run() {
-                session.sendMessage(namespace, message).setResultCallback(callback);
-
+                clientListener.onMediaProgress(progress);
             }
         });
     }
@@ -305,15 +989,32 @@ public class ChromecastSession {
      * @param currentTime    - Where in the video to begin playing from
      * @param metadata       - Metadata
      * @param textTrackStyle - The text track style
-     * @param callback called with success or error
+     * @param callback resolved with the media object and its loadId once loaded, or with
+     *                 {loadId, superseded: true, supersededBy, sent} if another load came first
      */
     public void loadMedia(final String contentId, final JSONObject customData, final String contentType, final long duration, final String streamType, final boolean autoPlay, final double currentTime, final JSONObject metadata, final JSONObject textTrackStyle, final PluginCall callback) {
         if (client == null || session == null) {
             callback.reject("session_error");
             return;
         }
-        activity.runOnUiThread(new Runnable() {
+        final LoadRequest request = new LoadRequest(latestLoadId.incrementAndGet(), callback);
+        loadsRequested.incrementAndGet();
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
             public void run() {
+                int latest = latestLoadId.get();
+                if (request.id != latest) {
+                    // A newer load is already queued, the receiver never sees this one
+                    loadsSkipped.incrementAndGet();
+                    request.supersede(latest, false);
+                    return;
+                }
+                if (currentLoad != null) {
+                    // Sending the new load interrupts the one the receiver is working on
+                    loadsInterrupted.incrementAndGet();
+                    currentLoad.supersede(request.id, true);
+                }
+                currentLoad = request;
+                loadsSent.incrementAndGet();
                 MediaInfo mediaInfo = ChromecastUtilities.createMediaInfo(contentId, customData, contentType, duration, streamType, metadata, textTrackStyle);
                 MediaLoadRequestData loadRequest = new MediaLoadRequestData.Builder()
                         .setMediaInfo(mediaInfo)
@@ -325,19 +1026,27 @@ public class ChromecastSession {
                 setQueueReloadCallback(new Runnable() {
                     @Override
                     public void run() {
-                        try {
-                            callback.resolve(JSObject.fromJSONObject(createMediaObject()));
-                        } catch (JSONException e) {
-                            callback.reject(e.getMessage(), e);
+                        if (currentLoad == request) {
+                            currentLoad = null;
+                            requestingMedia = false;
+                            resolveWithMediaObject(request.call, request.id);
                         }
                     }
                 });
                 client.load(loadRequest).setResultCallback(new ResultCallback<MediaChannelResult>() {
                     @Override
                     public void onResult(@NonNull MediaChannelResult result) {
-                        requestingMedia = false;
+                        if (request.id == latestLoadId.get()) {
+                            // No newer load is waiting for its answer
+                            requestingMedia = false;
+                        }
+                        if (currentLoad != request) {
+                            // Superseded (already settled) or already resolved by the queue reload
+                            return;
+                        }
                         if (!result.getStatus().isSuccess()) {
-                            callback.reject("session_error");
+                            currentLoad = null;
+                            request.call.reject("session_error");
                             setQueueReloadCallback(null);
                         }
                     }
@@ -346,16 +1055,281 @@ public class ChromecastSession {
         });
     }
 
+    /**
+     * @return {requested, sent, skipped, interrupted}: skipped loads were superseded before being
+     *         sent, interrupted ones after
+     */
+    public JSObject getLoadStats() {
+        JSObject out = new JSObject();
+        out.put("requested", loadsRequested.get());
+        out.put("sent", loadsSent.get());
+        out.put("skipped", loadsSkipped.get());
+        out.put("interrupted", loadsInterrupted.get());
+        return out;
+    }
+
+    /**
+     * Loads the given media in turn as if tapping through channels, then measures how long the
+     * last one takes to load and to play, see ZapBenchmark.
+     */
+    public void runZapBenchmark(final JSONArray mediaList, final int taps, final long tapIntervalMs, final long timeoutMs, final PluginCall callback) {
+        if (client == null || session == null) {
+            callback.reject("session_error");
+            return;
+        }
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            public void run() {
+                new ZapBenchmark(ChromecastSession.this, client, mediaList, taps, tapIntervalMs, timeoutMs, callback).run();
+            }
+        });
+    }
+
+
+
+
+
+
+
+
+
+/* ------------------------------------   QUEUE LOAD FNs   -------------------------------------- */
+
+    /**
+     * Loads a queue.  Large queues are split into chunks of chunkSize items, or fewer when their
+     * JSON would exceed QUEUE_CHUNK_MAX_BYTES: the chunk starting
+     * at startIndex is loaded first so playback can begin, then the following chunks are appended
+     * and the preceding chunks are inserted before the start item.  The inserts are all sent
+     * without waiting for each other, the receiver applies them in order.
+     * @param items the items to load
+     * @param startIndex index of the item to start playing
+     * @param repeatMode one of MediaStatus.REPEAT_MODE_*
+     * @param chunkSize max number of items per request
+     * @param callback resolved with {itemCount, chunks} once every chunk is applied
+     */
+    public void queueLoad(final List<MediaQueueItem> items, final int startIndex, final int repeatMode, final int chunkSize, final PluginCall callback) {
+        if (client == null || session == null) {
+            callback.reject("session_error");
+            return;
+        }
+        if (items.isEmpty()) {
+            callback.reject("invalid_parameter", "items must not be empty");
+            return;
+        }
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            public void run() {
+                final int size = Math.max(1, chunkSize);
+                final int start = Math.min(Math.max(0, startIndex), items.size() - 1);
+                final List<List<MediaQueueItem>> fromStart = splitChunks(items.subList(start, items.size()), size);
+                final List<MediaQueueItem> head = fromStart.get(0);
+                final List<List<MediaQueueItem>> tail = fromStart.subList(1, fromStart.size());
+                final List<List<MediaQueueItem>> prefix = splitChunks(items.subList(0, start), size);
+                final ChunkedQueueRequest request = new ChunkedQueueRequest("queueLoad",
+                        1 + tail.size() + prefix.size(), items.size(), callback);
+
+                client.queueLoad(toItemArray(head), 0, repeatMode, null)
+                        .setResultCallback(new ResultCallback<MediaChannelResult>() {
+                    @Override
+                    public void onResult(@NonNull MediaChannelResult result) {
+                        if (!request.onChunkResult(result, head.size())) {
+                            return;
+                        }
+                        for (List<MediaQueueItem> chunk : tail) {
+                            client.queueInsertItems(toItemArray(chunk), MediaQueueItem.INVALID_ITEM_ID, null)
+                                    .setResultCallback(request.chunkCallback(chunk.size()));
+                        }
+                        if (prefix.isEmpty()) {
+                            return;
+                        }
+                        MediaStatus status = client.getMediaStatus();
+                        int startItemId = status != null ? status.getCurrentItemId() : MediaQueueItem.INVALID_ITEM_ID;
+                        if (startItemId == MediaQueueItem.INVALID_ITEM_ID) {
+                            request.fail("Could not find the start item to insert the previous items before");
+                            return;
+                        }
+                        for (List<MediaQueueItem> chunk : prefix) {
+                            client.queueInsertItems(toItemArray(chunk), startItemId, null)
+                                    .setResultCallback(request.chunkCallback(chunk.size()));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Inserts items in the queue, split into chunks of chunkSize items (fewer when their JSON
+     * would exceed QUEUE_CHUNK_MAX_BYTES) sent without waiting for each other.
+     * @param items the items to insert
+     * @param insertBeforeItemId id of the item to insert before, MediaQueueItem.INVALID_ITEM_ID to append
+     * @param chunkSize max number of items per request
+     * @param callback resolved with {itemCount, chunks} once every chunk is applied
+     */
+    public void queueInsertItems(final List<MediaQueueItem> items, final int insertBeforeItemId, final int chunkSize, final PluginCall callback) {
+        if (client == null || session == null) {
+            callback.reject("session_error");
+            return;
+        }
+        if (items.isEmpty()) {
+            callback.reject("invalid_parameter", "items must not be empty");
+            return;
+        }
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            public void run() {
+                List<List<MediaQueueItem>> chunks = splitChunks(items, Math.max(1, chunkSize));
+                ChunkedQueueRequest request = new ChunkedQueueRequest("queueInsertItems",
+                        chunks.size(), items.size(), callback);
+                for (List<MediaQueueItem> chunk : chunks) {
+                    client.queueInsertItems(toItemArray(chunk), insertBeforeItemId, null)
+                            .setResultCallback(request.chunkCallback(chunk.size()));
+                }
+            }
+        });
+    }
 
+    /**
+     * Splits items into chunks of at most size items and QUEUE_CHUNK_MAX_BYTES of JSON, an item
+     * larger than that goes alone in its chunk.
+     */
+    private static List<List<MediaQueueItem>> splitChunks(List<MediaQueueItem> items, int size) {
+        List<List<MediaQueueItem>> out = new ArrayList<>();
+        int chunkStart = 0;
+        int chunkBytes = 0;
+        for (int i = 0; i < items.size(); i++) {
+            int bytes = items.get(i).toJson().toString().getBytes(StandardCharsets.UTF_8).length + 1;
+            if (i > chunkStart && (i - chunkStart >= size || chunkBytes + bytes > QUEUE_CHUNK_MAX_BYTES)) {
+                out.add(items.subList(chunkStart, i));
+                chunkStart = i;
+                chunkBytes = 0;
+            }
+            chunkBytes += bytes;
+        }
+        if (chunkStart < items.size()) {
+            out.add(items.subList(chunkStart, items.size()));
+        }
+        return out;
+    }
 
+    private static MediaQueueItem[] toItemArray(List<MediaQueueItem> items) {
+        return items.toArray(new MediaQueueItem[0]);
+    }
 
+    /**
+     * Tracks the chunks of a queueLoad or queueInsertItems, sends a QUEUE_PROGRESS event for each
+     * completed chunk and settles the PluginCall exactly once.
+     */
+    private class ChunkedQueueRequest {
+        private final String operation;
+        private final int totalChunks;
+        private final int totalItems;
+        private final PluginCall callback;
+        private int doneChunks = 0;
+        private int doneItems = 0;
+        private boolean settled = false;
 
+        ChunkedQueueRequest(String operation, int totalChunks, int totalItems, PluginCall callback) {
+            this.operation = operation;
+            this.totalChunks = totalChunks;
+            this.totalItems = totalItems;
+            this.callback = callback;
+        }
 
+        ResultCallback<MediaChannelResult> chunkCallback(final int itemCount) {
+            return new ResultCallback<MediaChannelResult>() {
+                @Override
+                public void onResult(@NonNull MediaChannelResult result) {
+                    onChunkResult(result, itemCount);
+                }
+            };
+        }
 
+        /**
+         * @return true if the chunk succeeded and the request is still running
+         */
+        boolean onChunkResult(MediaChannelResult result, int itemCount) {
+            if (settled) {
+                return false;
+            }
+            if (!result.getStatus().isSuccess()) {
+                fail("Chunk " + (doneChunks + 1) + "/" + totalChunks + " failed: " + result.getStatus().getStatusCode());
+                return false;
+            }
+            doneChunks++;
+            doneItems += itemCount;
+            JSObject progress = new JSObject();
+            progress.put("operation", operation);
+            progress.put("chunk", doneChunks);
+            progress.put("chunks", totalChunks);
+            progress.put("itemsSent", doneItems);
+            progress.put("totalItems", totalItems);
+            final JSONObject sent = progress;
+            serializer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    clientListener.onQueueProgress(sent);
+                }
+            });
+            if (doneChunks == totalChunks) {
+                settled = true;
+                JSObject out = new JSObject();
+                out.put("itemCount", totalItems);
+                out.put("chunks", totalChunks);
+                callback.resolve(out);
+            }
+            return true;
+        }
 
+        void fail(String message) {
+            if (!settled) {
+                settled = true;
+                callback.reject(message, "command_failed");
+            }
+        }
+    }
 
 /* ------------------------------------   QUEUE FNs   ------------------------------------------- */
 
+    /**
+     * Sets how many items around the current item are included in the media objects' "items".
+     * @param before number of items before the current item
+     * @param after number of items after the current item
+     */
+    public void setQueueWindow(final int before, final int after) {
+        executor.execute(new Runnable() {
+            public void run() {
+                queueWindowBefore = Math.max(0, before);
+                queueWindowAfter = Math.max(0, after);
+                if (client != null && client.getMediaStatus() != null && mediaQueueCallback != null) {
+                    mediaQueueCallback.refreshQueueItems();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets a page of queue items.  Items missing from the MediaQueue cache are requested a few
+     * at a time, each one is kept as it arrives and the call resolves when every item of the
+     * page was collected.
+     * @param offset index of the first item
+     * @param limit max number of items, at most MAX_QUEUE_PAGE
+     * @param callback resolved with {offset, total, items}
+     */
+    public void getQueueItems(final int offset, final int limit, final PluginCall callback) {
+        if (client == null || session == null) {
+            callback.reject("session_error");
+            return;
+        }
+        executor.executeForSession(new CastCommandExecutor.CallTask(callback) {
+            public void run() {
+                if (mediaQueueCallback == null) {
+                    callback.reject("session_error");
+                    return;
+                }
+                mediaQueueCallback.requestPage(Math.max(0, offset),
+                        Math.max(0, Math.min(limit, MAX_QUEUE_PAGE)), callback);
+            }
+        });
+    }
+
     private void setQueueReloadCallback(Runnable callback) {
         this.queueReloadCallback = callback;
     }
@@ -381,15 +1355,27 @@ public class ChromecastSession {
         private ArrayList<Integer> lookingForIndexes = new ArrayList<Integer>();
         /** Keeps track of the queueItems. **/
         private JSONArray queueItems;
+        /** getQueueItems requests waiting for items to be fetched. **/
+        private ArrayList<QueuePage> pendingPages = new ArrayList<>();
+        /** Used to time out the pending pages. **/
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        /** Item ids as of the last queue callback, used to report the ids of removed items. **/
+        private int[] knownItemIds = new int[0];
+        /** Ids of changed items that are being fetched before their update is sent. **/
+        private HashSet<Integer> awaitingUpdateIds = new HashSet<>();
+        /** Index of the first item in the current window. **/
+        private int windowStart = -1;
+        /** Item ids in the current window. **/
+        private int[] windowIds = new int[0];
 
         MediaQueueController(MediaQueue q) {
             this.queue = q;
         }
 
         /**
-         * Given i == currentItemId, get items [i-1, i, i+1].
+         * Given i == currentItemId, get items [i-before, i+after].
          * Note: Exclude items out of range, eg. < 0 and > queue.length.
-         * Therefore, it is always 2-3 items (matches chrome desktop implementation).
+         * By default it is always 2-3 items (matches chrome desktop implementation).
          */
         void refreshQueueItems() {
             int len = queue.getItemIds().length;
@@ -400,17 +1386,73 @@ public class ChromecastSession {
 
             // Only add indexes to look for it the currentItemIndex is valid
             if (index != -1) {
-                // init i-1, i, i+1 (exclude items out of range), so always 2-3 items
-                for (int i = index - 1; i <= index + 1; i++) {
+                // init the window around i (exclude items out of range)
+                for (int i = index - queueWindowBefore; i <= index + queueWindowAfter; i++) {
                     if (i >= 0 && i < len) {
                         lookingForIndexes.add(i);
                     }
                 }
             }
+            int[] ids = queue.getItemIds();
+            windowStart = lookingForIndexes.isEmpty() ? -1 : lookingForIndexes.get(0);
+            windowIds = new int[lookingForIndexes.size()];
+            for (int i = 0; i < windowIds.length; i++) {
+                windowIds[i] = ids[lookingForIndexes.get(i)];
+            }
             checkLookingForIndexes();
         }
         private int getCurrentItemIndex() {
-            return queue.indexOfItemWithId(client.getMediaStatus().getCurrentItemId());
+            MediaStatus status = client.getMediaStatus();
+            if (status == null) {
+                return -1;
+            }
+            return queue.indexOfItemWithId(status.getCurrentItemId());
+        }
+
+        /**
+         * @return true if the items or indexes of the window no longer match the queue
+         */
+        private boolean isWindowStale() {
+            int[] ids = queue.getItemIds();
+            int index = getCurrentItemIndex();
+            if (index == -1) {
+                return windowIds.length != 0;
+            }
+            int start = Math.max(0, index - queueWindowBefore);
+            int end = Math.min(ids.length - 1, index + queueWindowAfter);
+            if (start != windowStart || end - start + 1 != windowIds.length) {
+                return true;
+            }
+            for (int i = 0; i < windowIds.length; i++) {
+                if (ids[start + i] != windowIds[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isInWindow(int index) {
+            return windowStart != -1 && index >= windowStart && index < windowStart + windowIds.length;
+        }
+
+        /**
+         * Sends a QUEUE_CHANGE event.
+         * @param type reloaded | inserted | removed | updated
+         * @param change the details of the change, "type" is added to it
+         */
+        private void sendQueueChange(String type, JSONObject change) {
+            try {
+                change.put("type", type);
+                change.put("total", queue.getItemCount());
+            } catch (JSONException e) {
+            }
+            final JSONObject sent = change;
+            serializer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    clientListener.onQueueChange(sent);
+                }
+            });
         }
         /**
          * Works to get all items listed in lookingForIndexes.
@@ -438,19 +1480,66 @@ public class ChromecastSession {
                 updateFinished();
             }
         }
+        /**
+         * Resolves the page straight away if all items are cached, otherwise collects them as
+         * they are fetched.
+         */
+        void requestPage(int offset, int limit, PluginCall call) {
+            final QueuePage page = new QueuePage(offset, limit, call);
+            if (page.tryResolve()) {
+                return;
+            }
+            pendingPages.add(page);
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (pendingPages.remove(page)) {
+                        page.call.reject("timeout");
+                    }
+                }
+            }, QUEUE_PAGE_TIMEOUT);
+        }
+
+        /**
+         * Resolves every pending page that is now complete.
+         */
+        private void checkPendingPages() {
+            ArrayList<QueuePage> stillPending = new ArrayList<>();
+            for (QueuePage page : pendingPages) {
+                if (!page.tryResolve()) {
+                    stillPending.add(page);
+                }
+            }
+            pendingPages = stillPending;
+        }
+
+        /**
+         * @return true if a pending page is waiting for this index
+         */
+        private boolean isPendingPageIndex(int index) {
+            for (QueuePage page : pendingPages) {
+                if (index >= page.offset && index < page.offset + page.limit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private void updateFinished() {
-            // Update the queueItems
-            ChromecastUtilities.setQueueItems(queueItems);
+            // Publish the queueItems, a new array is built on the next refresh
+            state.setQueueItems(queueItems);
             if (queueReloadCallback != null && queue.getItemCount() > 0) {
                 queueReloadCallback.run();
                 setQueueReloadCallback(null);
             }
-            clientListener.onMediaUpdate(createMediaObject());
+            sendMediaUpdate(null);
         }
 
         @Override
         public void itemsReloaded() {
             synchronized (queue) {
+                knownItemIds = queue.getItemIds();
+                awaitingUpdateIds.clear();
                 int itemCount = queue.getItemCount();
                 if (itemCount == 0) {
                     return;
@@ -460,75 +1549,339 @@ public class ChromecastSession {
                         @Override
                         public void run() {
                             // This was externally loaded
-                            clientListener.onMediaLoaded(createMediaObject());
+                            sendMediaLoaded();
                         }
                     });
                 }
+                sendQueueChange("reloaded", new JSObject());
                 refreshQueueItems();
+                checkPendingPages();
             }
         }
         @Override
         public void itemsUpdatedAtIndexes(int[] ints) {
             synchronized (queue) {
-                // Check if we were looking for all the ints
-                for (int i = 0; i < ints.length; i++) {
-                    // If we weren't looking for an ints, that means it was changed
-                    // (rather than just retrieved from the cache)
-                    if (lookingForIndexes.indexOf(ints[i]) == -1) {
-                        // So refresh the queue (the changed item might not be part
-                        // of the items we want to output anyways, so let refresh
-                        // handle it.
-                        refreshQueueItems();
-                        return;
+                boolean forWindow = false;
+                boolean windowChanged = false;
+                boolean cacheCleared = false;
+                JSONArray updated = new JSONArray();
+                for (int index : ints) {
+                    int itemId = queue.itemIdAtIndex(index);
+                    boolean inWindow = lookingForIndexes.indexOf(index) != -1;
+                    MediaQueueItem item;
+                    if (awaitingUpdateIds.remove(itemId)) {
+                        // A changed item has been fetched, send its new content
+                        item = queue.getItemAtIndex(index, false);
+                        if (item != null) {
+                            updated.put(ChromecastUtilities.createQueueItem(item, index));
+                        }
+                        forWindow |= inWindow;
+                    } else if (!inWindow && !isPendingPageIndex(index)) {
+                        // If we weren't looking for an index, that means it was changed
+                        // (rather than just retrieved from the cache)
+                        if (!cacheCleared) {
+                            // Drop any output built from the old item
+                            ChromecastUtilities.clearJsonCaches();
+                            cacheCleared = true;
+                        }
+                        item = queue.getItemAtIndex(index, true);
+                        if (item != null) {
+                            updated.put(ChromecastUtilities.createQueueItem(item, index));
+                        } else {
+                            // Being fetched, will come back through here
+                            awaitingUpdateIds.add(itemId);
+                        }
+                        windowChanged |= isInWindow(index);
+                    } else {
+                        forWindow |= inWindow;
+                    }
+                }
+                if (updated.length() > 0) {
+                    JSONObject change = new JSObject();
+                    try {
+                        change.put("items", updated);
+                    } catch (JSONException e) {
                     }
+                    sendQueueChange("updated", change);
+                }
+                if (windowChanged) {
+                    // Only rebuild the window if a changed item is part of it
+                    refreshQueueItems();
+                } else if (forWindow) {
+                    // Else, we got new items from the cache
+                    checkLookingForIndexes();
                 }
-                // Else, we got new items from the cache
-                checkLookingForIndexes();
+                checkPendingPages();
             }
         }
         @Override
         public void itemsInsertedInRange(int startIndex, int insertCount) {
             synchronized (queue) {
-                refreshQueueItems();
+                int[] ids = queue.getItemIds();
+                JSONArray itemIds = new JSONArray();
+                for (int i = startIndex; i < startIndex + insertCount && i < ids.length; i++) {
+                    itemIds.put(ids[i]);
+                }
+                knownItemIds = ids;
+                JSONObject change = new JSObject();
+                try {
+                    change.put("startIndex", startIndex);
+                    change.put("count", insertCount);
+                    change.put("itemIds", itemIds);
+                } catch (JSONException e) {
+                }
+                sendQueueChange("inserted", change);
+                if (isWindowStale()) {
+                    refreshQueueItems();
+                }
+                checkPendingPages();
             }
         }
         @Override
         public void itemsRemovedAtIndexes(int[] ints) {
             synchronized (queue) {
-                refreshQueueItems();
+                JSONArray indexes = new JSONArray();
+                JSONArray itemIds = new JSONArray();
+                for (int index : ints) {
+                    indexes.put(index);
+                    if (index >= 0 && index < knownItemIds.length) {
+                        itemIds.put(knownItemIds[index]);
+                        awaitingUpdateIds.remove(knownItemIds[index]);
+                    }
+                }
+                knownItemIds = queue.getItemIds();
+                JSONObject change = new JSObject();
+                try {
+                    change.put("indexes", indexes);
+                    change.put("itemIds", itemIds);
+                } catch (JSONException e) {
+                }
+                sendQueueChange("removed", change);
+                if (isWindowStale()) {
+                    refreshQueueItems();
+                }
+                checkPendingPages();
+            }
+        }
+
+        /**
+         * A getQueueItems request.
+         */
+        private class QueuePage {
+            private final int offset;
+            private final int limit;
+            private final PluginCall call;
+            /** Items collected so far by item id, they may leave the MediaQueue cache after. **/
+            private final HashMap<Integer, MediaQueueItem> collected = new HashMap<>();
+
+            QueuePage(int offset, int limit, PluginCall call) {
+                this.offset = offset;
+                this.limit = limit;
+                this.call = call;
+            }
+
+            /**
+             * Collects the items of the page now in the cache, requests up to QUEUE_PAGE_FETCH
+             * of the missing ones (the MediaQueue batches the fetches), and resolves the call
+             * once every item was collected.
+             * @return true if the call was resolved
+             */
+            boolean tryResolve() {
+                int total = queue.getItemCount();
+                int end = Math.min(offset + limit, total);
+                int fetching = 0;
+                boolean foundAll = true;
+                for (int index = offset; index < end; index++) {
+                    int itemId = queue.itemIdAtIndex(index);
+                    // Read the cache again for collected items, to pick up their changes
+                    boolean fetch = !collected.containsKey(itemId) && fetching < QUEUE_PAGE_FETCH;
+                    MediaQueueItem item = queue.getItemAtIndex(index, fetch);
+                    if (item != null) {
+                        collected.put(itemId, item);
+                    } else if (!collected.containsKey(itemId)) {
+                        foundAll = false;
+                        if (fetch) {
+                            fetching++;
+                        }
+                    }
+                }
+                if (!foundAll) {
+                    return false;
+                }
+                JSONArray items = new JSONArray();
+                for (int index = offset; index < end; index++) {
+                    items.put(ChromecastUtilities.createQueueItem(collected.get(queue.itemIdAtIndex(index)), index));
+                }
+                JSObject out = new JSObject();
+                out.put("offset", offset);
+                out.put("total", total);
+                out.put("items", items);
+                call.resolve(out);
+                return true;
             }
         }
     };
 
 /* ------------------------------------   HELPERS  ---------------------------------------------- */
 
-    private JSONObject createSessionObject() {
-        return ChromecastUtilities.createSessionObject(session);
+    /** Forwards the receiver messages to the listener through the serializer. **/
+    private final Cast.MessageReceivedCallback messageDispatcher = new Cast.MessageReceivedCallback() {
+        @Override
+        public void onMessageReceived(final CastDevice device, final String namespace, final String message) {
+            serializer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!rpc.handleMessage(namespace, message) && !chunks.handleMessage(device, namespace, message)) {
+                        clientListener.onMessageReceived(device, namespace, message);
+                    }
+                }
+            });
+        }
+    };
+
+    /**
+     * Sends a media update.  Must be called from the main thread, only the status fields are
+     * captured here and the media object is built on the serializer.
+     * @param idleReason if not null, resends the last media object as idle with this reason
+     */
+    private void sendMediaUpdate(final Integer idleReason) {
+        final SessionState current = state;
+        final JSONArray items = current.getSnapshot().queueItems;
+        final StatusSnapshot.Media media = StatusSnapshot.Media.capture(session);
+        serializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                JSONObject out = buildMediaObject(current, media, items, idleReason);
+                if (out != null) {
+                    clientListener.onMediaUpdate(out);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the current media as loaded.  Must be called from the main thread.
+     */
+    private void sendMediaLoaded() {
+        final SessionState current = state;
+        final JSONArray items = current.getSnapshot().queueItems;
+        final StatusSnapshot.Media media = StatusSnapshot.Media.capture(session);
+        serializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                clientListener.onMediaLoaded(buildMediaObject(current, media, items, null));
+            }
+        });
+    }
+
+    /**
+     * Resolves a call with the current media object.  Must be called from the main thread.
+     * @param callback the call to resolve
+     * @param loadId added as "loadId" if not null
+     */
+    private void resolveWithMediaObject(final PluginCall callback, final Integer loadId) {
+        final SessionState current = state;
+        final JSONArray items = current.getSnapshot().queueItems;
+        final StatusSnapshot.Media media = StatusSnapshot.Media.capture(session);
+        serializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    JSObject out = ChromecastUtilities.toJSObject(buildMediaObject(current, media, items, null));
+                    if (loadId != null) {
+                        out.put("loadId", loadId);
+                    }
+                    callback.resolve(out);
+                } catch (JSONException e) {
+                    callback.reject(e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends a session update.  Must be called from the main thread.
+     * @param status if not null, the session ended with this status
+     */
+    private void sendSessionUpdate(final String status) {
+        createSessionObject(session, status, new Function<JSONObject, Void>() {
+            @Override
+            public Void apply(JSONObject sessionObject) {
+                if (status == null) {
+                    clientListener.onSessionUpdate(sessionObject);
+                } else {
+                    clientListener.onSessionEnd(sessionObject);
+                }
+                return null;
+            }
+        });
     }
 
-    /** Last sent media object. **/
-    private JSONObject lastMediaObject;
-    private JSONObject createMediaObject() {
-        return createMediaObject(null);
+    /**
+     * Creates a session object using the queue items of this session.  Must be called from the
+     * main thread, the object is built and passed to then on the serializer.
+     * @param castSession the session
+     * @param status the status to report, null to derive it from the session
+     * @param then called with the session object
+     */
+    void createSessionObject(CastSession castSession, final String status, final Function<JSONObject, Void> then) {
+        SessionState current = state;
+        final JSONArray items = current.belongsTo(castSession) ? current.getSnapshot().queueItems : null;
+        final StatusSnapshot.Session captured = StatusSnapshot.Session.capture(castSession);
+        serializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                JSONObject out;
+                if (captured == null) {
+                    out = new JSObject();
+                } else if (status == null) {
+                    out = ChromecastUtilities.createSessionObject(captured, items);
+                } else {
+                    out = ChromecastUtilities.createSessionObject(captured, items, status);
+                }
+                then.apply(out);
+            }
+        });
     }
 
-    private JSONObject createMediaObject(Integer idleReason) {
+    /**
+     * Builds a media object and publishes it as the last one.  Must be called from the serializer.
+     * @param current the state of the session the media belongs to
+     * @param media the captured media status
+     * @param items the queue items when the status was captured
+     * @param idleReason if not null, copies the last media object as idle with this reason
+     * @return the media object
+     */
+    private JSONObject buildMediaObject(SessionState current, StatusSnapshot.Media media, JSONArray items, Integer idleReason) {
+        JSONObject lastMediaObject = current.getSnapshot().lastMediaObject;
         if (idleReason != null && lastMediaObject != null) {
             try {
-                lastMediaObject.put("playerState", ChromecastUtilities.getMediaPlayerState(MediaStatus.PLAYER_STATE_IDLE));
-                lastMediaObject.put("idleReason", ChromecastUtilities.getMediaIdleReason(idleReason));
-                return lastMediaObject;
+                // Copy rather than mutate, the previous object may still be referenced
+                // by the update encoder
+                JSONObject out = new JSObject();
+                Iterator<String> keys = lastMediaObject.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    out.put(key, lastMediaObject.opt(key));
+                }
+                out.put("playerState", ChromecastUtilities.getMediaPlayerState(MediaStatus.PLAYER_STATE_IDLE));
+                out.put("idleReason", ChromecastUtilities.getMediaIdleReason(idleReason));
+                current.setLastMediaObject(out);
+                return out;
             } catch (JSONException e) {
             }
         }
-        JSONObject out = ChromecastUtilities.createMediaObject(session);
-        lastMediaObject = out;
+        JSONObject out = ChromecastUtilities.createMediaObject(media, items);
+        current.setLastMediaObject(out);
         return out;
     }
 
     interface Listener extends Cast.MessageReceivedCallback {
         void onMediaLoaded(JSONObject jsonMedia);
         void onMediaUpdate(JSONObject jsonMedia);
+        void onMediaProgress(JSONObject progress);
+        void onQueueChange(JSONObject change);
+        void onQueueProgress(JSONObject progress);
         void onSessionUpdate(JSONObject jsonSession);
         void onSessionEnd(JSONObject jsonSession);
     }
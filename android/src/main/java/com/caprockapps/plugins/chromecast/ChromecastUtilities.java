@@ -6,6 +6,7 @@ import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.mediarouter.media.MediaRouter;
 
+import com.getcapacitor.JSObject;
 import com.google.android.gms.cast.ApplicationMetadata;
 import com.google.android.gms.cast.CastDevice;
 import com.google.android.gms.cast.MediaInfo;
@@ -15,7 +16,6 @@ import com.google.android.gms.cast.MediaQueueItem;
 import com.google.android.gms.cast.MediaStatus;
 import com.google.android.gms.cast.MediaTrack;
 import com.google.android.gms.cast.TextTrackStyle;
-import com.google.android.gms.cast.framework.CastSession;
 import com.google.android.gms.common.images.WebImage;
 
 import org.json.JSONArray;
@@ -28,20 +28,38 @@ import java.util.List;
 import java.util.Set;
 
 final class ChromecastUtilities {
-    /** Stores a cache of the queueItems for building Media Objects. */
-    private static JSONArray queueItems = null;
+    /** Max number of entries kept in each of the output caches. */
+    private static final int JSON_CACHE_SIZE = 64;
+    /** Cache of the "media" output objects. */
+    private static final JsonCache<MediaInfo> mediaInfoCache = new JsonCache<>(JSON_CACHE_SIZE);
+    /** Cache of the queue item output objects. */
+    private static final JsonCache<MediaQueueItem> queueItemCache = new JsonCache<>(JSON_CACHE_SIZE);
 
     private ChromecastUtilities() {
         //not called
     }
 
     /**
-     * Sets the queueItems to be returned with the media object so they don't have to be calculated
-     * every time we need to send an update.
-     * @param items queueItems
+     * Returns the object as a JSObject, only copying it if it is not one already.
+     * The output builders create JSObjects so that they can be handed to the bridge as is.
+     * @param obj the object to convert
+     * @return a JSObject with the same content
+     * @throws JSONException if the object can't be copied
      */
-    static void setQueueItems(JSONArray items) {
-        queueItems = items;
+    static JSObject toJSObject(JSONObject obj) throws JSONException {
+        if (obj instanceof JSObject) {
+            return (JSObject) obj;
+        }
+        return JSObject.fromJSONObject(obj);
+    }
+
+    /**
+     * Clears the MediaInfo and queue item output caches.
+     * Must be called when queue items change and when the session changes.
+     */
+    static void clearJsonCaches() {
+        mediaInfoCache.clear();
+        queueItemCache.clear();
     }
 
     static String getMediaIdleReason(int idleReason) {
@@ -413,8 +431,8 @@ final class ChromecastUtilities {
         return "#" + Integer.toHexString(color);
     }
 
-    static JSONObject createSessionObject(CastSession session, String state) {
-        JSONObject s = createSessionObject(session);
+    static JSONObject createSessionObject(StatusSnapshot.Session session, JSONArray items, String state) {
+        JSONObject s = createSessionObject(session, items);
         if (state != null) {
             try {
                 s.put("status", state);
@@ -424,20 +442,25 @@ final class ChromecastUtilities {
         return s;
     }
 
-    static JSONObject createSessionObject(CastSession session) {
-        JSONObject out = new JSONObject();
+    /**
+     * @param session the session captured on the main thread
+     * @param items the queue items of this session, owned by its SessionState
+     * @return the session object
+     */
+    static JSONObject createSessionObject(StatusSnapshot.Session session, JSONArray items) {
+        JSONObject out = new JSObject();
 
         try {
-            ApplicationMetadata metadata = session.getApplicationMetadata();
+            ApplicationMetadata metadata = session.metadata;
             out.put("appId", metadata.getApplicationId());
             try {
                 out.put("appImages", createImagesArray(metadata.getImages()));
             } catch (NullPointerException e) {
             }
             out.put("displayName", metadata.getName());
-            out.put("media", createMediaArray(session));
+            out.put("media", createMediaArray(session.media, items));
             out.put("receiver", createReceiverObject(session));
-            out.put("sessionId", session.getSessionId());
+            out.put("sessionId", session.sessionId);
 
         } catch (JSONException e) {
         } catch (NullPointerException e) {
@@ -458,16 +481,18 @@ final class ChromecastUtilities {
         return appImages;
     }
 
-    private static JSONObject createReceiverObject(CastSession session) {
+    private static JSONObject createReceiverObject(StatusSnapshot.Session session) {
         JSONObject out = new JSONObject();
         try {
-            out.put("friendlyName", session.getCastDevice().getFriendlyName());
-            out.put("label", session.getCastDevice().getDeviceId());
+            out.put("friendlyName", session.device.getFriendlyName());
+            out.put("label", session.device.getDeviceId());
 
             JSONObject volume = new JSONObject();
             try {
-                volume.put("level", session.getVolume());
-                volume.put("muted", session.isMute());
+                if (session.volume != null) {
+                    volume.put("level", session.volume);
+                    volume.put("muted", session.muted);
+                }
             } catch (JSONException e) {
             }
             out.put("volume", volume);
@@ -478,56 +503,58 @@ final class ChromecastUtilities {
         return out;
     }
 
-    static JSONArray createMediaArray(CastSession session) {
+    static JSONArray createMediaArray(StatusSnapshot.Media media, JSONArray items) {
         JSONArray out = new JSONArray();
-        JSONObject mediaInfoObj = createMediaObject(session);
+        if (media == null) {
+            return out;
+        }
+        JSONObject mediaInfoObj = createMediaObject(media, items);
         if (mediaInfoObj != null) {
             out.put(mediaInfoObj);
         }
         return out;
     }
 
-    static JSONObject createMediaObject(CastSession session) {
-        return createMediaObject(session, queueItems);
-    };
-
-    static JSONObject createMediaObject(CastSession session, JSONArray items) {
-        JSONObject out = new JSONObject();
+    /**
+     * @param mediaStatus the media status captured on the main thread
+     * @param items the queue items of this session, owned by its SessionState
+     * @return the media object
+     */
+    static JSONObject createMediaObject(StatusSnapshot.Media mediaStatus, JSONArray items) {
+        JSONObject out = new JSObject();
 
         try {
-            MediaStatus mediaStatus = session.getRemoteMediaClient().getMediaStatus();
-
             // TODO: Missing attributes are commented out.
             //  These are returned by the chromecast desktop SDK, we should probbaly return them too
             //out.put("breakStatus",);
-            out.put("currentItemId", mediaStatus.getCurrentItemId());
-            out.put("currentTime", mediaStatus.getStreamPosition() / 1000.0);
-            out.put("customData", mediaStatus.getCustomData());
+            out.put("currentItemId", mediaStatus.currentItemId);
+            out.put("currentTime", mediaStatus.streamPosition / 1000.0);
+            out.put("customData", mediaStatus.customData);
             //out.put("extendedStatus",);
-            String idleReason = ChromecastUtilities.getMediaIdleReason(mediaStatus.getIdleReason());
+            String idleReason = ChromecastUtilities.getMediaIdleReason(mediaStatus.idleReason);
             if (idleReason != null) {
                 out.put("idleReason", idleReason);
             }
             out.put("items", items);
-            out.put("isAlive", mediaStatus.getPlayerState() != MediaStatus.PLAYER_STATE_IDLE);
+            out.put("isAlive", mediaStatus.playerState != MediaStatus.PLAYER_STATE_IDLE);
             //out.put("liveSeekableRange",);
-            out.put("loadingItemId", mediaStatus.getLoadingItemId());
-            out.put("media", createMediaInfoObject(session.getRemoteMediaClient().getMediaInfo()));
+            out.put("loadingItemId", mediaStatus.loadingItemId);
+            out.put("media", createMediaInfoObject(mediaStatus.mediaInfo));
             out.put("mediaSessionId", 1);
-            out.put("playbackRate", mediaStatus.getPlaybackRate());
-            out.put("playerState", ChromecastUtilities.getMediaPlayerState(mediaStatus.getPlayerState()));
-            out.put("preloadedItemId", mediaStatus.getPreloadedItemId());
-            out.put("queueData", createQueueData(mediaStatus));
-            out.put("repeatMode", getRepeatMode(mediaStatus.getQueueRepeatMode()));
-            out.put("sessionId", session.getSessionId());
+            out.put("playbackRate", mediaStatus.playbackRate);
+            out.put("playerState", ChromecastUtilities.getMediaPlayerState(mediaStatus.playerState));
+            out.put("preloadedItemId", mediaStatus.preloadedItemId);
+            out.put("queueData", createQueueData(mediaStatus.queueData));
+            out.put("repeatMode", getRepeatMode(mediaStatus.repeatMode));
+            out.put("sessionId", mediaStatus.sessionId);
             //out.put("supportedMediaCommands", );
             //out.put("videoInfo", );
 
             JSONObject volume = new JSONObject();
-            volume.put("level", mediaStatus.getStreamVolume());
-            volume.put("muted", mediaStatus.isMute());
+            volume.put("level", mediaStatus.volume);
+            volume.put("muted", mediaStatus.muted);
             out.put("volume", volume);
-            out.put("activeTrackIds", createActiveTrackIds(mediaStatus.getActiveTrackIds()));
+            out.put("activeTrackIds", createActiveTrackIds(mediaStatus.activeTrackIds));
         } catch (JSONException e) {
         } catch (NullPointerException e) {
             return null;
@@ -551,10 +578,9 @@ final class ChromecastUtilities {
         return out;
     }
 
-    static JSONObject createQueueData(MediaStatus status) {
+    static JSONObject createQueueData(MediaQueueData data) {
         JSONObject out = new JSONObject();
         try {
-            MediaQueueData data = status.getQueueData();
             if (data == null) {
                 return null;
             }
@@ -569,6 +595,17 @@ final class ChromecastUtilities {
     }
 
     static JSONObject createQueueItem(@NonNull MediaQueueItem item, int orderId) {
+        JSONObject out = queueItemCache.get(item);
+        // The orderId is not part of the item, so only reuse the output if it still matches
+        if (out != null && out.optInt("orderId", -1) == orderId) {
+            return out;
+        }
+        out = buildQueueItem(item, orderId);
+        queueItemCache.put(item, out);
+        return out;
+    }
+
+    private static JSONObject buildQueueItem(@NonNull MediaQueueItem item, int orderId) {
         JSONObject out = new JSONObject();
         try {
             out.put("activeTrackIds", createActiveTrackIds(item.getActiveTrackIds()));
@@ -629,6 +666,15 @@ final class ChromecastUtilities {
     }
 
     private static JSONObject createMediaInfoObject(MediaInfo mediaInfo) {
+        JSONObject out = mediaInfoCache.get(mediaInfo);
+        if (out == null) {
+            out = buildMediaInfoObject(mediaInfo);
+            mediaInfoCache.put(mediaInfo, out);
+        }
+        return out;
+    }
+
+    private static JSONObject buildMediaInfoObject(MediaInfo mediaInfo) {
         JSONObject out = new JSONObject();
 
         try {
@@ -744,27 +790,35 @@ final class ChromecastUtilities {
     static JSONArray createRoutesArray(List<MediaRouter.RouteInfo> routes) {
         JSONArray routesArray = new JSONArray();
         for (MediaRouter.RouteInfo route : routes) {
-            try {
-                JSONObject obj = new JSONObject();
-                obj.put("name", route.getName());
-                obj.put("id", route.getId());
-
-                CastDevice device = CastDevice.getFromBundle(route.getExtras());
-                if (device != null) {
-                    obj.put("isNearbyDevice", !device.isOnLocalNetwork());
-                    //obj.put("isCastGroup", route instanceof MediaRouter.RouteGroup);
-                    obj.put("isCastGroup", true);
-                }
+            routesArray.put(createRouteObject(route));
+        }
+        return routesArray;
+    }
 
-                routesArray.put(obj);
-            } catch (JSONException e) {
+    /**
+     * Converts a route to JSON for passing down to the javascript side.
+     * @param route the route to convert
+     * @return {name, id, isNearbyDevice, isCastGroup}
+     */
+    static JSONObject createRouteObject(MediaRouter.RouteInfo route) {
+        JSONObject obj = new JSONObject();
+        try {
+            obj.put("name", route.getName());
+            obj.put("id", route.getId());
+
+            CastDevice device = RouteFilter.getDevice(route);
+            if (device != null) {
+                obj.put("isNearbyDevice", !device.isOnLocalNetwork());
+                //obj.put("isCastGroup", route instanceof MediaRouter.RouteGroup);
+                obj.put("isCastGroup", true);
             }
+        } catch (JSONException e) {
         }
-        return routesArray;
+        return obj;
     }
 
     static JSONObject createError(String code, String message) {
-        JSONObject out = new JSONObject();
+        JSONObject out = new JSObject();
         try {
             out.put("code", code);
             out.put("description", message);
@@ -0,0 +1,367 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import com.google.android.gms.cast.Cast;
+import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Sends and receives payloads larger than a Cast message, in sequenced chunks.
+ *
+ * A chunk is {"chunk": "data", "id", "seq", "last", "data"} (the first one also has "length",
+ * the payload length in chars) and the other side answers {"chunk": "ack", "id", "seq"} for
+ * every chunk it appended.  At most window chunks are unacknowledged at a time, and the payload
+ * is sliced as the window moves so only one chunk is copied at a time.  Either side gives up
+ * with {"chunk": "abort", "id", "reason"}.
+ *
+ * Chunks sent by the receiver are appended as they arrive and the whole payload is forwarded
+ * once, as a single RECEIVER_MESSAGE.  custom-receiver/index.html implements the other side.
+ */
+final class ChunkedTransfer {
+    static final int DEFAULT_WINDOW = 4;
+    /** Default chunk size, in chars. */
+    static final int DEFAULT_CHUNK_SIZE = 16000;
+    /** Default time to wait for an ack, in ms. */
+    static final long DEFAULT_TIMEOUT = 10000;
+    /** Incoming transfers idle for this long are dropped. */
+    private static final long INCOMING_TIMEOUT = 30000;
+    /** Largest payload accepted from the receiver, in chars. */
+    private static final int MAX_INCOMING_LENGTH = 32 * 1024 * 1024;
+
+    /** A payload being sent. */
+    private final class Outgoing implements Runnable {
+        final String id;
+        final String namespace;
+        final String payload;
+        final int window;
+        final int chunkSize;
+        final long timeoutMs;
+        final PluginCall call;
+        final long startedAt = SystemClock.elapsedRealtime();
+        /** Where the next chunk starts in the payload. */
+        int offset = 0;
+        int nextSeq = 0;
+        int ackedSeq = -1;
+        /** Seq of the last chunk once it is sent, -1 before. */
+        int lastSeq = -1;
+        /** UTF-8 size of the chunks sent. */
+        long bytes = 0;
+
+        Outgoing(String id, String namespace, String payload, int window, int chunkSize, long timeoutMs, PluginCall call) {
+            this.id = id;
+            this.namespace = namespace;
+            this.payload = payload;
+            this.window = window;
+            this.chunkSize = chunkSize;
+            this.timeoutMs = timeoutMs;
+            this.call = call;
+        }
+
+        /** No ack in time. */
+        @Override
+        public void run() {
+            synchronized (ChunkedTransfer.this) {
+                if (outgoing.get(id) == this) {
+                    fail(this, "timeout", "No ack for " + id + " after chunk " + ackedSeq);
+                }
+            }
+        }
+    }
+
+    /** A payload being received. */
+    private final class Incoming implements Runnable {
+        final String key;
+        final String id;
+        final String namespace;
+        final StringBuilder payload;
+        int nextSeq = 0;
+
+        Incoming(String key, String id, String namespace, int length) {
+            this.key = key;
+            this.id = id;
+            this.namespace = namespace;
+            this.payload = new StringBuilder(Math.max(16, length));
+        }
+
+        /** Idle for too long. */
+        @Override
+        public void run() {
+            synchronized (ChunkedTransfer.this) {
+                incoming.remove(key);
+            }
+        }
+    }
+
+    /** Sends the chunks and acks. */
+    private final MessageTransport transport;
+    /** Gets the reassembled payloads. */
+    private final Cast.MessageReceivedCallback listener;
+    /** Runs the timeouts. */
+    private final Handler handler;
+    /** Last transfer id. */
+    private long lastId = 0;
+    /** Payloads being sent, by id. */
+    private final Map<String, Outgoing> outgoing = new HashMap<>();
+    /** Payloads being received, by namespace and id. */
+    private final Map<String, Incoming> incoming = new HashMap<>();
+
+    ChunkedTransfer(MessageTransport transport, Looper looper, Cast.MessageReceivedCallback listener) {
+        this.transport = transport;
+        this.handler = new Handler(looper);
+        this.listener = listener;
+    }
+
+    /**
+     * Sends a payload in chunks.
+     * @param namespace the namespace
+     * @param payload the payload
+     * @param window how many chunks can be unacknowledged
+     * @param chunkSize chunk size in chars, lowered if a chunk would not fit in a Cast message
+     * @param timeoutMs time to wait for each ack
+     * @param call resolved with {id, chunks, bytes, durationMs, bytesPerSec}
+     */
+    synchronized void send(String namespace, String payload, int window, int chunkSize, long timeoutMs, PluginCall call) {
+        Outgoing transfer = new Outgoing("s" + (++lastId), namespace, payload, Math.max(1, window),
+                Math.max(1, Math.min(chunkSize, MessageBatcher.MAX_FRAME_BYTES)), timeoutMs, call);
+        outgoing.put(transfer.id, transfer);
+        handler.postDelayed(transfer, timeoutMs);
+        pump(transfer);
+    }
+
+    /**
+     * Handles the chunk messages.
+     * @param device the device it was received from
+     * @param namespace the namespace it was received on
+     * @param message the message
+     * @return true if the message was part of a transfer and should not be forwarded as is
+     */
+    boolean handleMessage(CastDevice device, String namespace, String message) {
+        if (message == null || !message.contains("\"chunk\"")) {
+            return false;
+        }
+        JSONObject chunk;
+        try {
+            chunk = new JSONObject(message);
+        } catch (JSONException e) {
+            return false;
+        }
+        String type = chunk.optString("chunk");
+        String id = chunk.optString("id");
+        String done = null;
+        synchronized (this) {
+            if ("ack".equals(type)) {
+                onAck(namespace, id, chunk.optInt("seq", -1));
+            } else if ("abort".equals(type)) {
+                Outgoing transfer = outgoing.get(id);
+                if (transfer != null && transfer.namespace.equals(namespace)) {
+                    fail(transfer, "aborted", chunk.optString("reason", "aborted by the receiver"));
+                } else {
+                    drop(incoming.get(namespace + "/" + id));
+                }
+            } else if ("data".equals(type)) {
+                done = onData(namespace, id, chunk);
+            } else {
+                return false;
+            }
+        }
+        if (done != null) {
+            listener.onMessageReceived(device, namespace, done);
+        }
+        return true;
+    }
+
+    /**
+     * Fails the transfers in flight and drops the partial payloads (eg. when the session ends).
+     * @param error the error code
+     */
+    void cancelAll(String error) {
+        List<Outgoing> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(outgoing.values());
+            outgoing.clear();
+            for (Incoming transfer : incoming.values()) {
+                handler.removeCallbacks(transfer);
+            }
+            incoming.clear();
+        }
+        for (Outgoing transfer : cancelled) {
+            handler.removeCallbacks(transfer);
+            transfer.call.reject(error);
+        }
+    }
+
+    /**
+     * Sends chunks until the window is full or the last one is sent.  Must hold the lock.
+     */
+    private void pump(final Outgoing transfer) {
+        while (transfer.lastSeq < 0 && transfer.nextSeq - transfer.ackedSeq <= transfer.window) {
+            int start = transfer.offset;
+            int length = transfer.payload.length();
+            JSONObject chunk = new JSONObject();
+            String message;
+            int end = Math.min(length, start + transfer.chunkSize);
+            while (true) {
+                // Do not split a surrogate pair
+                if (end < length && end > start + 1 && Character.isHighSurrogate(transfer.payload.charAt(end - 1))) {
+                    end--;
+                }
+                try {
+                    chunk.put("chunk", "data");
+                    chunk.put("id", transfer.id);
+                    chunk.put("seq", transfer.nextSeq);
+                    chunk.put("last", end == length);
+                    if (transfer.nextSeq == 0) {
+                        chunk.put("length", length);
+                    }
+                    chunk.put("data", transfer.payload.substring(start, end));
+                } catch (JSONException e) {
+                }
+                message = chunk.toString();
+                // Escapes and multi-byte chars can push a chunk over the limit
+                if (end - start <= 1 || message.length() * 3 <= MessageBatcher.MAX_FRAME_BYTES
+                        || message.getBytes(StandardCharsets.UTF_8).length <= MessageBatcher.MAX_FRAME_BYTES) {
+                    break;
+                }
+                end = start + (end - start) / 2;
+            }
+            final int seq = transfer.nextSeq++;
+            transfer.offset = end;
+            transfer.bytes += message.getBytes(StandardCharsets.UTF_8).length;
+            if (end == length) {
+                transfer.lastSeq = seq;
+            }
+            boolean sent = transport.send(transfer.namespace, message, new ResultCallback<Status>() {
+                @Override
+                public void onResult(@NonNull Status status) {
+                    if (!status.isSuccess()) {
+                        synchronized (ChunkedTransfer.this) {
+                            if (outgoing.get(transfer.id) == transfer) {
+                                fail(transfer, "send_failed", "Could not send chunk " + seq + ": " + status.getStatusCode());
+                            }
+                        }
+                    }
+                }
+            });
+            if (!sent) {
+                fail(transfer, "session_error", "session_error");
+                return;
+            }
+        }
+    }
+
+    /** Must hold the lock. */
+    private void onAck(String namespace, String id, int seq) {
+        Outgoing transfer = outgoing.get(id);
+        if (transfer == null || !transfer.namespace.equals(namespace) || seq <= transfer.ackedSeq || seq >= transfer.nextSeq) {
+            return;
+        }
+        transfer.ackedSeq = seq;
+        handler.removeCallbacks(transfer);
+        if (seq == transfer.lastSeq) {
+            outgoing.remove(id);
+            long duration = Math.max(1, SystemClock.elapsedRealtime() - transfer.startedAt);
+            JSObject out = new JSObject();
+            out.put("id", transfer.id);
+            out.put("chunks", transfer.nextSeq);
+            out.put("bytes", transfer.bytes);
+            out.put("durationMs", duration);
+            out.put("bytesPerSec", transfer.bytes * 1000.0 / duration);
+            transfer.call.resolve(out);
+            return;
+        }
+        handler.postDelayed(transfer, transfer.timeoutMs);
+        pump(transfer);
+    }
+
+    /**
+     * Appends a chunk from the receiver.  Must hold the lock.
+     * @return the whole payload once the last chunk is appended, null before
+     */
+    private String onData(String namespace, String id, JSONObject chunk) {
+        String key = namespace + "/" + id;
+        int seq = chunk.optInt("seq", -1);
+        Incoming transfer = incoming.get(key);
+        if (seq == 0) {
+            drop(transfer);
+            int length = chunk.optInt("length", 0);
+            if (length > MAX_INCOMING_LENGTH) {
+                sendControl(namespace, "abort", id, "reason", "too_large");
+                return null;
+            }
+            transfer = new Incoming(key, id, namespace, length);
+            incoming.put(key, transfer);
+        }
+        if (transfer == null || seq != transfer.nextSeq) {
+            // Lost or reordered chunk, the sender has to start over
+            drop(transfer);
+            sendControl(namespace, "abort", id, "reason", "out_of_sequence");
+            return null;
+        }
+        String data = chunk.optString("data");
+        if (transfer.payload.length() + data.length() > MAX_INCOMING_LENGTH) {
+            drop(transfer);
+            sendControl(namespace, "abort", id, "reason", "too_large");
+            return null;
+        }
+        transfer.payload.append(data);
+        transfer.nextSeq++;
+        sendControl(namespace, "ack", id, "seq", seq);
+        handler.removeCallbacks(transfer);
+        if (chunk.optBoolean("last")) {
+            incoming.remove(key);
+            return transfer.payload.toString();
+        }
+        handler.postDelayed(transfer, INCOMING_TIMEOUT);
+        return null;
+    }
+
+    /** Must hold the lock. */
+    private void drop(Incoming transfer) {
+        if (transfer != null) {
+            handler.removeCallbacks(transfer);
+            incoming.remove(transfer.key);
+        }
+    }
+
+    /**
+     * Rejects the call and tells the receiver to drop what it got.  Must hold the lock.
+     */
+    private void fail(Outgoing transfer, String code, String message) {
+        outgoing.remove(transfer.id);
+        handler.removeCallbacks(transfer);
+        sendControl(transfer.namespace, "abort", transfer.id, "reason", code);
+        transfer.call.reject(message, code);
+    }
+
+    private void sendControl(String namespace, String type, String id, String key, Object value) {
+        JSONObject message = new JSONObject();
+        try {
+            message.put("chunk", type);
+            message.put("id", id);
+            message.put(key, value);
+        } catch (JSONException e) {
+        }
+        transport.send(namespace, message.toString(), new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+            }
+        });
+    }
+}
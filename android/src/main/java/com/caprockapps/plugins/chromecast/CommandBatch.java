@@ -0,0 +1,188 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.SystemClock;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * Runs a list of plugin commands from a single bridge call, one after the other.
+ *
+ * Each command is {op, args} and runs the plugin method for op with args as its data, the next
+ * one starts once it settled.  The batch resolves with {results, completed, failed, totalMs},
+ * results holding one {op, success, latencyMs, result | error, code} per command (latencyMs is
+ * the time until the command settled, media commands also report the receiver's latencyMs in
+ * their result).  With stopOnError the commands after a failure are not run and are reported
+ * with skipped: true.
+ */
+final class CommandBatch {
+    /** Longest batch accepted. */
+    static final int MAX_COMMANDS = 100;
+
+    interface Dispatcher {
+        /**
+         * Runs one command.
+         * @param op the command name
+         * @param call the call to settle, its data is the command's args
+         * @return false if op is unknown, the call is not settled then
+         */
+        boolean dispatch(String op, PluginCall call);
+    }
+
+    /** The call a command settles instead of answering the bridge. */
+    private final class StepCall extends LocalPluginCall {
+        final int index;
+        final String op;
+        final long startedAt = SystemClock.elapsedRealtime();
+
+        StepCall(int index, String op, JSObject args) {
+            super(op, args);
+            this.index = index;
+            this.op = op;
+        }
+
+        @Override
+        void onResolve(JSObject data) {
+            JSObject out = result();
+            // sendMessage resolves with success: false instead of rejecting
+            boolean success = data == null || data.optBoolean("success", true);
+            out.put("success", success);
+            if (data != null) {
+                out.put("result", data);
+            }
+            finish(this, out, success);
+        }
+
+        @Override
+        void onReject(String message, String code) {
+            JSObject out = result();
+            out.put("success", false);
+            out.put("error", message);
+            if (code != null) {
+                out.put("code", code);
+            }
+            finish(this, out, false);
+        }
+
+        private JSObject result() {
+            JSObject out = new JSObject();
+            out.put("op", op);
+            out.put("latencyMs", SystemClock.elapsedRealtime() - startedAt);
+            return out;
+        }
+    }
+
+    private final JSArray commands;
+    private final boolean stopOnError;
+    private final Dispatcher dispatcher;
+    private final PluginCall call;
+    private final JSONObject[] results;
+    private final long startedAt = SystemClock.elapsedRealtime();
+    /** Index of the command to run next. */
+    private int next = 0;
+    private int completed = 0;
+    private int failed = 0;
+    /** Set while commands run from the loop in run(), so synchronous results do not recurse. */
+    private boolean looping = false;
+    /** Whether the current command settled. */
+    private boolean currentDone = false;
+
+    CommandBatch(JSArray commands, boolean stopOnError, Dispatcher dispatcher, PluginCall call) {
+        this.commands = commands;
+        this.stopOnError = stopOnError;
+        this.dispatcher = dispatcher;
+        this.call = call;
+        this.results = new JSONObject[commands.length()];
+    }
+
+    /**
+     * Runs the commands until one settles asynchronously, then continues from finish().
+     */
+    void run() {
+        while (true) {
+            int index;
+            synchronized (this) {
+                if (next >= commands.length()) {
+                    break;
+                }
+                index = next++;
+                looping = true;
+                currentDone = false;
+            }
+            runCommand(index);
+            synchronized (this) {
+                looping = false;
+                if (!currentDone) {
+                    // Continues when the command settles
+                    return;
+                }
+            }
+        }
+        resolveBatch();
+    }
+
+    private void runCommand(int index) {
+        JSONObject command = commands.optJSONObject(index);
+        String op = command != null ? command.optString("op", null) : null;
+        JSObject args;
+        try {
+            JSONObject raw = command != null ? command.optJSONObject("args") : null;
+            args = raw != null ? ChromecastUtilities.toJSObject(raw) : new JSObject();
+        } catch (JSONException e) {
+            args = new JSObject();
+        }
+        StepCall step = new StepCall(index, op != null ? op : "", args);
+        if (op == null) {
+            step.reject("op is required", "invalid_parameter");
+            return;
+        }
+        if (!dispatcher.dispatch(op, step)) {
+            step.reject("Unknown op: " + op, "unknown_op");
+        }
+    }
+
+    private void finish(StepCall step, JSObject out, boolean success) {
+        boolean resume;
+        synchronized (this) {
+            results[step.index] = out;
+            if (success) {
+                completed++;
+            } else {
+                failed++;
+                if (stopOnError) {
+                    for (int i = next; i < results.length; i++) {
+                        JSONObject command = commands.optJSONObject(i);
+                        JSObject skipped = new JSObject();
+                        skipped.put("op", command != null ? command.optString("op") : "");
+                        skipped.put("skipped", true);
+                        results[i] = skipped;
+                    }
+                    next = results.length;
+                }
+            }
+            currentDone = true;
+            // Settled synchronously: run() carries on
+            resume = !looping;
+        }
+        if (resume) {
+            run();
+        }
+    }
+
+    private void resolveBatch() {
+        JSArray out = new JSArray();
+        for (JSONObject result : results) {
+            out.put(result);
+        }
+        JSObject batch = new JSObject();
+        batch.put("results", out);
+        batch.put("completed", completed);
+        batch.put("failed", failed);
+        batch.put("totalMs", SystemClock.elapsedRealtime() - startedAt);
+        call.resolve(batch);
+    }
+}
@@ -0,0 +1,260 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter;
+
+import com.getcapacitor.JSObject;
+
+/*
+ * Alternates active and passive discovery for a long running route scan instead of scanning
+ * actively until it is stopped.
+ *
+ * A scan starts with an active burst of burstMs, then keeps its callback registered without the
+ * active scan flag (passive: it still hears about routes other apps or the system find), with a
+ * new burst every interval.  The interval halves, down to minIntervalMs, after a burst or a
+ * passive period in which the route set changed, and doubles up to maxIntervalMs when it did not,
+ * so a stable network is probed less and less often.  In the background the callback is removed
+ * altogether and coming back to the foreground starts a burst.  Must only be used from the main thread.
+ */
+final class DiscoveryScheduler {
+    static final int MODE_STOPPED = 0;
+    static final int MODE_PASSIVE = 1;
+    static final int MODE_ACTIVE = 2;
+
+    private static final String[] MODE_NAMES = {"stopped", "passive", "active"};
+
+    /**
+     * The timings of the scans of a plugin instance.
+     */
+    static final class Options {
+        /** Length of an active burst. */
+        private volatile long burstMs = 8000;
+        /** Shortest and longest interval between two bursts. */
+        private volatile long minIntervalMs = 15000;
+        private volatile long maxIntervalMs = 240000;
+
+        /**
+         * Sets the given timings and keeps the others, a running scan uses them from its next burst.
+         * @param burst length of an active burst, null to keep it
+         * @param minInterval shortest interval between two bursts, null to keep it
+         * @param maxInterval longest interval between two bursts, null to keep it
+         */
+        synchronized void set(Long burst, Long minInterval, Long maxInterval) {
+            long nextBurst = Math.max(1000, burst != null ? burst : burstMs);
+            long nextMin = Math.max(nextBurst, minInterval != null ? minInterval : minIntervalMs);
+            maxIntervalMs = Math.max(nextMin, maxInterval != null ? maxInterval : maxIntervalMs);
+            minIntervalMs = nextMin;
+            burstMs = nextBurst;
+        }
+    }
+
+    /** Stats, for every scan of the process. */
+    private static long statActiveStarts = 0;
+    private static long statPassiveStarts = 0;
+    private static long statStops = 0;
+    private static long statRouteChanges = 0;
+    private static final long[] statModeMs = new long[3];
+    /** Timestamps of the recent route set changes, for the change rate. */
+    private static final long[] recentChanges = new long[64];
+    private static int recentChangesCount = 0;
+    /** The running scheduler, for the stats of the current mode. */
+    private static DiscoveryScheduler current;
+
+    private final MediaRouter router;
+    private final MediaRouteSelector selector;
+    private final MediaRouter.Callback callback;
+    private final Options options;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Read by getStats from other threads. */
+    private volatile int mode = MODE_STOPPED;
+    private volatile long modeSince = SystemClock.elapsedRealtime();
+    /** Interval until the next burst. */
+    private volatile long intervalMs;
+    /** Whether the route set changed in the current burst or passive period. */
+    private boolean changedInPeriod = false;
+    private boolean foreground = true;
+    private boolean started = false;
+
+    private final Runnable endBurst = new Runnable() {
+        @Override
+        public void run() {
+            adapt();
+            setMode(MODE_PASSIVE);
+            handler.postDelayed(startBurst, intervalMs);
+        }
+    };
+
+    private final Runnable startBurst = new Runnable() {
+        @Override
+        public void run() {
+            adapt();
+            burst();
+        }
+    };
+
+    DiscoveryScheduler(MediaRouter router, MediaRouteSelector selector, MediaRouter.Callback callback, Options options) {
+        this.router = router;
+        this.selector = selector;
+        this.callback = callback;
+        this.options = options;
+        this.intervalMs = options.minIntervalMs;
+    }
+
+    /**
+     * @return the callback this scheduler registers
+     */
+    MediaRouter.Callback getCallback() {
+        return callback;
+    }
+
+    /**
+     * Starts with an active burst, or waits for the foreground.
+     */
+    void start() {
+        started = true;
+        synchronized (DiscoveryScheduler.class) {
+            current = this;
+        }
+        if (foreground) {
+            burst();
+        }
+    }
+
+    /**
+     * Removes the callback for good.
+     */
+    void stop() {
+        started = false;
+        handler.removeCallbacks(endBurst);
+        handler.removeCallbacks(startBurst);
+        setMode(MODE_STOPPED);
+        synchronized (DiscoveryScheduler.class) {
+            if (current == this) {
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Called when the app comes to the foreground or a picker opens: bursts straight away.
+     */
+    void onForeground() {
+        foreground = true;
+        if (started && mode != MODE_ACTIVE) {
+            handler.removeCallbacks(startBurst);
+            intervalMs = options.minIntervalMs;
+            burst();
+        }
+    }
+
+    /**
+     * Called when the app goes to the background: stops discovering until onForeground.
+     */
+    void onBackground() {
+        foreground = false;
+        handler.removeCallbacks(endBurst);
+        handler.removeCallbacks(startBurst);
+        setMode(MODE_STOPPED);
+    }
+
+    /**
+     * Called when the set of available routes changed.
+     */
+    void onRouteSetChanged() {
+        changedInPeriod = true;
+        synchronized (DiscoveryScheduler.class) {
+            statRouteChanges++;
+            recentChanges[recentChangesCount % recentChanges.length] = SystemClock.elapsedRealtime();
+            recentChangesCount++;
+        }
+    }
+
+    private void burst() {
+        setMode(MODE_ACTIVE);
+        handler.postDelayed(endBurst, options.burstMs);
+    }
+
+    /**
+     * Shortens the interval if the last period saw changes, else lengthens it.
+     */
+    private void adapt() {
+        intervalMs = changedInPeriod
+                ? Math.max(options.minIntervalMs, intervalMs / 2)
+                : Math.min(options.maxIntervalMs, intervalMs * 2);
+        changedInPeriod = false;
+    }
+
+    private void setMode(int next) {
+        if (next == mode) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        synchronized (DiscoveryScheduler.class) {
+            statModeMs[mode] += now - modeSince;
+            if (next == MODE_ACTIVE) {
+                statActiveStarts++;
+            } else if (next == MODE_PASSIVE) {
+                statPassiveStarts++;
+            } else {
+                statStops++;
+            }
+        }
+        mode = next;
+        modeSince = now;
+        switch (next) {
+            case MODE_ACTIVE:
+                router.addCallback(selector, callback, MediaRouter.CALLBACK_FLAG_PERFORM_ACTIVE_SCAN);
+                break;
+            case MODE_PASSIVE:
+                // addCallback only adds flags to a registered callback, so register it again
+                router.removeCallback(callback);
+                router.addCallback(selector, callback, 0);
+                break;
+            default:
+                router.removeCallback(callback);
+                break;
+        }
+    }
+
+    /**
+     * @return {mode, intervalMs, burstMs, activeStarts, passiveStarts, stops, activeMs, passiveMs,
+     *         stoppedMs, routeChanges, routeChangesPerMinute}, stoppedMs being the time scans were
+     *         paused in the background and routeChangesPerMinute over the last 5 minutes
+     * @param options the timings of the plugin instance, for burstMs
+     */
+    static synchronized JSObject getStats(Options options) {
+        long now = SystemClock.elapsedRealtime();
+        long[] modeMs = statModeMs.clone();
+        JSObject out = new JSObject();
+        if (current != null) {
+            // Counts the running period too
+            modeMs[current.mode] += now - current.modeSince;
+            out.put("mode", MODE_NAMES[current.mode]);
+            out.put("intervalMs", current.intervalMs);
+        } else {
+            out.put("mode", MODE_NAMES[MODE_STOPPED]);
+        }
+        out.put("burstMs", options.burstMs);
+        out.put("activeStarts", statActiveStarts);
+        out.put("passiveStarts", statPassiveStarts);
+        out.put("stops", statStops);
+        out.put("activeMs", modeMs[MODE_ACTIVE]);
+        out.put("passiveMs", modeMs[MODE_PASSIVE]);
+        out.put("stoppedMs", modeMs[MODE_STOPPED]);
+        out.put("routeChanges", statRouteChanges);
+        int recent = 0;
+        int kept = Math.min(recentChangesCount, recentChanges.length);
+        for (int i = 0; i < kept; i++) {
+            if (now - recentChanges[i] <= 5 * 60000) {
+                recent++;
+            }
+        }
+        out.put("routeChangesPerMinute", recent / 5.0);
+        return out;
+    }
+}
@@ -0,0 +1,223 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Sits between the session callbacks and the bridge and limits how often each event is sent.
+ *
+ * Events without a limit are delivered immediately.  For a limited event the first update is
+ * delivered straight away, then the updates received within the minimum interval are held and
+ * delivered when the interval elapses.  State events (submit) replace each other and only the
+ * latest one is delivered, queued events (queue, eg. messages) are all delivered in order.
+ * The coalescing window applies to every event with a max rate, and to the window events given
+ * to the constructor even without one.
+ */
+final class EventCoalescer {
+
+    interface Sink {
+        /**
+         * Called on the main looper (or the submitting thread for unlimited events).
+         * @param eventName the event name
+         * @param args the latest payload for the event
+         */
+        void deliver(String eventName, JSONObject args);
+    }
+
+    /** Where the coalesced events go. */
+    private final Sink sink;
+    /** Events the window applies to without a max rate. */
+    private final Set<String> windowEvents;
+    /** Used to schedule the trailing delivery. */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /** Minimum interval applied to every limited event, in ms. */
+    private long windowMs = 0;
+    /** Minimum interval between two deliveries per event name, in ms. */
+    private final Map<String, Long> minIntervals = new HashMap<>();
+    /** Last delivery time per event name. */
+    private final Map<String, Long> lastDelivered = new HashMap<>();
+    /** Undelivered payloads per event name, by key: null for the latest state, unique for queued ones. */
+    private final Map<String, LinkedHashMap<Object, JSONObject>> pending = new HashMap<>();
+
+    /**
+     * @param sink where the events go
+     * @param windowEvents the events the window applies to even without a max rate
+     */
+    EventCoalescer(Sink sink, String... windowEvents) {
+        this.sink = sink;
+        this.windowEvents = new HashSet<>(Arrays.asList(windowEvents));
+    }
+
+    /**
+     * Sets the coalescing window applied to every event with a rate limit and to the window
+     * events.  A 0 window delivers what the window alone held back.
+     * @param window ms, 0 to only use the per event rates
+     */
+    void setWindow(long window) {
+        Map<String, LinkedHashMap<Object, JSONObject>> waiting = new LinkedHashMap<>();
+        synchronized (this) {
+            this.windowMs = Math.max(0, window);
+            if (windowMs == 0) {
+                for (String eventName : windowEvents) {
+                    if (!minIntervals.containsKey(eventName)) {
+                        waiting.put(eventName, take(eventName));
+                    }
+                }
+            }
+        }
+        deliverAll(waiting);
+    }
+
+    /**
+     * Limits how often an event can be delivered.
+     * @param eventName the event name
+     * @param maxPerSecond max deliveries per second, <= 0 removes the limit
+     */
+    void setMaxRate(String eventName, double maxPerSecond) {
+        LinkedHashMap<Object, JSONObject> waiting = null;
+        synchronized (this) {
+            if (maxPerSecond <= 0) {
+                minIntervals.remove(eventName);
+                if (intervalOf(eventName) == null) {
+                    waiting = take(eventName);
+                }
+            } else {
+                minIntervals.put(eventName, (long) Math.ceil(1000.0 / maxPerSecond));
+            }
+        }
+        deliver(eventName, waiting);
+    }
+
+    /**
+     * Removes all limits and delivers anything still pending.
+     */
+    void clear() {
+        Map<String, LinkedHashMap<Object, JSONObject>> waiting = new LinkedHashMap<>();
+        synchronized (this) {
+            windowMs = 0;
+            minIntervals.clear();
+            for (String eventName : pending.keySet().toArray(new String[0])) {
+                waiting.put(eventName, take(eventName));
+            }
+        }
+        deliverAll(waiting);
+    }
+
+    /**
+     * Submits a state event, an update held back is replaced by the next one.
+     * @param eventName the event name
+     * @param args the payload
+     */
+    void submit(String eventName, JSONObject args) {
+        submit(eventName, null, args);
+    }
+
+    /**
+     * Submits an event that is never replaced (eg. a message), the ones held back are all
+     * delivered in order.
+     * @param eventName the event name
+     * @param args the payload
+     */
+    void queue(String eventName, JSONObject args) {
+        submit(eventName, new Object(), args);
+    }
+
+    private void submit(final String eventName, Object key, JSONObject args) {
+        LinkedHashMap<Object, JSONObject> due;
+        synchronized (this) {
+            Long interval = intervalOf(eventName);
+            if (interval != null) {
+                long now = SystemClock.uptimeMillis();
+                Long last = lastDelivered.get(eventName);
+                LinkedHashMap<Object, JSONObject> waiting = pending.get(eventName);
+                if (waiting == null) {
+                    waiting = new LinkedHashMap<>();
+                    pending.put(eventName, waiting);
+                }
+                boolean scheduled = !waiting.isEmpty();
+                // Re-insert so the delivery order follows the latest update
+                waiting.remove(key);
+                waiting.put(key, args);
+                if (scheduled) {
+                    return;
+                }
+                long delay = last == null ? 0 : last + interval - now;
+                if (delay > 0) {
+                    handler.postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            LinkedHashMap<Object, JSONObject> waiting;
+                            synchronized (EventCoalescer.this) {
+                                waiting = take(eventName);
+                            }
+                            deliver(eventName, waiting);
+                        }
+                    }, delay);
+                    return;
+                }
+                due = take(eventName);
+            } else {
+                due = null;
+            }
+        }
+        if (due != null) {
+            deliver(eventName, due);
+        } else {
+            sink.deliver(eventName, args);
+        }
+    }
+
+    /**
+     * @return the minimum interval between two deliveries of the event, null if not limited.
+     *         Must hold the lock.
+     */
+    private Long intervalOf(String eventName) {
+        Long limit = minIntervals.get(eventName);
+        if (limit != null) {
+            return Math.max(limit, windowMs);
+        }
+        return windowMs > 0 && windowEvents.contains(eventName) ? windowMs : null;
+    }
+
+    /**
+     * Removes the pending payloads of an event and records their delivery time.  Must hold the
+     * lock, the payloads are delivered once it is released.
+     * @return the payloads, null if none
+     */
+    private LinkedHashMap<Object, JSONObject> take(String eventName) {
+        LinkedHashMap<Object, JSONObject> waiting = pending.remove(eventName);
+        if (waiting == null || waiting.isEmpty()) {
+            return null;
+        }
+        lastDelivered.put(eventName, SystemClock.uptimeMillis());
+        return waiting;
+    }
+
+    /**
+     * Delivers payloads returned by take.  Must not hold the lock.
+     */
+    private void deliver(String eventName, LinkedHashMap<Object, JSONObject> waiting) {
+        if (waiting == null) {
+            return;
+        }
+        for (JSONObject args : waiting.values()) {
+            sink.deliver(eventName, args);
+        }
+    }
+
+    private void deliverAll(Map<String, LinkedHashMap<Object, JSONObject>> waiting) {
+        for (Map.Entry<String, LinkedHashMap<Object, JSONObject>> entry : waiting.entrySet()) {
+            deliver(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Single background thread on which the media and session objects are built and the events are
+ * sent to the bridge.
+ *
+ * Tasks run in the order they were submitted, and a task submitted from the serializer thread
+ * itself runs inline so that anything it sends stays ahead of tasks submitted after it.
+ * When disabled the tasks run on the submitting thread, which is how it worked before
+ * (kept to compare the main thread cost with getMainThreadStats).
+ */
+final class EventSerializer {
+    /** The thread tasks run on. */
+    private final HandlerThread thread;
+    /** Posts tasks to the thread. */
+    private final Handler handler;
+    /** Whether tasks are moved to the thread. */
+    private volatile boolean enabled = true;
+    /** Number of posted tasks that have not run yet. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    EventSerializer() {
+        thread = new HandlerThread("ChromecastSerializer");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * @param enabled false to run the tasks on the submitting thread
+     */
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the serializer thread's looper, for work that does not need to be ordered with the events
+     */
+    Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    /**
+     * Runs the task on the serializer thread, in submission order.
+     * @param task the task
+     */
+    void execute(final Runnable task) {
+        if (Looper.myLooper() == thread.getLooper()) {
+            task.run();
+            return;
+        }
+        // While disabled, only run inline once the already posted tasks are done to keep the order
+        if (!enabled && pending.get() == 0) {
+            task.run();
+            return;
+        }
+        pending.incrementAndGet();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the thread once the tasks already submitted have run.
+     */
+    void quit() {
+        thread.quitSafely();
+    }
+}
@@ -0,0 +1,158 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+import com.google.android.gms.cast.framework.CastSession;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+/*
+ * Times the phases of one session join and reports them once it ended.
+ *
+ * The phases are in ms since the join started, -1 when not reached: routeFoundMs (the route was
+ * selected), sessionStartingMs, sessionStartedMs and mediaClientReadyMs (the media client got
+ * its first status from the receiver, given up after MEDIA_CLIENT_TIMEOUT_MS).  A failed join
+ * reports what it reached with its error.  Must only be used from the main thread.
+ */
+final class JoinTimer {
+    /** How long to wait for the first media status after the session started. */
+    private static final long MEDIA_CLIENT_TIMEOUT_MS = 5000;
+
+    interface Sink {
+        /**
+         * @param timing {routeId, fastPath, routeFoundMs, sessionStartingMs, sessionStartedMs,
+         *               mediaClientReadyMs, totalMs, success, error}
+         */
+        void onJoinTiming(JSObject timing);
+    }
+
+    private final Sink sink;
+    private final long startedAt = SystemClock.elapsedRealtime();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private String routeId;
+    private boolean fastPath = false;
+    private long routeFoundAt = -1;
+    private long sessionStartingAt = -1;
+    private long sessionStartedAt = -1;
+    private long mediaClientReadyAt = -1;
+    private boolean reported = false;
+    private RemoteMediaClient client;
+
+    private final RemoteMediaClient.Callback statusCallback = new RemoteMediaClient.Callback() {
+        @Override
+        public void onStatusUpdated() {
+            mediaClientReady();
+        }
+    };
+
+    private final Runnable mediaClientTimeout = new Runnable() {
+        @Override
+        public void run() {
+            report(true, null);
+        }
+    };
+
+    /**
+     * @param routeId the route joined, null if not known yet (picker)
+     * @param sink where the timing goes
+     */
+    JoinTimer(String routeId, Sink sink) {
+        this.routeId = routeId;
+        this.sink = sink;
+    }
+
+    /**
+     * Called before selecting a route, again if the selection is retried.
+     * @param id the route selected
+     * @param fromRouterList true if it was selected from the router's list without scanning
+     */
+    void routeFound(String id, boolean fromRouterList) {
+        routeId = id;
+        fastPath = fromRouterList;
+        routeFoundAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Called when a session starts, only counts if routeFound was not called (picker).
+     * @param id the route selected
+     */
+    void routePicked(String id) {
+        if (routeFoundAt < 0) {
+            routeId = id;
+            routeFoundAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    void sessionStarting() {
+        if (sessionStartingAt < 0) {
+            sessionStartingAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Waits for the media client's first status, then reports.
+     * @param session the session started
+     */
+    void sessionStarted(CastSession session) {
+        if (reported || sessionStartedAt >= 0) {
+            return;
+        }
+        sessionStartedAt = SystemClock.elapsedRealtime();
+        client = session.getRemoteMediaClient();
+        if (client == null) {
+            report(true, null);
+            return;
+        }
+        if (client.getMediaStatus() != null) {
+            mediaClientReady();
+            return;
+        }
+        client.registerCallback(statusCallback);
+        handler.postDelayed(mediaClientTimeout, MEDIA_CLIENT_TIMEOUT_MS);
+    }
+
+    /**
+     * Reports a join that did not succeed.
+     * @param error the error code
+     */
+    void failed(String error) {
+        report(false, error);
+    }
+
+    private void mediaClientReady() {
+        if (mediaClientReadyAt < 0) {
+            mediaClientReadyAt = SystemClock.elapsedRealtime();
+        }
+        report(true, null);
+    }
+
+    private void report(boolean success, String error) {
+        if (reported) {
+            return;
+        }
+        reported = true;
+        handler.removeCallbacks(mediaClientTimeout);
+        if (client != null) {
+            client.unregisterCallback(statusCallback);
+        }
+        JSObject out = new JSObject();
+        out.put("routeId", routeId);
+        out.put("fastPath", fastPath);
+        out.put("routeFoundMs", since(routeFoundAt));
+        out.put("sessionStartingMs", since(sessionStartingAt));
+        out.put("sessionStartedMs", since(sessionStartedAt));
+        out.put("mediaClientReadyMs", since(mediaClientReadyAt));
+        out.put("totalMs", SystemClock.elapsedRealtime() - startedAt);
+        out.put("success", success);
+        if (error != null) {
+            out.put("error", error);
+        }
+        sink.onJoinTiming(out);
+    }
+
+    private long since(long at) {
+        return at >= 0 ? at - startedAt : -1;
+    }
+}
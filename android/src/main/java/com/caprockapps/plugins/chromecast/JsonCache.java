@@ -0,0 +1,47 @@
+package com.caprockapps.plugins.chromecast;
+
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Bounded least-recently-used cache of already built output JSON.
+ *
+ * Keys are compared with equals(), so the Cast SDK objects (MediaInfo, MediaQueueItem) hit
+ * both when the same instance is seen again and when an equal copy is parsed from a new status.
+ * Cached values are shared between outputs and must never be mutated.
+ */
+final class JsonCache<K> {
+    /** The cached values, in access order. */
+    private final LinkedHashMap<K, JSONObject> map;
+
+    /**
+     * @param maxSize the number of entries after which the least recently used is evicted
+     */
+    JsonCache(final int maxSize) {
+        this.map = new LinkedHashMap<K, JSONObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, JSONObject> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized JSONObject get(K key) {
+        if (key == null) {
+            return null;
+        }
+        return map.get(key);
+    }
+
+    synchronized void put(K key, JSONObject value) {
+        if (key != null && value != null) {
+            map.put(key, value);
+        }
+    }
+
+    synchronized void clear() {
+        map.clear();
+    }
+}
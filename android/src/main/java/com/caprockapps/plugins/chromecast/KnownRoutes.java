@@ -0,0 +1,256 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.mediarouter.media.MediaRouter.RouteInfo;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.google.android.gms.cast.CastDevice;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Remembers the routes seen by the scans across app launches, so a picker can list them before
+ * any scan found them.
+ *
+ * Each route is kept as {id, name, modelName, lastSeen, attempts, successes}, at most MAX_ROUTES
+ * of them, the least recently seen are dropped first.  The cache is loaded, updated and saved on
+ * the given looper only (the serializer thread), the main thread just hands it what it saw.
+ * Saving waits SAVE_DELAY_MS so a scan reporting routes one by one writes once.
+ */
+final class KnownRoutes {
+    /** Most routes remembered. */
+    private static final int MAX_ROUTES = 20;
+    /** Delay before saving a change. */
+    private static final long SAVE_DELAY_MS = 2000;
+    private static final String PREFS = "CORDOVA-PLUGIN-CHROMECAST_KnownRoutes";
+    private static final String KEY = "routes";
+
+    /** A route as remembered. */
+    private static final class Entry {
+        final String id;
+        String name;
+        String modelName;
+        long lastSeen;
+        int attempts;
+        int successes;
+
+        Entry(String id) {
+            this.id = id;
+        }
+
+        JSONObject toJSON() throws JSONException {
+            JSONObject out = new JSONObject();
+            out.put("id", id);
+            out.put("name", name);
+            out.put("modelName", modelName);
+            out.put("lastSeen", lastSeen);
+            out.put("attempts", attempts);
+            out.put("successes", successes);
+            return out;
+        }
+
+        static Entry fromJSON(JSONObject in) {
+            Entry entry = new Entry(in.optString("id"));
+            entry.name = in.optString("name", null);
+            entry.modelName = in.optString("modelName", null);
+            entry.lastSeen = in.optLong("lastSeen");
+            entry.attempts = in.optInt("attempts");
+            entry.successes = in.optInt("successes");
+            return entry;
+        }
+    }
+
+    private final Context context;
+    private final Handler handler;
+    /** Routes by id, only used from the handler's thread. */
+    private final Map<String, Entry> routes = new LinkedHashMap<>();
+    /** Ids of the routes in the last scan result of this process. */
+    private Set<String> available = new HashSet<>();
+    private SharedPreferences prefs;
+
+    private final Runnable save = new Runnable() {
+        @Override
+        public void run() {
+            JSONArray out = new JSONArray();
+            for (Entry entry : routes.values()) {
+                try {
+                    out.put(entry.toJSON());
+                } catch (JSONException e) {
+                }
+            }
+            prefs.edit().putString(KEY, out.toString()).apply();
+        }
+    };
+
+    /**
+     * Starts loading the cache in the background.
+     * @param context used to open the preferences
+     * @param looper the thread the cache is used from
+     */
+    KnownRoutes(Context context, Looper looper) {
+        this.context = context.getApplicationContext();
+        this.handler = new Handler(looper);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    private void load() {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        try {
+            JSONArray saved = new JSONArray(prefs.getString(KEY, "[]"));
+            for (int i = 0; i < saved.length(); i++) {
+                JSONObject route = saved.optJSONObject(i);
+                if (route != null && route.has("id")) {
+                    Entry entry = Entry.fromJSON(route);
+                    routes.put(entry.id, entry);
+                }
+            }
+        } catch (JSONException e) {
+            // Corrupted, start over
+            routes.clear();
+        }
+    }
+
+    /**
+     * Records the routes of a scan result.  Must be called from the main thread.
+     * @param seen the filtered routes currently available
+     */
+    void onRoutesSeen(List<RouteInfo> seen) {
+        final long now = System.currentTimeMillis();
+        final List<Entry> update = new ArrayList<>(seen.size());
+        for (RouteInfo route : seen) {
+            Entry entry = new Entry(route.getId());
+            entry.name = route.getName();
+            CastDevice device = RouteFilter.getDevice(route);
+            if (device != null) {
+                entry.modelName = device.getModelName();
+            }
+            update.add(entry);
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Set<String> ids = new HashSet<>();
+                for (Entry seenEntry : update) {
+                    ids.add(seenEntry.id);
+                    Entry entry = routes.get(seenEntry.id);
+                    if (entry == null) {
+                        entry = seenEntry;
+                        routes.put(entry.id, entry);
+                    } else {
+                        entry.name = seenEntry.name;
+                        if (seenEntry.modelName != null) {
+                            entry.modelName = seenEntry.modelName;
+                        }
+                    }
+                    entry.lastSeen = now;
+                }
+                available = ids;
+                trim();
+                scheduleSave();
+            }
+        });
+    }
+
+    /**
+     * Records the outcome of a connection attempt.
+     * @param routeId the route, ignored if null or unknown
+     * @param success whether the session started
+     */
+    void onConnectionResult(final String routeId, final boolean success) {
+        if (routeId == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                Entry entry = routes.get(routeId);
+                if (entry == null) {
+                    return;
+                }
+                entry.attempts++;
+                if (success) {
+                    entry.successes++;
+                    entry.lastSeen = System.currentTimeMillis();
+                }
+                scheduleSave();
+            }
+        });
+    }
+
+    /**
+     * Lists the known routes, most recently seen first.  Waits for the cache to be loaded.
+     * @param then called on the cache thread with [{id, name, modelName, lastSeen, successRate,
+     *             available}], available being true for the routes of the last scan result and
+     *             successRate null until a connection was attempted
+     */
+    void list(final Callback then) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                List<Entry> sorted = new ArrayList<>(routes.values());
+                Collections.sort(sorted, new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry a, Entry b) {
+                        return Long.compare(b.lastSeen, a.lastSeen);
+                    }
+                });
+                JSArray out = new JSArray();
+                for (Entry entry : sorted) {
+                    JSObject route = new JSObject();
+                    route.put("id", entry.id);
+                    route.put("name", entry.name);
+                    route.put("modelName", entry.modelName);
+                    route.put("lastSeen", entry.lastSeen);
+                    // Unknown until a connection was attempted
+                    route.put("successRate", entry.attempts > 0
+                            ? (Object) ((double) entry.successes / entry.attempts) : JSONObject.NULL);
+                    route.put("available", available.contains(entry.id));
+                    out.put(route);
+                }
+                then.onList(out);
+            }
+        });
+    }
+
+    interface Callback {
+        void onList(JSArray routes);
+    }
+
+    private void trim() {
+        while (routes.size() > MAX_ROUTES) {
+            Entry oldest = null;
+            for (Entry entry : routes.values()) {
+                if (oldest == null || entry.lastSeen < oldest.lastSeen) {
+                    oldest = entry;
+                }
+            }
+            routes.remove(oldest.id);
+        }
+    }
+
+    private void scheduleSave() {
+        handler.removeCallbacks(save);
+        handler.postDelayed(save, SAVE_DELAY_MS);
+    }
+}
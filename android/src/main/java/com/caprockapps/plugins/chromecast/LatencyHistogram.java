@@ -0,0 +1,83 @@
+package com.caprockapps.plugins.chromecast;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * Fixed bucket latency histogram, cheap enough to record every call.
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+final class LatencyHistogram {
+    /** Upper bounds of the buckets in ms, the last bucket is unbounded. */
+    private static final long[] BOUNDS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final long[] counts = new long[BOUNDS.length + 1];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    /** Calls that got no latency (timeouts, send failures). */
+    private long failures = 0;
+
+    synchronized void record(long latencyMs) {
+        int i = 0;
+        while (i < BOUNDS.length && latencyMs > BOUNDS[i]) {
+            i++;
+        }
+        counts[i]++;
+        count++;
+        sum += latencyMs;
+        min = Math.min(min, latencyMs);
+        max = Math.max(max, latencyMs);
+    }
+
+    synchronized void recordFailure() {
+        failures++;
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return the upper bound of the bucket holding that fraction of the calls, -1 if unbounded
+     */
+    private long percentile(double fraction) {
+        long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], max) : max;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return {count, failures, minMs, maxMs, avgMs, p50Ms, p90Ms, p99Ms, buckets: [{le, count}]}
+     */
+    synchronized JSONObject toJSON() {
+        JSONObject out = new JSONObject();
+        try {
+            out.put("count", count);
+            out.put("failures", failures);
+            if (count > 0) {
+                out.put("minMs", min);
+                out.put("maxMs", max);
+                out.put("avgMs", (double) sum / count);
+                out.put("p50Ms", percentile(0.5));
+                out.put("p90Ms", percentile(0.9));
+                out.put("p99Ms", percentile(0.99));
+            }
+            JSONArray buckets = new JSONArray();
+            for (int i = 0; i < counts.length; i++) {
+                JSONObject bucket = new JSONObject();
+                bucket.put("le", i < BOUNDS.length ? BOUNDS[i] : -1);
+                bucket.put("count", counts[i]);
+                buckets.put(bucket);
+            }
+            out.put("buckets", buckets);
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+}
@@ -0,0 +1,35 @@
+package com.caprockapps.plugins.chromecast;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+/*
+ * One loadMedia call.  Only the newest load is sent to the receiver, older ones that were not
+ * settled yet resolve straight away with superseded: true and their late results are ignored,
+ * so each call is settled exactly once.
+ */
+final class LoadRequest {
+    /** Increasing id, returned as "loadId". */
+    final int id;
+    /** The call to settle. */
+    final PluginCall call;
+
+    LoadRequest(int id, PluginCall call) {
+        this.id = id;
+        this.call = call;
+    }
+
+    /**
+     * Resolves the call with {loadId, superseded: true, supersededBy, sent}.
+     * @param byId the id of the newer load
+     * @param sent whether this load had been sent to the receiver
+     */
+    void supersede(int byId, boolean sent) {
+        JSObject out = new JSObject();
+        out.put("loadId", id);
+        out.put("superseded", true);
+        out.put("supersededBy", byId);
+        out.put("sent", sent);
+        call.resolve(out);
+    }
+}
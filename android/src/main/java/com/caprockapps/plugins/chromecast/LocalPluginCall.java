@@ -0,0 +1,55 @@
+package com.caprockapps.plugins.chromecast;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+/*
+ * A PluginCall made by the plugin itself, to run a plugin or session method without a bridge
+ * call (batches, benchmarks).  Its result goes to onResolve or onReject instead of the bridge,
+ * only the first result counts.
+ */
+abstract class LocalPluginCall extends PluginCall {
+    private boolean settled = false;
+
+    LocalPluginCall(String methodName, JSObject data) {
+        super(null, "Chromecast", PluginCall.CALLBACK_ID_DANGLING, methodName, data != null ? data : new JSObject());
+    }
+
+    /**
+     * @param data the result, null if resolved without one
+     */
+    abstract void onResolve(JSObject data);
+
+    /**
+     * @param message the error message
+     * @param code the error code, may be null
+     */
+    abstract void onReject(String message, String code);
+
+    @Override
+    public void resolve(JSObject data) {
+        if (settle()) {
+            onResolve(data);
+        }
+    }
+
+    @Override
+    public void resolve() {
+        resolve(null);
+    }
+
+    @Override
+    public void reject(String msg, String code, Exception ex, JSObject data) {
+        if (settle()) {
+            onReject(msg, code);
+        }
+    }
+
+    private synchronized boolean settle() {
+        if (settled) {
+            return false;
+        }
+        settled = true;
+        return true;
+    }
+}
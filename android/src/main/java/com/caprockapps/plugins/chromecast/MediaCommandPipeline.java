@@ -0,0 +1,194 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient.MediaChannelResult;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/*
+ * Sends the media commands of one session to the receiver one at a time, in order.
+ *
+ * A command is only sent once the previous one was acknowledged, and its call resolves with the
+ * round trip latency and the player state that resulted from it.  Play and pause commands that
+ * would not change the state expected after the queued commands are not sent at all.
+ * Must only be used from the main thread.
+ */
+final class MediaCommandPipeline {
+
+    abstract static class Command {
+        /** The command name, returned as "command". */
+        final String name;
+        /** The call to settle. */
+        final PluginCall call;
+        /** When the command was sent (elapsedRealtime). */
+        private long sentAt;
+
+        Command(String name, PluginCall call) {
+            this.name = name;
+            this.call = call;
+        }
+
+        /**
+         * Sends the command.
+         * @param client the session's client
+         * @return the pending acknowledgement
+         */
+        abstract PendingResult<MediaChannelResult> send(RemoteMediaClient client);
+
+        /**
+         * @return true if playing after this command, false if paused, null if it does not change it
+         */
+        Boolean playingAfter() {
+            return null;
+        }
+
+        /**
+         * Called when the receiver acknowledged the command.
+         * @param result {command, latencyMs, playerState, currentItemId, currentTime}
+         */
+        void complete(JSObject result) {
+            call.resolve(result);
+        }
+
+        /**
+         * Called when the command failed or was dropped.
+         * @param message the error message
+         * @param code "command_failed" if the receiver or the SDK refused it, "session_error" if
+         *             the session ended first
+         */
+        void fail(String message, String code) {
+            call.reject(message, code);
+        }
+    }
+
+    /** The client the commands are sent to. */
+    private final RemoteMediaClient client;
+    /** Commands waiting for the one in flight. */
+    private final ArrayDeque<Command> queue = new ArrayDeque<>();
+    /** The command waiting for its acknowledgement, null if none. */
+    private Command inFlight;
+    /** Set once the session changed, late results are still delivered but nothing else is sent. */
+    private boolean cancelled = false;
+
+    MediaCommandPipeline(RemoteMediaClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Queues a command, or resolves it straight away with skipped: true if it is a no-op.
+     * @param command the command
+     */
+    void enqueue(Command command) {
+        if (cancelled) {
+            command.fail("session_error", "session_error");
+            return;
+        }
+        Boolean after = command.playingAfter();
+        if (after != null && after.equals(expectedPlaying())) {
+            JSObject out = createResult(command, 0);
+            out.put("skipped", true);
+            command.complete(out);
+            return;
+        }
+        queue.add(command);
+        sendNext();
+    }
+
+    /**
+     * Fails the queued commands, the one in flight still completes.
+     */
+    void cancel() {
+        cancelled = true;
+        Iterator<Command> it = queue.iterator();
+        while (it.hasNext()) {
+            it.next().fail("session_error", "session_error");
+            it.remove();
+        }
+    }
+
+    /**
+     * @return whether the receiver will be playing once the queued commands ran, null if unknown
+     */
+    private Boolean expectedPlaying() {
+        Iterator<Command> it = queue.descendingIterator();
+        while (it.hasNext()) {
+            Boolean after = it.next().playingAfter();
+            if (after != null) {
+                return after;
+            }
+        }
+        if (inFlight != null && inFlight.playingAfter() != null) {
+            return inFlight.playingAfter();
+        }
+        MediaStatus status = client.getMediaStatus();
+        if (status == null) {
+            return null;
+        }
+        switch (status.getPlayerState()) {
+            case MediaStatus.PLAYER_STATE_PLAYING:
+            case MediaStatus.PLAYER_STATE_BUFFERING:
+                return true;
+            case MediaStatus.PLAYER_STATE_PAUSED:
+                return false;
+            default:
+                return null;
+        }
+    }
+
+    private void sendNext() {
+        if (inFlight != null || cancelled) {
+            return;
+        }
+        final Command command = queue.poll();
+        if (command == null) {
+            return;
+        }
+        inFlight = command;
+        command.sentAt = SystemClock.elapsedRealtime();
+        PendingResult<MediaChannelResult> pending;
+        try {
+            pending = command.send(client);
+        } catch (RuntimeException e) {
+            inFlight = null;
+            command.fail(command.name + " failed: " + e.getMessage(), "command_failed");
+            sendNext();
+            return;
+        }
+        pending.setResultCallback(new ResultCallback<MediaChannelResult>() {
+            @Override
+            public void onResult(@NonNull MediaChannelResult result) {
+                long latency = SystemClock.elapsedRealtime() - command.sentAt;
+                if (result.getStatus().isSuccess()) {
+                    command.complete(createResult(command, latency));
+                } else {
+                    command.fail(command.name + " failed: " + result.getStatus().getStatusCode(), "command_failed");
+                }
+                inFlight = null;
+                sendNext();
+            }
+        });
+    }
+
+    private JSObject createResult(Command command, long latency) {
+        JSObject out = new JSObject();
+        out.put("command", command.name);
+        out.put("latencyMs", latency);
+        MediaStatus status = client.getMediaStatus();
+        if (status != null) {
+            out.put("playerState", ChromecastUtilities.getMediaPlayerState(status.getPlayerState()));
+            out.put("currentItemId", status.getCurrentItemId());
+            out.put("currentTime", status.getStreamPosition() / 1000.0);
+        }
+        return out;
+    }
+}
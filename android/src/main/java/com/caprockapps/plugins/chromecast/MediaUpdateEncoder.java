@@ -0,0 +1,176 @@
+package com.caprockapps.plugins.chromecast;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/*
+ * Turns successive media objects into MEDIA_UPDATE payloads.
+ *
+ * In full mode every update is sent as is.  In delta mode only the paths that changed since the
+ * previous update are sent, with a sequence number so the client can detect gaps, and a full
+ * keyframe is sent every keyframeInterval updates (or after reset()).  A path joins the keys with
+ * ".", the "~" and "." of a key being written "~0" and "~1" so every path is unambiguous.
+ */
+final class MediaUpdateEncoder {
+    /** Default number of deltas sent between two keyframes. */
+    static final int DEFAULT_KEYFRAME_INTERVAL = 20;
+
+    /** Whether we send deltas or full media objects. */
+    private boolean deltaEnabled = false;
+    /** Number of deltas between two keyframes. */
+    private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+    /** The last media object that was encoded. */
+    private JSONObject previous;
+    /** Sequence number of the last update. */
+    private long seq = 0;
+    /** Number of deltas sent since the last keyframe. */
+    private int sinceKeyframe = 0;
+
+    /**
+     * Enables or disables delta mode.  Always forces the next update to be a keyframe.
+     * @param enabled true to send deltas
+     * @param interval number of deltas between keyframes, values < 1 use the default
+     */
+    synchronized void setDeltaMode(boolean enabled, int interval) {
+        this.deltaEnabled = enabled;
+        this.keyframeInterval = interval < 1 ? DEFAULT_KEYFRAME_INTERVAL : interval;
+        reset();
+    }
+
+    synchronized boolean isDeltaEnabled() {
+        return deltaEnabled;
+    }
+
+    /**
+     * Forgets the previous snapshot so the next update is a keyframe (eg. on session change).
+     */
+    synchronized void reset() {
+        previous = null;
+        sinceKeyframe = 0;
+    }
+
+    /**
+     * Encodes a media object.
+     * @param media the new media object, must not be mutated after being passed in
+     * @return the payload to send, or null if nothing changed and nothing needs to be sent
+     */
+    synchronized JSONObject encode(JSONObject media) {
+        if (!deltaEnabled) {
+            return media;
+        }
+        JSONObject out = new JSObject();
+        try {
+            if (previous == null || sinceKeyframe >= keyframeInterval) {
+                out.put("seq", ++seq);
+                out.put("keyframe", true);
+                out.put("media", media);
+                sinceKeyframe = 0;
+            } else {
+                JSONObject changes = new JSONObject();
+                JSONArray removed = new JSONArray();
+                diff("", previous, media, changes, removed);
+                if (changes.length() == 0 && removed.length() == 0) {
+                    return null;
+                }
+                out.put("seq", ++seq);
+                out.put("keyframe", false);
+                out.put("changes", changes);
+                if (removed.length() > 0) {
+                    out.put("removed", removed);
+                }
+                sinceKeyframe++;
+            }
+        } catch (JSONException e) {
+            // Fall back to the full object
+            reset();
+            return media;
+        }
+        previous = media;
+        return out;
+    }
+
+    /**
+     * Collects the changed and removed paths between two objects.
+     * Nested objects are recursed into, arrays and primitives are treated as leaves.
+     */
+    private static void diff(String prefix, JSONObject before, JSONObject after, JSONObject changes, JSONArray removed) throws JSONException {
+        Iterator<String> keys = after.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            String path = prefix + escapeKey(key);
+            Object a = before.opt(key);
+            Object b = after.opt(key);
+            if (a instanceof JSONObject && b instanceof JSONObject) {
+                diff(path + ".", (JSONObject) a, (JSONObject) b, changes, removed);
+            } else if (!jsonEquals(a, b)) {
+                changes.put(path, b);
+            }
+        }
+        keys = before.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!after.has(key)) {
+                removed.put(prefix + escapeKey(key));
+            }
+        }
+    }
+
+    /**
+     * Escapes a key for use in a path.
+     */
+    static String escapeKey(String key) {
+        if (key.indexOf('~') < 0 && key.indexOf('.') < 0) {
+            return key;
+        }
+        return key.replace("~", "~0").replace(".", "~1");
+    }
+
+    /**
+     * Deep equality for values found in a JSONObject.
+     */
+    static boolean jsonEquals(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof JSONObject && b instanceof JSONObject) {
+            JSONObject oa = (JSONObject) a;
+            JSONObject ob = (JSONObject) b;
+            if (oa.length() != ob.length()) {
+                return false;
+            }
+            Iterator<String> keys = oa.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!ob.has(key) || !jsonEquals(oa.opt(key), ob.opt(key))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof JSONArray && b instanceof JSONArray) {
+            JSONArray aa = (JSONArray) a;
+            JSONArray ab = (JSONArray) b;
+            if (aa.length() != ab.length()) {
+                return false;
+            }
+            for (int i = 0; i < aa.length(); i++) {
+                if (!jsonEquals(aa.opt(i), ab.opt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        }
+        return a.equals(b);
+    }
+}
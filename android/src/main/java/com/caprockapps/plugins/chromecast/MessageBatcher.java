@@ -0,0 +1,287 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/*
+ * Gathers the messages sent on one namespace and sends them as a single envelope.
+ *
+ * A batch is flushed after flushIntervalMs, or as soon as it reaches maxBatchBytes (UTF-8 bytes
+ * of the quoted messages) or maxBatchCount.  The envelope is {"batch": 1, "messages": [...]}, or when it is at least
+ * compressThreshold bytes and deflating makes it smaller,
+ * {"batch": 1, "encoding": "deflate", "count", "data": base64(zlib([...]))}.
+ * custom-receiver/index.html unpacks both (addBatchedMessageListener).
+ */
+final class MessageBatcher {
+    /** Cast messages are limited to 64KB, keep some room for the framing. */
+    static final int MAX_FRAME_BYTES = 60000;
+    static final long DEFAULT_FLUSH_INTERVAL = 50;
+    static final int DEFAULT_MAX_BATCH_BYTES = 16384;
+    static final int DEFAULT_MAX_BATCH_COUNT = 100;
+    static final int DEFAULT_COMPRESS_THRESHOLD = 1024;
+
+    private final String namespace;
+    private final MessageTransport transport;
+    /** Runs the flushes, off the main thread. */
+    private final Handler handler;
+    private final long flushIntervalMs;
+    private final int maxBatchBytes;
+    private final int maxBatchCount;
+    /** Envelopes of at least this many bytes are deflated, 0 to never deflate. */
+    private final int compressThreshold;
+
+    /** A frame waiting to be sent: a batch, or a message too big to be batched. */
+    private static final class Frame {
+        final List<String> quoted;
+        final List<ResultCallback<Status>> callbacks;
+        final String alone;
+
+        Frame(List<String> quoted, List<ResultCallback<Status>> callbacks, String alone) {
+            this.quoted = quoted;
+            this.callbacks = callbacks;
+            this.alone = alone;
+        }
+    }
+
+    /** The quoted messages of the current batch. */
+    private List<String> messages = new ArrayList<>();
+    /** The callbacks of the current batch, called with the envelope's send status. */
+    private List<ResultCallback<Status>> callbacks = new ArrayList<>();
+    /** UTF-8 size of the quoted messages of the current batch, with their separators. */
+    private int batchBytes = 0;
+    /** Whether the flush timer of the current batch is posted. */
+    private boolean flushScheduled = false;
+    /** Frames waiting to be sent, in order. */
+    private final List<Frame> frames = new ArrayList<>();
+
+    /** Stats. */
+    private long statMessages = 0;
+    private long statFrames = 0;
+    private long statCompressedFrames = 0;
+    private long statPayloadBytes = 0;
+    private long statWireBytes = 0;
+
+    /** Sends the current batch when its interval elapsed. */
+    private final Runnable flushTimer = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (MessageBatcher.this) {
+                flushScheduled = false;
+                closeBatch();
+            }
+            drain();
+        }
+    };
+
+    /** Sends the frames already closed. */
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    MessageBatcher(String namespace, MessageTransport transport, Looper looper,
+                   long flushIntervalMs, int maxBatchBytes, int maxBatchCount, int compressThreshold) {
+        this.namespace = namespace;
+        this.transport = transport;
+        this.handler = new Handler(looper);
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.maxBatchBytes = Math.max(1, Math.min(maxBatchBytes, MAX_FRAME_BYTES));
+        this.maxBatchCount = Math.max(1, maxBatchCount);
+        this.compressThreshold = Math.max(0, compressThreshold);
+    }
+
+    /**
+     * Adds a message to the current batch.
+     * @param message the message
+     * @param callback called with the send status of the frame it goes out in
+     */
+    void add(String message, ResultCallback<Status> callback) {
+        String quoted = JSONObject.quote(message);
+        int quotedBytes = quoted.getBytes(StandardCharsets.UTF_8).length;
+        synchronized (this) {
+            statMessages++;
+            statPayloadBytes += message.getBytes(StandardCharsets.UTF_8).length;
+            if (quotedBytes >= maxBatchBytes) {
+                // Too big to share a frame, send what we have then this one as is
+                closeBatch();
+                List<ResultCallback<Status>> single = new ArrayList<>();
+                single.add(callback);
+                frames.add(new Frame(null, single, message));
+                handler.post(drainTask);
+                return;
+            }
+            if (batchBytes + quotedBytes > maxBatchBytes) {
+                closeBatch();
+                handler.post(drainTask);
+            }
+            messages.add(quoted);
+            callbacks.add(callback);
+            batchBytes += quotedBytes + 1;
+            if (messages.size() >= maxBatchCount || batchBytes >= maxBatchBytes) {
+                closeBatch();
+                handler.post(drainTask);
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flushTimer, flushIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * Moves the current batch to the frames to send so new messages start a new one.
+     * Must hold the lock.
+     */
+    private void closeBatch() {
+        if (flushScheduled) {
+            handler.removeCallbacks(flushTimer);
+            flushScheduled = false;
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        frames.add(new Frame(messages, callbacks, null));
+        messages = new ArrayList<>();
+        callbacks = new ArrayList<>();
+        batchBytes = 0;
+    }
+
+    /**
+     * Sends the closed frames in order.  Runs on the handler's thread.
+     */
+    private void drain() {
+        List<Frame> toSend;
+        synchronized (this) {
+            if (frames.isEmpty()) {
+                return;
+            }
+            toSend = new ArrayList<>(frames);
+            frames.clear();
+        }
+        for (Frame frame : toSend) {
+            if (frame.alone != null) {
+                sendFrame(frame.alone, frame.alone.getBytes(StandardCharsets.UTF_8).length, false, frame.callbacks);
+            } else {
+                sendBatch(frame.quoted, frame.callbacks);
+            }
+        }
+    }
+
+    private void sendBatch(List<String> quoted, List<ResultCallback<Status>> batchCallbacks) {
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 0; i < quoted.size(); i++) {
+            if (i > 0) {
+                array.append(',');
+            }
+            array.append(quoted.get(i));
+        }
+        array.append(']');
+        String envelope = "{\"batch\":1,\"messages\":" + array + "}";
+        int length = envelope.getBytes(StandardCharsets.UTF_8).length;
+        boolean compressed = false;
+        if (compressThreshold > 0 && length >= compressThreshold) {
+            String deflated = deflate(array.toString().getBytes(StandardCharsets.UTF_8));
+            // Base64 is ASCII so the length is the byte count
+            String candidate = "{\"batch\":1,\"encoding\":\"deflate\",\"count\":" + quoted.size()
+                    + ",\"data\":\"" + deflated + "\"}";
+            if (candidate.length() < length) {
+                envelope = candidate;
+                length = candidate.length();
+                compressed = true;
+            }
+        }
+        sendFrame(envelope, length, compressed, batchCallbacks);
+    }
+
+    private void sendFrame(String frame, int length, boolean compressed, final List<ResultCallback<Status>> frameCallbacks) {
+        synchronized (this) {
+            statFrames++;
+            statWireBytes += length;
+            if (compressed) {
+                statCompressedFrames++;
+            }
+        }
+        ResultCallback<Status> callback = new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                for (ResultCallback<Status> c : frameCallbacks) {
+                    c.onResult(status);
+                }
+            }
+        };
+        if (!transport.send(namespace, frame, callback)) {
+            callback.onResult(new Status(CommonStatusCodes.ERROR));
+        }
+    }
+
+    private static String deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 64);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        deflater.end();
+        return Base64.encodeToString(out.toByteArray(), Base64.NO_WRAP);
+    }
+
+    /**
+     * Sends whatever is pending straight away.
+     */
+    void flushNow() {
+        handler.post(flushTimer);
+    }
+
+    /**
+     * Fails the pending messages (eg. when the session changes).
+     */
+    void discard() {
+        List<ResultCallback<Status>> dropped = new ArrayList<>();
+        synchronized (this) {
+            closeBatch();
+            for (Frame frame : frames) {
+                dropped.addAll(frame.callbacks);
+            }
+            frames.clear();
+        }
+        for (ResultCallback<Status> c : dropped) {
+            c.onResult(new Status(CommonStatusCodes.ERROR));
+        }
+    }
+
+    /**
+     * @return {messages, frames, compressedFrames, payloadBytes, wireBytes}
+     */
+    synchronized JSONObject getStats() {
+        JSONObject out = new JSONObject();
+        try {
+            out.put("messages", statMessages);
+            out.put("frames", statFrames);
+            out.put("compressedFrames", statCompressedFrames);
+            out.put("payloadBytes", statPayloadBytes);
+            out.put("wireBytes", statWireBytes);
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+}
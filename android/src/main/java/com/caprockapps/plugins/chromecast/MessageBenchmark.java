@@ -0,0 +1,163 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Sends the same telemetry-like messages one by one, then through a MessageBatcher, and reports
+ * messages/sec and bytes on the wire for both.  Needs a session, the receiver can ignore them.
+ */
+final class MessageBenchmark {
+    private final MessageTransport transport;
+    private final Looper looper;
+    private final String namespace;
+    private final String[] messages;
+    private final long flushIntervalMs;
+    private final int maxBatchBytes;
+    private final int maxBatchCount;
+    private final int compressThreshold;
+    private final PluginCall call;
+    private final JSObject result = new JSObject();
+
+    MessageBenchmark(MessageTransport transport, Looper looper, String namespace, int count, int payloadBytes,
+                     long flushIntervalMs, int maxBatchBytes, int maxBatchCount, int compressThreshold, PluginCall call) {
+        this.transport = transport;
+        this.looper = looper;
+        this.namespace = namespace;
+        this.messages = createMessages(Math.max(1, count), Math.max(0, payloadBytes));
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchCount = maxBatchCount;
+        this.compressThreshold = compressThreshold;
+        this.call = call;
+    }
+
+    /**
+     * Runs the unbatched pass then the batched one, and resolves the call with
+     * {messages, payloadBytes, unbatched: {...}, batched: {...}}.
+     */
+    void run() {
+        long payload = 0;
+        for (String message : messages) {
+            payload += message.getBytes(StandardCharsets.UTF_8).length;
+        }
+        result.put("messages", messages.length);
+        result.put("payloadBytes", payload);
+        runUnbatched(payload);
+    }
+
+    private void runUnbatched(final long payload) {
+        final long start = SystemClock.elapsedRealtime();
+        final Countdown countdown = new Countdown(messages.length) {
+            @Override
+            void done(int failures) {
+                JSONObject out = pass(start, failures);
+                put(out, "frames", messages.length);
+                put(out, "wireBytes", payload);
+                result.put("unbatched", out);
+                runBatched();
+            }
+        };
+        for (String message : messages) {
+            if (!transport.send(namespace, message, countdown)) {
+                call.reject("session_error");
+                return;
+            }
+        }
+    }
+
+    private void runBatched() {
+        final MessageBatcher batcher = new MessageBatcher(namespace, transport, looper,
+                flushIntervalMs, maxBatchBytes, maxBatchCount, compressThreshold);
+        final long start = SystemClock.elapsedRealtime();
+        final Countdown countdown = new Countdown(messages.length) {
+            @Override
+            void done(int failures) {
+                JSONObject out = pass(start, failures);
+                JSONObject stats = batcher.getStats();
+                put(out, "frames", stats.optLong("frames"));
+                put(out, "compressedFrames", stats.optLong("compressedFrames"));
+                put(out, "wireBytes", stats.optLong("wireBytes"));
+                result.put("batched", out);
+                call.resolve(result);
+            }
+        };
+        for (String message : messages) {
+            batcher.add(message, countdown);
+        }
+        batcher.flushNow();
+    }
+
+    private JSONObject pass(long start, int failures) {
+        long duration = Math.max(1, SystemClock.elapsedRealtime() - start);
+        JSONObject out = new JSONObject();
+        put(out, "durationMs", duration);
+        put(out, "messagesPerSec", messages.length * 1000.0 / duration);
+        put(out, "failures", failures);
+        return out;
+    }
+
+    private static void put(JSONObject out, String key, Object value) {
+        try {
+            out.put(key, value);
+        } catch (JSONException e) {
+        }
+    }
+
+    /**
+     * Small JSON messages shaped like player telemetry, padded with random hex up to payloadBytes.
+     */
+    private static String[] createMessages(int count, int payloadBytes) {
+        Random random = new Random(42);
+        String[] out = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder pad = new StringBuilder();
+            String head = "{\"type\":\"telemetry\",\"seq\":" + i
+                    + ",\"position\":" + (i * 250) / 1000.0
+                    + ",\"bitrate\":" + (2000000 + random.nextInt(3000000))
+                    + ",\"buffer\":" + random.nextInt(30000)
+                    + ",\"pad\":\"";
+            while (head.length() + pad.length() + 2 < payloadBytes) {
+                pad.append(Integer.toHexString(random.nextInt(16)));
+            }
+            out[i] = head + pad + "\"}";
+        }
+        return out;
+    }
+
+    /** Counts the send results of one pass. */
+    private abstract static class Countdown implements ResultCallback<Status> {
+        private final AtomicInteger remaining;
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Countdown(int count) {
+            remaining = new AtomicInteger(count);
+        }
+
+        @Override
+        public void onResult(@NonNull Status status) {
+            if (!status.isSuccess()) {
+                failures.incrementAndGet();
+            }
+            if (remaining.decrementAndGet() == 0) {
+                done(failures.get());
+            }
+        }
+
+        abstract void done(int failures);
+    }
+}
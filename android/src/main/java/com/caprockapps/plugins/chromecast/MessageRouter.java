@@ -0,0 +1,232 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.getcapacitor.JSArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Delivers the messages of the subscribed namespaces as arrays, one event per namespace and frame.
+ *
+ * Each namespace either delivers every message straight away (batchIntervalMs 0) or gathers
+ * them for batchIntervalMs, or until maxBatchSize messages are waiting.  Messages are kept as
+ * received, the JS side parses them.  While nothing listens they wait in a buffer of bufferSize
+ * messages where the oldest are dropped first, the next delivery reports how many were dropped.
+ */
+final class MessageRouter {
+    static final long DEFAULT_BATCH_INTERVAL = 0;
+    static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    static final int DEFAULT_BUFFER_SIZE = 500;
+
+    interface Sink {
+        /**
+         * @return whether the messages can be delivered now
+         */
+        boolean isListening();
+
+        /**
+         * Called on the router's looper, or on the receiving thread for unbatched namespaces.
+         * @param namespace the namespace
+         * @param messages the messages, oldest first
+         * @param dropped how many messages were dropped before these
+         */
+        void deliver(String namespace, JSArray messages, long dropped);
+    }
+
+    /** A subscribed namespace. */
+    private final class Route implements Runnable {
+        final String namespace;
+        final long batchIntervalMs;
+        final int maxBatchSize;
+        final int bufferSize;
+        final ArrayDeque<String> buffer = new ArrayDeque<>();
+        /** Dropped since the last delivery. */
+        long dropped = 0;
+        boolean flushScheduled = false;
+
+        /** Stats. */
+        long statReceived = 0;
+        long statDelivered = 0;
+        long statDropped = 0;
+        long statFrames = 0;
+
+        Route(String namespace, long batchIntervalMs, int maxBatchSize, int bufferSize) {
+            this.namespace = namespace;
+            this.batchIntervalMs = batchIntervalMs;
+            this.maxBatchSize = maxBatchSize;
+            this.bufferSize = bufferSize;
+        }
+
+        /** The batch interval elapsed. */
+        @Override
+        public void run() {
+            synchronized (MessageRouter.this) {
+                flushScheduled = false;
+            }
+            flush(this);
+        }
+    }
+
+    /** Where the messages go. */
+    private final Sink sink;
+    /** Runs the batch timers. */
+    private final Handler handler;
+    /** Subscribed namespaces. */
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+
+    MessageRouter(Looper looper, Sink sink) {
+        this.handler = new Handler(looper);
+        this.sink = sink;
+    }
+
+    /**
+     * Subscribes to a namespace, or changes its settings (what is buffered is delivered first).
+     * @param namespace the namespace
+     * @param batchIntervalMs how long messages are gathered, 0 to deliver each one straight away
+     * @param maxBatchSize deliver as soon as this many messages are waiting
+     * @param bufferSize how many messages are kept while nothing listens
+     */
+    void subscribe(String namespace, long batchIntervalMs, int maxBatchSize, int bufferSize) {
+        Route previous;
+        synchronized (this) {
+            previous = routes.put(namespace, new Route(namespace, Math.max(0, batchIntervalMs),
+                    Math.max(1, maxBatchSize), Math.max(1, bufferSize)));
+        }
+        if (previous != null) {
+            handler.removeCallbacks(previous);
+            flush(previous);
+        }
+    }
+
+    /**
+     * Unsubscribes from a namespace, its messages are raised as RECEIVER_MESSAGE again.
+     * Buffered messages are dropped.
+     * @param namespace the namespace
+     */
+    void unsubscribe(String namespace) {
+        Route route;
+        synchronized (this) {
+            route = routes.remove(namespace);
+        }
+        if (route != null) {
+            handler.removeCallbacks(route);
+        }
+    }
+
+    /**
+     * @param namespace the namespace
+     * @return whether the namespace is subscribed
+     */
+    synchronized boolean isSubscribed(String namespace) {
+        return routes.containsKey(namespace);
+    }
+
+    /**
+     * Takes a received message.
+     * @param namespace the namespace it was received on
+     * @param message the message
+     * @return false if the namespace is not subscribed, the message was not taken then
+     */
+    boolean route(String namespace, String message) {
+        Route route;
+        boolean flushNow = false;
+        synchronized (this) {
+            route = routes.get(namespace);
+            if (route == null) {
+                return false;
+            }
+            route.statReceived++;
+            if (route.buffer.size() >= route.bufferSize) {
+                route.buffer.poll();
+                route.dropped++;
+                route.statDropped++;
+            }
+            route.buffer.add(message);
+            if (route.batchIntervalMs == 0 || route.buffer.size() >= route.maxBatchSize) {
+                flushNow = true;
+            } else if (!route.flushScheduled) {
+                route.flushScheduled = true;
+                handler.postDelayed(route, route.batchIntervalMs);
+            }
+        }
+        if (flushNow) {
+            flush(route);
+        }
+        return true;
+    }
+
+    /**
+     * Delivers what is buffered, eg. once a listener was added.
+     * @param namespace the namespace, null for all of them
+     */
+    void flush(String namespace) {
+        List<Route> toFlush = new ArrayList<>();
+        synchronized (this) {
+            if (namespace == null) {
+                toFlush.addAll(routes.values());
+            } else if (routes.containsKey(namespace)) {
+                toFlush.add(routes.get(namespace));
+            }
+        }
+        for (Route route : toFlush) {
+            flush(route);
+        }
+    }
+
+    private void flush(Route route) {
+        if (!sink.isListening()) {
+            // Keep them, the buffer is bounded
+            return;
+        }
+        JSArray messages;
+        long dropped;
+        synchronized (this) {
+            if (route.buffer.isEmpty()) {
+                return;
+            }
+            if (route.flushScheduled) {
+                handler.removeCallbacks(route);
+                route.flushScheduled = false;
+            }
+            messages = new JSArray();
+            for (String message : route.buffer) {
+                messages.put(message);
+            }
+            route.statDelivered += route.buffer.size();
+            route.statFrames++;
+            route.buffer.clear();
+            dropped = route.dropped;
+            route.dropped = 0;
+        }
+        sink.deliver(route.namespace, messages, dropped);
+    }
+
+    /**
+     * @return {namespace: {received, delivered, dropped, frames, buffered}}
+     */
+    synchronized JSONObject getStats() {
+        JSONObject out = new JSONObject();
+        try {
+            for (Route route : routes.values()) {
+                JSONObject stats = new JSONObject();
+                stats.put("received", route.statReceived);
+                stats.put("delivered", route.statDelivered);
+                stats.put("dropped", route.statDropped);
+                stats.put("frames", route.statFrames);
+                stats.put("buffered", route.buffer.size());
+                out.put(route.namespace, stats);
+            }
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+}
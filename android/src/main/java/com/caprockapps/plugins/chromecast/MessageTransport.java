@@ -0,0 +1,17 @@
+package com.caprockapps.plugins.chromecast;
+
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+/*
+ * Sends a message on a custom namespace of the current session.
+ */
+interface MessageTransport {
+    /**
+     * @param namespace the namespace
+     * @param message the message
+     * @param callback called with the send status
+     * @return false if there is no session to send it on, the callback is not called then
+     */
+    boolean send(String namespace, String message, ResultCallback<Status> callback);
+}
@@ -0,0 +1,87 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+import com.google.android.gms.cast.MediaStatus;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+ * Estimates the playback position between two media status updates.
+ *
+ * Each status (or progress) update sets an anchor, and while playing the position
+ * is extrapolated from the anchor using the elapsed time and the playback rate.
+ */
+final class PositionEstimator {
+    /** Position at the anchor time in ms. */
+    private long anchorPosition = 0;
+    /** When the anchor was taken (elapsedRealtime). */
+    private long anchorTime = 0;
+    /** Stream duration in ms, <= 0 if unknown (eg. live streams). */
+    private long duration = 0;
+    /** Current playback rate. */
+    private double rate = 1;
+    /** Current MediaStatus player state. */
+    private int playerState = MediaStatus.PLAYER_STATE_UNKNOWN;
+
+    /**
+     * Sets a new anchor from a status.
+     * @param positionMs the stream position
+     * @param durationMs the stream duration, <= 0 if unknown
+     * @param playbackRate the playback rate
+     * @param state one of MediaStatus.PLAYER_STATE_*
+     */
+    synchronized void update(long positionMs, long durationMs, double playbackRate, int state) {
+        anchorPosition = positionMs;
+        anchorTime = SystemClock.elapsedRealtime();
+        duration = durationMs;
+        rate = playbackRate;
+        playerState = state;
+    }
+
+    /**
+     * Moves the anchor to a new position, keeping the rest of the state.
+     * @param positionMs the new position
+     */
+    synchronized void setPosition(long positionMs) {
+        anchorPosition = positionMs;
+        anchorTime = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void reset() {
+        update(0, 0, 1, MediaStatus.PLAYER_STATE_UNKNOWN);
+    }
+
+    /**
+     * @return the estimated position in ms
+     */
+    synchronized long getPosition() {
+        long position = anchorPosition;
+        if (playerState == MediaStatus.PLAYER_STATE_PLAYING) {
+            position += (long) ((SystemClock.elapsedRealtime() - anchorTime) * rate);
+        }
+        if (duration > 0 && position > duration) {
+            position = duration;
+        }
+        return Math.max(0, position);
+    }
+
+    /**
+     * @return the estimate as sent in MEDIA_PROGRESS: position and duration in seconds, rate and playerState
+     */
+    synchronized JSONObject toJSON() {
+        JSONObject out = new JSObject();
+        try {
+            out.put("position", getPosition() / 1000.0);
+            if (duration > 0) {
+                out.put("duration", duration / 1000.0);
+            }
+            out.put("rate", rate);
+            out.put("playerState", ChromecastUtilities.getMediaPlayerState(playerState));
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+}
@@ -0,0 +1,97 @@
+package com.caprockapps.plugins.chromecast;
+
+import androidx.mediarouter.media.MediaRouter.RouteInfo;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Turns the successive route lists of a scan into added, changed and removed routes.
+ *
+ * The JSON of each route is kept between updates and only built again when RouteFilter's version
+ * of the route or its name changed.  A rebuilt route counts as changed only when its JSON differs
+ * (the router also reports volume or description changes we do not send).  Must only be used
+ * from one thread.
+ */
+final class RouteDiffer {
+    /** What changed since the previous update. */
+    static final class Diff {
+        final JSArray added = new JSArray();
+        final JSArray changed = new JSArray();
+        /** Ids of the routes no longer available. */
+        final JSArray removed = new JSArray();
+    }
+
+    private static final class Cached {
+        /** RouteFilter's version of the route the JSON was built from. */
+        final Object version;
+        final String name;
+        final JSObject json;
+        final String serialized;
+
+        Cached(Object version, String name, JSObject json, String serialized) {
+            this.version = version;
+            this.name = name;
+            this.json = json;
+            this.serialized = serialized;
+        }
+    }
+
+    /** The routes of the previous update by id. */
+    private Map<String, Cached> routes = new LinkedHashMap<>();
+
+    /**
+     * @param current the filtered routes now available
+     * @return the difference with the previous update, everything is added on the first one
+     */
+    Diff update(List<RouteInfo> current) {
+        Diff diff = new Diff();
+        Map<String, Cached> next = new LinkedHashMap<>();
+        for (RouteInfo route : current) {
+            String id = route.getId();
+            if (next.containsKey(id)) {
+                continue;
+            }
+            Object version = RouteFilter.getVersion(route);
+            String name = route.getName();
+            Cached previous = routes.remove(id);
+            if (previous != null && previous.version == version
+                    && (name == null ? previous.name == null : name.equals(previous.name))) {
+                next.put(id, previous);
+                continue;
+            }
+            JSObject json;
+            try {
+                json = ChromecastUtilities.toJSObject(ChromecastUtilities.createRouteObject(route));
+            } catch (JSONException e) {
+                if (previous != null) {
+                    next.put(id, previous);
+                }
+                continue;
+            }
+            String serialized = json.toString();
+            Cached cached = new Cached(version, name, json, serialized);
+            if (previous == null) {
+                next.put(id, cached);
+                diff.added.put(json);
+            } else if (!previous.serialized.equals(serialized)) {
+                next.put(id, cached);
+                diff.changed.put(json);
+            } else {
+                next.put(id, new Cached(version, name, previous.json, serialized));
+            }
+        }
+        // What is left was not in this update
+        for (String id : routes.keySet()) {
+            diff.removed.put(id);
+        }
+        routes = next;
+        return diff;
+    }
+}
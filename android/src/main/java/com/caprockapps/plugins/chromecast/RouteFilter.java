@@ -0,0 +1,126 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Bundle;
+
+import androidx.mediarouter.media.MediaRouter.RouteInfo;
+
+import com.getcapacitor.JSObject;
+import com.google.android.gms.cast.CastDevice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Decides which routes the scans report, and keeps the verdict and the decoded CastDevice of each
+ * route id so a route is only looked at again when it changed.
+ *
+ * An entry is dropped by invalidate() when the router reports the route changed, and is also
+ * ignored when the route's extras or description are no longer the instances it was computed
+ * from: the router replaces them whenever the route's descriptor changes, which covers the
+ * changes made while no scan callback was registered.  Must only be used from the main thread.
+ */
+final class RouteFilter {
+    /** Above this many entries the cache starts over, routes that disappeared are not all removed. */
+    private static final int MAX_ENTRIES = 256;
+    private static final String MULTIZONE_MEMBER = "Google Cast Multizone Member";
+    private static final String EXTRA_SESSION_ID = "com.google.android.gms.cast.EXTRA_SESSION_ID";
+
+    private static final class Entry {
+        final Bundle extras;
+        final String description;
+        final boolean accepted;
+        final CastDevice device;
+
+        Entry(Bundle extras, String description, boolean accepted, CastDevice device) {
+            this.extras = extras;
+            this.description = description;
+            this.accepted = accepted;
+            this.device = device;
+        }
+    }
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    /** Stats. */
+    private static long statEvaluations = 0;
+    private static long statHits = 0;
+    private static long statSkippedUpdates = 0;
+
+    private RouteFilter() {
+        //not called
+    }
+
+    /**
+     * @param route the route
+     * @return whether the scans report it: not the default route, not a route already in a
+     *         session, not a multizone member and played remotely
+     */
+    static synchronized boolean accepts(RouteInfo route) {
+        return get(route).accepted;
+    }
+
+    /**
+     * @param route the route
+     * @return the route's device, null if it is not a Cast route
+     */
+    static synchronized CastDevice getDevice(RouteInfo route) {
+        return get(route).device;
+    }
+
+    /**
+     * @param route the route
+     * @return a token that stays the same instance until the route's extras or description
+     *         change, or it is invalidated
+     */
+    static synchronized Object getVersion(RouteInfo route) {
+        return get(route);
+    }
+
+    /**
+     * Forgets a route, to call when the router reports it added, changed or removed.
+     * @param routeId the route's id
+     */
+    static synchronized void invalidate(String routeId) {
+        entries.remove(routeId);
+    }
+
+    /**
+     * Counts a route event that did not need the route list to be sent again.
+     */
+    static synchronized void countSkippedUpdate() {
+        statSkippedUpdates++;
+    }
+
+    /**
+     * @return {evaluations, cacheHits, skippedUpdates}
+     */
+    static synchronized JSObject getStats() {
+        JSObject out = new JSObject();
+        out.put("evaluations", statEvaluations);
+        out.put("cacheHits", statHits);
+        out.put("skippedUpdates", statSkippedUpdates);
+        return out;
+    }
+
+    private static Entry get(RouteInfo route) {
+        Bundle extras = route.getExtras();
+        String description = route.getDescription();
+        Entry entry = entries.get(route.getId());
+        if (entry != null && entry.extras == extras && entry.description == description) {
+            statHits++;
+            return entry;
+        }
+        statEvaluations++;
+        CastDevice device = extras != null ? CastDevice.getFromBundle(extras) : null;
+        boolean accepted = !route.isDefault()
+                && (extras == null || extras.getString(EXTRA_SESSION_ID) == null)
+                && !MULTIZONE_MEMBER.equals(description)
+                && route.getPlaybackType() == RouteInfo.PLAYBACK_TYPE_REMOTE;
+        entry = new Entry(extras, description, accepted, device);
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        entries.put(route.getId(), entry);
+        return entry;
+    }
+}
@@ -0,0 +1,224 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Request/response calls over a custom namespace.
+ *
+ * Requests are sent as {"rpc": "req", "id", "method", "params"} and the receiver answers with
+ * {"rpc": "res", "id", "result"} or {"rpc": "res", "id", "error": {"code", "message"}}
+ * (see custom-receiver/index.html).  Any number of calls can be in flight, each with its own
+ * timeout, and the latency of every answered call is recorded per namespace and method.
+ */
+final class RpcClient {
+    /** Default time to wait for the answer, in ms. */
+    static final long DEFAULT_TIMEOUT = 10000;
+
+    private final class Pending implements Runnable {
+        final long id;
+        final String namespace;
+        final String method;
+        final PluginCall call;
+        final long sentAt = SystemClock.elapsedRealtime();
+
+        Pending(long id, String namespace, String method, PluginCall call) {
+            this.id = id;
+            this.namespace = namespace;
+            this.method = method;
+            this.call = call;
+        }
+
+        /** Timeout. */
+        @Override
+        public void run() {
+            if (remove(id) != null) {
+                histogram(namespace, method).recordFailure();
+                call.reject("No answer to " + method + " on " + namespace, "timeout");
+            }
+        }
+    }
+
+    /** Sends the requests. */
+    private final MessageTransport transport;
+    /** Runs the timeouts. */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /** Last request id. */
+    private long lastId = 0;
+    /** Calls waiting for their answer, by request id. */
+    private final Map<Long, Pending> pending = new HashMap<>();
+    /** Latency per namespace, then per method. */
+    private final Map<String, Map<String, LatencyHistogram>> stats = new LinkedHashMap<>();
+
+    RpcClient(MessageTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sends a request, the call is settled with the answer, or rejected on timeout.
+     * @param namespace the namespace
+     * @param method the method name
+     * @param params the params, may be null
+     * @param timeoutMs time to wait for the answer
+     * @param call resolved with {result, latencyMs}
+     */
+    void call(final String namespace, final String method, Object params, long timeoutMs, PluginCall call) {
+        final Pending request;
+        synchronized (this) {
+            request = new Pending(++lastId, namespace, method, call);
+            pending.put(request.id, request);
+        }
+        JSONObject message = new JSONObject();
+        try {
+            message.put("rpc", "req");
+            message.put("id", request.id);
+            message.put("method", method);
+            message.put("params", params);
+        } catch (JSONException e) {
+            remove(request.id);
+            call.reject(e.getMessage(), "json_error");
+            return;
+        }
+        handler.postDelayed(request, timeoutMs);
+        boolean sent = transport.send(namespace, message.toString(), new ResultCallback<Status>() {
+            @Override
+            public void onResult(@NonNull Status status) {
+                if (!status.isSuccess() && remove(request.id) != null) {
+                    histogram(namespace, method).recordFailure();
+                    request.call.reject("Could not send " + method + ": " + status.getStatusCode(), "send_failed");
+                }
+            }
+        });
+        if (!sent && remove(request.id) != null) {
+            request.call.reject("session_error");
+        }
+    }
+
+    /**
+     * Settles the matching call if the message is an answer.
+     * @param namespace the namespace it was received on
+     * @param message the message
+     * @return true if the message answered a call in flight on that namespace and should not be
+     *         forwarded as RECEIVER_MESSAGE
+     */
+    boolean handleMessage(String namespace, String message) {
+        if (message == null || !message.contains("\"rpc\"")) {
+            return false;
+        }
+        JSONObject answer;
+        try {
+            answer = new JSONObject(message);
+        } catch (JSONException e) {
+            return false;
+        }
+        if (!"res".equals(answer.optString("rpc"))) {
+            return false;
+        }
+        Pending request = take(namespace, answer.optLong("id", -1));
+        if (request == null) {
+            // Not ours: a late answer, or one on another namespace, the app may want it
+            return false;
+        }
+        long latency = SystemClock.elapsedRealtime() - request.sentAt;
+        histogram(request.namespace, request.method).record(latency);
+        JSONObject error = answer.optJSONObject("error");
+        if (error != null) {
+            request.call.reject(error.optString("message", "error"), error.optString("code", "rpc_error"));
+            return true;
+        }
+        JSObject out = new JSObject();
+        out.put("result", answer.opt("result"));
+        out.put("latencyMs", latency);
+        request.call.resolve(out);
+        return true;
+    }
+
+    /**
+     * Rejects every call in flight (eg. when the session ends).
+     * @param error the error code
+     */
+    void cancelAll(String error) {
+        List<Pending> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Pending request : cancelled) {
+            handler.removeCallbacks(request);
+            request.call.reject(error);
+        }
+    }
+
+    /**
+     * @return {namespace: {method: LatencyHistogram.toJSON}}
+     */
+    synchronized JSONObject getStats() {
+        JSONObject out = new JSObject();
+        try {
+            for (Map.Entry<String, Map<String, LatencyHistogram>> ns : stats.entrySet()) {
+                JSONObject methods = new JSONObject();
+                for (Map.Entry<String, LatencyHistogram> m : ns.getValue().entrySet()) {
+                    methods.put(m.getKey(), m.getValue().toJSON());
+                }
+                out.put(ns.getKey(), methods);
+            }
+        } catch (JSONException e) {
+        }
+        return out;
+    }
+
+    synchronized void resetStats() {
+        stats.clear();
+    }
+
+    /**
+     * Removes a call only if it was sent on the namespace, a call with the same id sent on
+     * another namespace keeps waiting for its own answer.
+     */
+    private synchronized Pending take(String namespace, long id) {
+        Pending request = pending.get(id);
+        if (request == null || !request.namespace.equals(namespace)) {
+            return null;
+        }
+        return remove(id);
+    }
+
+    private synchronized Pending remove(long id) {
+        Pending request = pending.remove(id);
+        if (request != null) {
+            handler.removeCallbacks(request);
+        }
+        return request;
+    }
+
+    private synchronized LatencyHistogram histogram(String namespace, String method) {
+        Map<String, LatencyHistogram> methods = stats.get(namespace);
+        if (methods == null) {
+            methods = new LinkedHashMap<>();
+            stats.put(namespace, methods);
+        }
+        LatencyHistogram histogram = methods.get(method);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            methods.put(method, histogram);
+        }
+        return histogram;
+    }
+}
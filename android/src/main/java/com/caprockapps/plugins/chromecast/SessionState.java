@@ -0,0 +1,80 @@
+package com.caprockapps.plugins.chromecast;
+
+import com.google.android.gms.cast.framework.CastSession;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/*
+ * The media state owned by one CastSession: the queue window, the last media object and the
+ * current item id.
+ *
+ * The queue items and current item id are written from the main thread and the last media
+ * object from the serializer.  Every write publishes a new immutable Snapshot, so any thread can
+ * read a consistent view with getSnapshot() without locking.
+ */
+final class SessionState {
+
+    static final class Snapshot {
+        /** The queue items around the current item, null until the queue is loaded. */
+        final JSONArray queueItems;
+        /** The last media object that was built. */
+        final JSONObject lastMediaObject;
+        /** The current item id as of the last status update. */
+        final Integer currentItemId;
+
+        Snapshot(JSONArray queueItems, JSONObject lastMediaObject, Integer currentItemId) {
+            this.queueItems = queueItems;
+            this.lastMediaObject = lastMediaObject;
+            this.currentItemId = currentItemId;
+        }
+    }
+
+    /** The session this state belongs to, null if none. */
+    private final CastSession castSession;
+    /** The latest published snapshot. */
+    private volatile Snapshot snapshot = new Snapshot(null, null, null);
+
+    SessionState(CastSession castSession) {
+        this.castSession = castSession;
+    }
+
+    /**
+     * @param other a session
+     * @return true if this state belongs to the session
+     */
+    boolean belongsTo(CastSession other) {
+        return castSession != null && castSession.equals(other);
+    }
+
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Publishes a new queue window.  Must be called from the main thread.
+     * @param items the queue items, must not be mutated afterwards
+     */
+    synchronized void setQueueItems(JSONArray items) {
+        Snapshot s = snapshot;
+        snapshot = new Snapshot(items, s.lastMediaObject, s.currentItemId);
+    }
+
+    /**
+     * Publishes the last media object.  Must be called from the serializer.
+     * @param media the media object, must not be mutated afterwards
+     */
+    synchronized void setLastMediaObject(JSONObject media) {
+        Snapshot s = snapshot;
+        snapshot = new Snapshot(s.queueItems, media, s.currentItemId);
+    }
+
+    /**
+     * Publishes the current item id.  Must be called from the main thread.
+     * @param itemId the current item id
+     */
+    synchronized void setCurrentItemId(Integer itemId) {
+        Snapshot s = snapshot;
+        snapshot = new Snapshot(s.queueItems, s.lastMediaObject, itemId);
+    }
+}
@@ -0,0 +1,122 @@
+package com.caprockapps.plugins.chromecast;
+
+import com.google.android.gms.cast.ApplicationMetadata;
+import com.google.android.gms.cast.CastDevice;
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaQueueData;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.CastSession;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+import org.json.JSONObject;
+
+/*
+ * Immutable copies of the fields the media and session objects are built from.
+ *
+ * The Cast SDK updates its MediaStatus in place on the main thread, so the fields are captured
+ * there (a handful of getters) and the JSON is built later on the serializer thread.  The SDK
+ * value objects kept by reference (MediaInfo, MediaQueueData, ApplicationMetadata, CastDevice)
+ * are replaced rather than mutated by the SDK.
+ */
+final class StatusSnapshot {
+
+    private StatusSnapshot() {
+        //not called
+    }
+
+    static final class Media {
+        final int currentItemId;
+        final long streamPosition;
+        final JSONObject customData;
+        final int idleReason;
+        final int playerState;
+        final int loadingItemId;
+        final MediaInfo mediaInfo;
+        final double playbackRate;
+        final int preloadedItemId;
+        final MediaQueueData queueData;
+        final int repeatMode;
+        final String sessionId;
+        final double volume;
+        final boolean muted;
+        final long[] activeTrackIds;
+
+        private Media(MediaStatus status, MediaInfo info, String sessionId) {
+            this.currentItemId = status.getCurrentItemId();
+            this.streamPosition = status.getStreamPosition();
+            this.customData = status.getCustomData();
+            this.idleReason = status.getIdleReason();
+            this.playerState = status.getPlayerState();
+            this.loadingItemId = status.getLoadingItemId();
+            this.mediaInfo = info;
+            this.playbackRate = status.getPlaybackRate();
+            this.preloadedItemId = status.getPreloadedItemId();
+            this.queueData = status.getQueueData();
+            this.repeatMode = status.getQueueRepeatMode();
+            this.sessionId = sessionId;
+            this.volume = status.getStreamVolume();
+            this.muted = status.isMute();
+            long[] ids = status.getActiveTrackIds();
+            this.activeTrackIds = ids != null ? ids.clone() : null;
+        }
+
+        /**
+         * Must be called from the main thread.
+         * @param session the session
+         * @return the captured media status, or null if there is no media status
+         */
+        static Media capture(CastSession session) {
+            if (session == null) {
+                return null;
+            }
+            RemoteMediaClient client = session.getRemoteMediaClient();
+            if (client == null) {
+                return null;
+            }
+            MediaStatus status = client.getMediaStatus();
+            if (status == null) {
+                return null;
+            }
+            return new Media(status, client.getMediaInfo(), session.getSessionId());
+        }
+    }
+
+    static final class Session {
+        final ApplicationMetadata metadata;
+        final CastDevice device;
+        /** Null if the volume could not be read (eg. not connected). */
+        final Double volume;
+        final boolean muted;
+        final String sessionId;
+        /** The session's media, null if none. */
+        final Media media;
+
+        private Session(CastSession session) {
+            this.metadata = session.getApplicationMetadata();
+            this.device = session.getCastDevice();
+            Double vol = null;
+            boolean mute = false;
+            try {
+                vol = session.getVolume();
+                mute = session.isMute();
+            } catch (IllegalStateException e) {
+            }
+            this.volume = vol;
+            this.muted = mute;
+            this.sessionId = session.getSessionId();
+            this.media = Media.capture(session);
+        }
+
+        /**
+         * Must be called from the main thread.
+         * @param session the session
+         * @return the captured session, or null if there is no session
+         */
+        static Session capture(CastSession session) {
+            if (session == null) {
+                return null;
+            }
+            return new Session(session);
+        }
+    }
+}
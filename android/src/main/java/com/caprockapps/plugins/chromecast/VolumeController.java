@@ -0,0 +1,340 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import com.google.android.gms.cast.framework.CastSession;
+
+/*
+ * Sets the device volume and mute state of one session.
+ *
+ * Only one change is sent at a time, it counts as acknowledged once onVolumeChanged reports it (or
+ * after ACK_TIMEOUT_MS).  While one is in flight only the newest level and mute state are kept and
+ * the calls they replaced resolve with superseded: true, so a slider sends at most one change per
+ * round trip.  The onVolumeChanged echoes of our own changes are not reported, only the one
+ * acknowledging the last change is, so the app sees the volume it set once instead of every step.
+ * Must only be used from the main thread.
+ */
+final class VolumeController {
+    /** How long to wait for onVolumeChanged before moving on to the next change. */
+    private static final long ACK_TIMEOUT_MS = 1000;
+    /** Interval between two ramp steps. */
+    private static final long RAMP_STEP_MS = 50;
+    /** Level difference under which onVolumeChanged acknowledges a level. */
+    private static final double LEVEL_TOLERANCE = 0.005;
+
+    private final CastSession session;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Whether the change in flight sets the level, else the mute state. */
+    private boolean levelInFlight;
+    /** Whether a change waits for its acknowledgement. */
+    private boolean inFlight = false;
+    private double sentLevel;
+    private boolean sentMuted;
+    private PluginCall sentCall;
+    private long sentAt;
+
+    /** The newest level received while a change was in flight, -1 if none. */
+    private double pendingLevel = -1;
+    private PluginCall pendingLevelCall;
+    /** The newest mute state received while a change was in flight, null if none. */
+    private Boolean pendingMuted;
+    private PluginCall pendingMutedCall;
+
+    /** The running ramp, null if none. */
+    private Ramp ramp;
+    private boolean cancelled = false;
+
+    private final Runnable ackTimeout = new Runnable() {
+        @Override
+        public void run() {
+            acknowledged(false);
+        }
+    };
+
+    private final class Ramp implements Runnable {
+        final double from;
+        final double to;
+        final long durationMs;
+        final long startedAt = SystemClock.elapsedRealtime();
+        final PluginCall call;
+
+        Ramp(double from, double to, long durationMs, PluginCall call) {
+            this.from = from;
+            this.to = to;
+            this.durationMs = durationMs;
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            if (ramp != this) {
+                return;
+            }
+            long elapsed = SystemClock.elapsedRealtime() - startedAt;
+            if (elapsed >= durationMs) {
+                ramp = null;
+                request(to, call);
+                return;
+            }
+            request(from + (to - from) * elapsed / durationMs, null);
+            handler.postDelayed(this, RAMP_STEP_MS);
+        }
+
+        void cancel() {
+            handler.removeCallbacks(this);
+            JSObject out = result(currentLevel(), false);
+            out.put("cancelled", true);
+            call.resolve(out);
+        }
+    }
+
+    VolumeController(CastSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Sets the device volume, stopping any ramp.
+     * @param level the level, clamped to [0, 1]
+     * @param call resolved with {level, muted, superseded, latencyMs}
+     */
+    void setLevel(double level, PluginCall call) {
+        stopRamp();
+        request(clamp(level), call);
+    }
+
+    /**
+     * Mutes or unmutes the device, stopping any ramp.
+     * @param muted the mute state
+     * @param call resolved with {level, muted, superseded, latencyMs}
+     */
+    void setMuted(boolean muted, PluginCall call) {
+        stopRamp();
+        if (cancelled) {
+            call.reject("session_error");
+            return;
+        }
+        if (inFlight) {
+            if (pendingMutedCall != null) {
+                pendingMutedCall.resolve(result(currentLevel(), true));
+            }
+            pendingMuted = muted;
+            pendingMutedCall = call;
+            return;
+        }
+        sendMuted(muted, call);
+    }
+
+    /**
+     * Moves the device volume to target over durationMs, replacing any running ramp.
+     * @param target the final level, clamped to [0, 1]
+     * @param durationMs the ramp duration
+     * @param call resolved once the final level was acknowledged, or with cancelled: true if
+     *             another volume change stopped the ramp
+     */
+    void ramp(double target, long durationMs, PluginCall call) {
+        stopRamp();
+        if (cancelled) {
+            call.reject("session_error");
+            return;
+        }
+        double from = inFlight && levelInFlight ? sentLevel : currentLevel();
+        if (pendingLevel >= 0) {
+            from = pendingLevel;
+        }
+        ramp = new Ramp(from, clamp(target), Math.max(0, durationMs), call);
+        ramp.run();
+    }
+
+    /**
+     * Called from onVolumeChanged.
+     * @return whether the change must be reported to the app, false for the echoes of our changes
+     */
+    boolean onVolumeChanged() {
+        if (!inFlight) {
+            // Not ours, unless it is a late echo while a ramp waits for its next step
+            return ramp == null;
+        }
+        boolean matches = levelInFlight
+                ? Math.abs(currentLevel() - sentLevel) < LEVEL_TOLERANCE
+                : currentMuted() == sentMuted;
+        if (!matches) {
+            return false;
+        }
+        acknowledged(true);
+        // Reports the volume once our changes are all done
+        return !inFlight && ramp == null;
+    }
+
+    /**
+     * Fails the pending changes and stops the ramp, once the session changed.
+     */
+    void cancel() {
+        cancelled = true;
+        handler.removeCallbacks(ackTimeout);
+        if (ramp != null) {
+            handler.removeCallbacks(ramp);
+            ramp.call.reject("session_error");
+            ramp = null;
+        }
+        inFlight = false;
+        reject(sentCall);
+        reject(pendingLevelCall);
+        reject(pendingMutedCall);
+        sentCall = null;
+        pendingLevel = -1;
+        pendingLevelCall = null;
+        pendingMuted = null;
+        pendingMutedCall = null;
+    }
+
+    /**
+     * Sends a level, or keeps it as the pending one while a change is in flight.
+     * @param call the call to settle, null for the intermediate ramp steps
+     */
+    private void request(double level, PluginCall call) {
+        if (cancelled) {
+            reject(call);
+            return;
+        }
+        if (inFlight) {
+            if (pendingLevelCall != null) {
+                pendingLevelCall.resolve(result(pendingLevel, true));
+            }
+            pendingLevel = level;
+            pendingLevelCall = call;
+            return;
+        }
+        sendLevel(level, call);
+    }
+
+    private void sendLevel(double level, PluginCall call) {
+        try {
+            session.setVolume(level);
+        } catch (Exception e) {
+            if (call != null) {
+                call.reject(e.getMessage(), "volume_error");
+            }
+            sendPending();
+            return;
+        }
+        levelInFlight = true;
+        sentLevel = level;
+        sent(call);
+    }
+
+    private void sendMuted(boolean muted, PluginCall call) {
+        try {
+            session.setMute(muted);
+        } catch (Exception e) {
+            call.reject(e.getMessage(), "volume_error");
+            sendPending();
+            return;
+        }
+        levelInFlight = false;
+        sentMuted = muted;
+        sent(call);
+    }
+
+    private void sent(PluginCall call) {
+        inFlight = true;
+        sentCall = call;
+        sentAt = SystemClock.elapsedRealtime();
+        handler.postDelayed(ackTimeout, ACK_TIMEOUT_MS);
+    }
+
+    /**
+     * Settles the change in flight and sends the pending one.
+     * @param echoed false if it timed out before onVolumeChanged reported it
+     */
+    private void acknowledged(boolean echoed) {
+        if (!inFlight) {
+            return;
+        }
+        handler.removeCallbacks(ackTimeout);
+        inFlight = false;
+        PluginCall call = sentCall;
+        sentCall = null;
+        if (call != null) {
+            JSObject out = result(levelInFlight ? sentLevel : currentLevel(), false);
+            out.put("latencyMs", SystemClock.elapsedRealtime() - sentAt);
+            if (!echoed) {
+                out.put("timedOut", true);
+            }
+            call.resolve(out);
+        }
+        sendPending();
+    }
+
+    private void sendPending() {
+        if (pendingLevel >= 0) {
+            double level = pendingLevel;
+            PluginCall call = pendingLevelCall;
+            pendingLevel = -1;
+            pendingLevelCall = null;
+            sendLevel(level, call);
+        } else if (pendingMuted != null) {
+            boolean muted = pendingMuted;
+            PluginCall call = pendingMutedCall;
+            pendingMuted = null;
+            pendingMutedCall = null;
+            sendMuted(muted, call);
+        }
+    }
+
+    private void stopRamp() {
+        if (ramp != null) {
+            Ramp stopped = ramp;
+            ramp = null;
+            stopped.cancel();
+            if (pendingLevelCall == null) {
+                // An intermediate step of the ramp, not to be sent after it was cancelled
+                pendingLevel = -1;
+            }
+        }
+    }
+
+    /**
+     * @return the session's level, the last level sent once the session is disconnected
+     */
+    private double currentLevel() {
+        try {
+            return session.getVolume();
+        } catch (IllegalStateException e) {
+            return sentLevel;
+        }
+    }
+
+    /**
+     * @return the session's mute state, the last one sent once the session is disconnected
+     */
+    private boolean currentMuted() {
+        try {
+            return session.isMute();
+        } catch (IllegalStateException e) {
+            return sentMuted;
+        }
+    }
+
+    private JSObject result(double level, boolean superseded) {
+        JSObject out = new JSObject();
+        out.put("level", level);
+        out.put("muted", currentMuted());
+        out.put("superseded", superseded);
+        return out;
+    }
+
+    private static void reject(PluginCall call) {
+        if (call != null) {
+            call.reject("session_error");
+        }
+    }
+
+    private static double clamp(double level) {
+        return Math.max(0, Math.min(1, level));
+    }
+}
@@ -0,0 +1,188 @@
+package com.caprockapps.plugins.chromecast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import com.google.android.gms.cast.MediaInfo;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/*
+ * Channel zapping benchmark: loads the given media one after the other every tapIntervalMs,
+ * through the normal loadMedia path, and measures from the last tap until its load resolves and
+ * until the receiver reports it PLAYING (the closest status to its first frame).
+ * Runs on the main thread.
+ */
+final class ZapBenchmark {
+    private final ChromecastSession session;
+    private final RemoteMediaClient client;
+    private final JSONArray mediaList;
+    private final int taps;
+    private final long tapIntervalMs;
+    private final long timeoutMs;
+    private final PluginCall call;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /** Content id of the last tap. */
+    private String lastContentId;
+    /** When the last tap was made, -1 before. */
+    private long lastTapAt = -1;
+    private long loadedAt = -1;
+    private long playingAt = -1;
+    private int superseded = 0;
+    private int supersededAfterSend = 0;
+    private int failures = 0;
+    private String lastError;
+    private boolean done = false;
+
+    private final RemoteMediaClient.Callback statusCallback = new RemoteMediaClient.Callback() {
+        @Override
+        public void onStatusUpdated() {
+            if (lastTapAt < 0 || playingAt >= 0) {
+                return;
+            }
+            MediaStatus status = client.getMediaStatus();
+            MediaInfo info = client.getMediaInfo();
+            if (status != null && info != null
+                    && status.getPlayerState() == MediaStatus.PLAYER_STATE_PLAYING
+                    && lastContentId.equals(info.getContentId())) {
+                playingAt = SystemClock.elapsedRealtime();
+                finishIfDone();
+            }
+        }
+    };
+
+    private final Runnable timeout = new Runnable() {
+        @Override
+        public void run() {
+            finish(true);
+        }
+    };
+
+    ZapBenchmark(ChromecastSession session, RemoteMediaClient client, JSONArray mediaList, int taps,
+                 long tapIntervalMs, long timeoutMs, PluginCall call) {
+        this.session = session;
+        this.client = client;
+        this.mediaList = mediaList;
+        this.taps = Math.max(1, taps);
+        this.tapIntervalMs = Math.max(0, tapIntervalMs);
+        this.timeoutMs = timeoutMs;
+        this.call = call;
+    }
+
+    void run() {
+        if (mediaList == null || mediaList.length() == 0) {
+            call.reject("media is required", "invalid_parameter");
+            return;
+        }
+        client.registerCallback(statusCallback);
+        for (int i = 0; i < taps; i++) {
+            final int index = i;
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    tap(index);
+                }
+            }, i * tapIntervalMs);
+        }
+    }
+
+    private void tap(int index) {
+        if (done) {
+            return;
+        }
+        JSONObject media = mediaList.optJSONObject(index % mediaList.length());
+        if (media == null) {
+            media = new JSONObject();
+        }
+        final boolean last = index == taps - 1;
+        String contentId = media.optString("contentId");
+        if (last) {
+            lastContentId = contentId;
+            lastTapAt = SystemClock.elapsedRealtime();
+            handler.postDelayed(timeout, timeoutMs);
+        }
+        JSONObject metadata = media.optJSONObject("metadata");
+        session.loadMedia(contentId, new JSONObject(), media.optString("contentType", ""), 0,
+                media.optString("streamType", ""), true, 0,
+                metadata != null ? metadata : new JSONObject(), new JSONObject(),
+                new LocalPluginCall("loadMedia", null) {
+                    @Override
+                    void onResolve(final JSObject data) {
+                        // The media object is resolved from the serializer thread
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                loaded(data, last);
+                            }
+                        });
+                    }
+
+                    @Override
+                    void onReject(final String message, String code) {
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                failed(message, last);
+                            }
+                        });
+                    }
+                });
+    }
+
+    private void loaded(JSObject data, boolean last) {
+        if (data != null && data.optBoolean("superseded")) {
+            superseded++;
+            if (data.optBoolean("sent")) {
+                supersededAfterSend++;
+            }
+            return;
+        }
+        if (last) {
+            loadedAt = SystemClock.elapsedRealtime();
+            finishIfDone();
+        }
+    }
+
+    private void failed(String message, boolean last) {
+        failures++;
+        lastError = message;
+        if (last) {
+            finish(false);
+        }
+    }
+
+    private void finishIfDone() {
+        if (loadedAt >= 0 && playingAt >= 0) {
+            finish(false);
+        }
+    }
+
+    private void finish(boolean timedOut) {
+        if (done) {
+            return;
+        }
+        done = true;
+        handler.removeCallbacks(timeout);
+        client.unregisterCallback(statusCallback);
+        JSObject out = new JSObject();
+        out.put("taps", taps);
+        out.put("tapIntervalMs", tapIntervalMs);
+        out.put("superseded", superseded);
+        out.put("supersededAfterSend", supersededAfterSend);
+        out.put("failures", failures);
+        if (lastError != null) {
+            out.put("error", lastError);
+        }
+        out.put("timedOut", timedOut);
+        out.put("lastTapToLoadedMs", loadedAt >= 0 ? loadedAt - lastTapAt : -1);
+        out.put("lastTapToPlayingMs", playingAt >= 0 ? playingAt - lastTapAt : -1);
+        call.resolve(out);
+    }
+}
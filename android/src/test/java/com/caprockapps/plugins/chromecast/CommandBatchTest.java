@@ -0,0 +1,187 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommandBatchTest {
+
+    /** Settles the commands as told by their op, records the order they ran in. */
+    private static final class Dispatcher implements CommandBatch.Dispatcher {
+        final List<String> dispatched = new ArrayList<>();
+        /** Calls of the "async" commands, settled by the test. */
+        final List<PluginCall> waiting = new ArrayList<>();
+
+        @Override
+        public boolean dispatch(String op, PluginCall call) {
+            dispatched.add(op + ":" + call.getData().optInt("n"));
+            switch (op) {
+                case "ok":
+                    call.resolve(new JSObject().put("n", call.getData().optInt("n")));
+                    return true;
+                case "fail":
+                    call.reject("failed", "command_failed");
+                    return true;
+                case "async":
+                    waiting.add(call);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /** The bridge call of the batch. */
+    private static final class BatchCall extends LocalPluginCall {
+        JSObject result;
+
+        BatchCall() {
+            super("batch", null);
+        }
+
+        @Override
+        void onResolve(JSObject data) {
+            result = data;
+        }
+
+        @Override
+        void onReject(String message, String code) {
+            throw new AssertionError("The batch rejected: " + message);
+        }
+    }
+
+    private static JSArray commands(String... ops) {
+        JSArray out = new JSArray();
+        for (int i = 0; i < ops.length; i++) {
+            out.put(new JSObject().put("op", ops[i]).put("args", new JSObject().put("n", i)));
+        }
+        return out;
+    }
+
+    private static JSObject result(BatchCall call, int index) throws Exception {
+        return JSObject.fromJSONObject(call.result.getJSONArray("results").getJSONObject(index));
+    }
+
+    @Test
+    public void synchronousCommandsRunInOrder() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("ok", "ok", "ok"), false, dispatcher, call).run();
+        assertEquals(3, dispatcher.dispatched.size());
+        assertEquals("ok:0", dispatcher.dispatched.get(0));
+        assertEquals("ok:2", dispatcher.dispatched.get(2));
+        assertEquals(3, call.result.getInt("completed"));
+        assertEquals(0, call.result.getInt("failed"));
+        for (int i = 0; i < 3; i++) {
+            JSObject result = result(call, i);
+            assertTrue(result.getBoolean("success"));
+            assertEquals(i, result.getJSONObject("result").getInt("n"));
+        }
+    }
+
+    @Test
+    public void stopOnErrorSkipsTheRest() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("ok", "fail", "ok", "ok"), true, dispatcher, call).run();
+        assertEquals(2, dispatcher.dispatched.size());
+        assertEquals(1, call.result.getInt("completed"));
+        assertEquals(1, call.result.getInt("failed"));
+        JSObject failed = result(call, 1);
+        assertFalse(failed.getBoolean("success"));
+        assertEquals("failed", failed.getString("error"));
+        assertEquals("command_failed", failed.getString("code"));
+        for (int i = 2; i < 4; i++) {
+            JSObject skipped = result(call, i);
+            assertEquals("ok", skipped.getString("op"));
+            assertTrue(skipped.getBoolean("skipped"));
+        }
+    }
+
+    @Test
+    public void errorsDoNotStopTheBatchByDefault() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("fail", "ok"), false, dispatcher, call).run();
+        assertEquals(2, dispatcher.dispatched.size());
+        assertEquals(1, call.result.getInt("completed"));
+        assertEquals(1, call.result.getInt("failed"));
+    }
+
+    @Test
+    public void nextCommandWaitsForAnAsynchronousOne() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("ok", "async", "ok", "async", "ok"), false, dispatcher, call).run();
+        assertEquals(2, dispatcher.dispatched.size());
+        assertNull(call.result);
+
+        dispatcher.waiting.get(0).resolve();
+        // Runs the synchronous command, then stops at the next asynchronous one
+        assertEquals(4, dispatcher.dispatched.size());
+        assertEquals("async:3", dispatcher.dispatched.get(3));
+        assertNull(call.result);
+
+        dispatcher.waiting.get(1).reject("late", "timeout");
+        assertEquals(5, dispatcher.dispatched.size());
+        assertEquals(4, call.result.getInt("completed"));
+        assertEquals(1, call.result.getInt("failed"));
+        assertEquals("timeout", result(call, 3).getString("code"));
+    }
+
+    @Test
+    public void stopOnErrorAfterAnAsynchronousFailure() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("async", "ok"), true, dispatcher, call).run();
+        dispatcher.waiting.get(0).reject("refused", "command_failed");
+        assertEquals(1, dispatcher.dispatched.size());
+        assertTrue(result(call, 1).getBoolean("skipped"));
+    }
+
+    @Test
+    public void aCommandOnlySettlesOnce() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("async", "async"), false, dispatcher, call).run();
+        PluginCall first = dispatcher.waiting.get(0);
+        first.resolve();
+        first.reject("again", "command_failed");
+        assertEquals(2, dispatcher.dispatched.size());
+        assertNull(call.result);
+    }
+
+    @Test
+    public void unknownAndMissingOpsFail() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        BatchCall call = new BatchCall();
+        JSArray commands = commands("nope");
+        commands.put(new JSONObject());
+        new CommandBatch(commands, false, dispatcher, call).run();
+        assertEquals("unknown_op", result(call, 0).getString("code"));
+        assertEquals("invalid_parameter", result(call, 1).getString("code"));
+        assertEquals(2, call.result.getInt("failed"));
+    }
+
+    @Test
+    public void successFalseCountsAsAFailure() throws Exception {
+        BatchCall call = new BatchCall();
+        new CommandBatch(commands("send"), false, new CommandBatch.Dispatcher() {
+            @Override
+            public boolean dispatch(String op, PluginCall step) {
+                step.resolve(new JSObject().put("success", false));
+                return true;
+            }
+        }, call).run();
+        assertFalse(result(call, 0).getBoolean("success"));
+        assertEquals(1, call.result.getInt("failed"));
+    }
+}
@@ -0,0 +1,198 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class DiscoverySchedulerTest {
+
+    private MockedConstruction<Handler> handlers;
+    /** The last runnable posted to the handler, and its delay. */
+    private Runnable posted;
+    private long postedDelay;
+    private MediaRouter router;
+    private MediaRouteSelector selector;
+    private MediaRouter.Callback callback;
+    private DiscoveryScheduler.Options options;
+    private DiscoveryScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        handlers = mockConstruction(Handler.class, new MockedConstruction.MockInitializer<Handler>() {
+            @Override
+            public void prepare(Handler handler, MockedConstruction.Context context) {
+                when(handler.postDelayed(any(Runnable.class), anyLong())).thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        posted = invocation.getArgument(0);
+                        postedDelay = invocation.<Long>getArgument(1);
+                        return true;
+                    }
+                });
+            }
+        });
+        router = mock(MediaRouter.class);
+        selector = mock(MediaRouteSelector.class);
+        callback = mock(MediaRouter.Callback.class);
+        options = new DiscoveryScheduler.Options();
+        scheduler = new DiscoveryScheduler(router, selector, callback, options);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+        handlers.close();
+    }
+
+    /** Runs the last posted runnable, the end of a burst or the start of the next one. */
+    private void runPosted() {
+        Runnable next = posted;
+        posted = null;
+        next.run();
+    }
+
+    private String mode() {
+        return DiscoveryScheduler.getStats(options).getString("mode");
+    }
+
+    @Test
+    public void startsWithAnActiveBurst() {
+        scheduler.start();
+        verify(router).addCallback(selector, callback, MediaRouter.CALLBACK_FLAG_PERFORM_ACTIVE_SCAN);
+        assertEquals(8000, postedDelay);
+        assertEquals("active", mode());
+    }
+
+    @Test
+    public void quietPeriodsDoubleTheIntervalUpToTheMax() {
+        options.set(null, null, 50000L);
+        scheduler.start();
+        runPosted();
+        // Passive: registered again without the active scan flag
+        verify(router).removeCallback(callback);
+        verify(router).addCallback(selector, callback, 0);
+        assertEquals("passive", mode());
+        assertEquals(30000, postedDelay);
+
+        runPosted();
+        assertEquals("active", mode());
+        runPosted();
+        assertEquals(50000, postedDelay);
+    }
+
+    @Test
+    public void routeChangesHalveTheInterval() {
+        scheduler.start();
+        runPosted();
+        runPosted();
+        runPosted();
+        assertEquals(120000, postedDelay);
+
+        scheduler.onRouteSetChanged();
+        runPosted();
+        runPosted();
+        // Halved at the start of the burst, doubled again at its end as nothing changed since
+        assertEquals(120000, postedDelay);
+
+        runPosted();
+        assertEquals("active", mode());
+        // A change during the burst halves the interval at its end
+        scheduler.onRouteSetChanged();
+        runPosted();
+        assertEquals(120000, postedDelay);
+    }
+
+    @Test
+    public void intervalNeverGoesUnderTheMin() {
+        scheduler.start();
+        scheduler.onRouteSetChanged();
+        runPosted();
+        assertEquals(15000, postedDelay);
+    }
+
+    @Test
+    public void backgroundStopsUntilTheForeground() {
+        scheduler.start();
+        runPosted();
+        runPosted();
+        runPosted();
+        assertEquals(120000, postedDelay);
+        clearInvocations(router);
+
+        scheduler.onBackground();
+        verify(router).removeCallback(callback);
+        assertEquals("stopped", mode());
+
+        scheduler.onForeground();
+        verify(router).addCallback(selector, callback, MediaRouter.CALLBACK_FLAG_PERFORM_ACTIVE_SCAN);
+        assertEquals("active", mode());
+        // Back to the shortest interval
+        runPosted();
+        assertEquals(30000, postedDelay);
+    }
+
+    @Test
+    public void startInTheBackgroundWaitsForTheForeground() {
+        scheduler.onBackground();
+        scheduler.start();
+        verify(router, never()).addCallback(any(MediaRouteSelector.class), any(MediaRouter.Callback.class), anyInt());
+        scheduler.onForeground();
+        verify(router).addCallback(selector, callback, MediaRouter.CALLBACK_FLAG_PERFORM_ACTIVE_SCAN);
+    }
+
+    @Test
+    public void foregroundDuringABurstKeepsIt() {
+        scheduler.start();
+        Runnable endBurst = posted;
+        scheduler.onForeground();
+        assertSame(endBurst, posted);
+    }
+
+    @Test
+    public void optionsKeepTheOmittedTimings() {
+        options.set(2000L, null, null);
+        options.set(null, 20000L, null);
+        scheduler.start();
+        assertEquals(2000, postedDelay);
+        scheduler.onRouteSetChanged();
+        runPosted();
+        assertEquals(20000, postedDelay);
+    }
+
+    @Test
+    public void optionsAreKeptInOrder() {
+        // A burst of at least 1 s, intervals no shorter than the burst and a max no shorter than the min
+        options.set(10L, 500L, 100L);
+        scheduler.start();
+        assertEquals(1000, postedDelay);
+        runPosted();
+        assertEquals(1000, postedDelay);
+    }
+
+    @Test
+    public void stopRemovesTheCallback() {
+        scheduler.start();
+        scheduler.stop();
+        verify(router).removeCallback(callback);
+        assertEquals("stopped", mode());
+    }
+}
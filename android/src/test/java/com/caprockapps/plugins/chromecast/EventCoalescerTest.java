@@ -0,0 +1,138 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * The unit test android.jar never runs the delayed deliveries and its clock stays at 0, so what
+ * is held back is only delivered by setMaxRate, setWindow or clear.
+ */
+public class EventCoalescerTest {
+
+    private final List<String> delivered = new ArrayList<>();
+    private EventCoalescer events;
+
+    @Before
+    public void setUp() {
+        events = new EventCoalescer(new EventCoalescer.Sink() {
+            @Override
+            public void deliver(String eventName, JSONObject args) {
+                delivered.add(eventName + ":" + args.optInt("n"));
+            }
+        }, "MEDIA_UPDATE", "SESSION_UPDATE");
+    }
+
+    private static JSONObject args(int n) throws Exception {
+        return new JSONObject().put("n", n);
+    }
+
+    @Test
+    public void unlimitedEventsAreDeliveredStraightAway() throws Exception {
+        events.submit("MEDIA_UPDATE", args(1));
+        events.submit("MEDIA_UPDATE", args(2));
+        events.queue("RECEIVER_MESSAGE", args(3));
+        assertEquals(3, delivered.size());
+        assertEquals("MEDIA_UPDATE:2", delivered.get(1));
+    }
+
+    @Test
+    public void firstLimitedEventIsDeliveredStraightAway() throws Exception {
+        events.setMaxRate("MEDIA_UPDATE", 4);
+        events.submit("MEDIA_UPDATE", args(1));
+        assertEquals(1, delivered.size());
+        events.submit("MEDIA_UPDATE", args(2));
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void heldBackStatesKeepTheLatest() throws Exception {
+        events.setMaxRate("MEDIA_UPDATE", 4);
+        for (int n = 1; n <= 5; n++) {
+            events.submit("MEDIA_UPDATE", args(n));
+        }
+        events.setMaxRate("MEDIA_UPDATE", 0);
+        assertEquals(2, delivered.size());
+        assertEquals("MEDIA_UPDATE:1", delivered.get(0));
+        assertEquals("MEDIA_UPDATE:5", delivered.get(1));
+    }
+
+    @Test
+    public void heldBackMessagesAreAllDeliveredInOrder() throws Exception {
+        events.setMaxRate("RECEIVER_MESSAGE", 2);
+        for (int n = 1; n <= 4; n++) {
+            events.queue("RECEIVER_MESSAGE", args(n));
+        }
+        assertEquals(1, delivered.size());
+        events.setMaxRate("RECEIVER_MESSAGE", 0);
+        assertEquals(4, delivered.size());
+        for (int n = 1; n <= 4; n++) {
+            assertEquals("RECEIVER_MESSAGE:" + n, delivered.get(n - 1));
+        }
+    }
+
+    @Test
+    public void limitsAreKeptPerEvent() throws Exception {
+        events.setMaxRate("MEDIA_UPDATE", 4);
+        events.submit("MEDIA_UPDATE", args(1));
+        events.submit("MEDIA_UPDATE", args(2));
+        events.submit("MEDIA_PROGRESS", args(3));
+        events.submit("MEDIA_PROGRESS", args(4));
+        assertEquals(3, delivered.size());
+        assertEquals("MEDIA_PROGRESS:4", delivered.get(2));
+    }
+
+    @Test
+    public void windowAppliesToTheWindowEventsWithoutARate() throws Exception {
+        events.setWindow(500);
+        events.submit("SESSION_UPDATE", args(1));
+        events.submit("SESSION_UPDATE", args(2));
+        events.submit("SESSION_UPDATE", args(3));
+        // Not a window event, and without a rate
+        events.submit("MEDIA_PROGRESS", args(4));
+        events.submit("MEDIA_PROGRESS", args(5));
+        assertEquals(3, delivered.size());
+        assertEquals("SESSION_UPDATE:1", delivered.get(0));
+
+        events.setWindow(0);
+        assertEquals(4, delivered.size());
+        assertEquals("SESSION_UPDATE:3", delivered.get(3));
+    }
+
+    @Test
+    public void removingTheRateKeepsTheWindow() throws Exception {
+        events.setWindow(500);
+        events.setMaxRate("MEDIA_UPDATE", 4);
+        events.submit("MEDIA_UPDATE", args(1));
+        events.submit("MEDIA_UPDATE", args(2));
+        events.setMaxRate("MEDIA_UPDATE", 0);
+        // Still held back by the window
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void clearDeliversEverythingHeldBack() throws Exception {
+        events.setWindow(500);
+        events.setMaxRate("RECEIVER_MESSAGE", 1);
+        events.submit("MEDIA_UPDATE", args(1));
+        events.submit("MEDIA_UPDATE", args(2));
+        events.queue("RECEIVER_MESSAGE", args(3));
+        events.queue("RECEIVER_MESSAGE", args(4));
+        events.queue("RECEIVER_MESSAGE", args(5));
+        assertEquals(2, delivered.size());
+
+        events.clear();
+        assertEquals(5, delivered.size());
+        assertTrue(delivered.contains("MEDIA_UPDATE:2"));
+        assertTrue(delivered.indexOf("RECEIVER_MESSAGE:4") < delivered.indexOf("RECEIVER_MESSAGE:5"));
+
+        // No limit left
+        events.submit("MEDIA_UPDATE", args(6));
+        assertEquals(6, delivered.size());
+    }
+}
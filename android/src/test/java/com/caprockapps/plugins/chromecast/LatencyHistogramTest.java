@@ -0,0 +1,77 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramHasNoPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordFailure();
+        JSONObject stats = histogram.toJSON();
+        assertEquals(0, stats.getLong("count"));
+        assertEquals(1, stats.getLong("failures"));
+        assertFalse(stats.has("p50Ms"));
+        assertEquals(12, stats.getJSONArray("buckets").length());
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms);
+        }
+        JSONObject stats = histogram.toJSON();
+        assertEquals(100, stats.getLong("count"));
+        assertEquals(1, stats.getLong("minMs"));
+        assertEquals(100, stats.getLong("maxMs"));
+        assertEquals(50.5, stats.getDouble("avgMs"), 0.001);
+        // 5 + 5 + 15 + 25 calls up to 50 ms
+        assertEquals(50, stats.getLong("p50Ms"));
+        assertEquals(100, stats.getLong("p90Ms"));
+        assertEquals(100, stats.getLong("p99Ms"));
+    }
+
+    @Test
+    public void percentileIsCappedByTheMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        JSONObject stats = histogram.toJSON();
+        assertEquals(5, stats.getLong("p50Ms"));
+        // The 10 ms bucket, but no call took more than 7 ms
+        assertEquals(7, stats.getLong("p99Ms"));
+    }
+
+    @Test
+    public void unboundedBucketReportsTheMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.record(20);
+        }
+        histogram.record(12000);
+        histogram.record(30000);
+        JSONObject stats = histogram.toJSON();
+        assertEquals(25, stats.getLong("p50Ms"));
+        assertEquals(30000, stats.getLong("p99Ms"));
+        JSONArray buckets = stats.getJSONArray("buckets");
+        JSONObject last = buckets.getJSONObject(buckets.length() - 1);
+        assertEquals(-1, last.getLong("le"));
+        assertEquals(2, last.getLong("count"));
+    }
+
+    @Test
+    public void boundsAreInclusive() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.record(6);
+        JSONArray buckets = histogram.toJSON().getJSONArray("buckets");
+        assertEquals(5, buckets.getJSONObject(0).getLong("le"));
+        assertEquals(1, buckets.getJSONObject(0).getLong("count"));
+        assertEquals(1, buckets.getJSONObject(1).getLong("count"));
+    }
+}
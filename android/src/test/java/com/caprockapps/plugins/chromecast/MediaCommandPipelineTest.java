@@ -0,0 +1,186 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.getcapacitor.JSObject;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient;
+import com.google.android.gms.cast.framework.media.RemoteMediaClient.MediaChannelResult;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MediaCommandPipelineTest {
+
+    private final List<String> log = new ArrayList<>();
+    private RemoteMediaClient client;
+    private MediaCommandPipeline pipeline;
+
+    /** Records when it is sent and how it settles, acknowledged by the test. */
+    private final class TestCommand extends MediaCommandPipeline.Command {
+        final Boolean playing;
+        final PendingResult<MediaChannelResult> pending;
+        JSObject result;
+        String code;
+
+        @SuppressWarnings("unchecked")
+        TestCommand(String name, Boolean playing) {
+            super(name, null);
+            this.playing = playing;
+            this.pending = mock(PendingResult.class);
+        }
+
+        @Override
+        PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+            log.add("send " + name);
+            return pending;
+        }
+
+        @Override
+        Boolean playingAfter() {
+            return playing;
+        }
+
+        @Override
+        void complete(JSObject out) {
+            log.add("complete " + name);
+            result = out;
+        }
+
+        @Override
+        void fail(String message, String failCode) {
+            log.add("fail " + name);
+            code = failCode;
+        }
+
+        /** Settles the pending acknowledgement. */
+        @SuppressWarnings("unchecked")
+        void ack(int statusCode) {
+            ArgumentCaptor<ResultCallback> callback = ArgumentCaptor.forClass(ResultCallback.class);
+            verify(pending).setResultCallback(callback.capture());
+            MediaChannelResult result = mock(MediaChannelResult.class);
+            when(result.getStatus()).thenReturn(new Status(statusCode));
+            callback.getValue().onResult(result);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        client = mock(RemoteMediaClient.class);
+        pipeline = new MediaCommandPipeline(client);
+    }
+
+    private void setPlayerState(int state) {
+        MediaStatus status = mock(MediaStatus.class);
+        when(status.getPlayerState()).thenReturn(state);
+        when(client.getMediaStatus()).thenReturn(status);
+    }
+
+    @Test
+    public void oneCommandInFlightAtATime() {
+        TestCommand seek = new TestCommand("seek", null);
+        TestCommand rate = new TestCommand("setPlaybackRate", null);
+        pipeline.enqueue(seek);
+        pipeline.enqueue(rate);
+        assertEquals(1, log.size());
+
+        seek.ack(CommonStatusCodes.SUCCESS);
+        assertEquals("complete seek", log.get(1));
+        assertEquals("send setPlaybackRate", log.get(2));
+        assertNull(rate.result);
+
+        rate.ack(CommonStatusCodes.SUCCESS);
+        assertEquals("setPlaybackRate", rate.result.getString("command"));
+    }
+
+    @Test
+    public void redundantPlayAndPauseAreSkipped() {
+        setPlayerState(MediaStatus.PLAYER_STATE_PLAYING);
+        TestCommand play = new TestCommand("play", true);
+        pipeline.enqueue(play);
+        assertTrue(log.isEmpty());
+        assertTrue(play.result.getBool("skipped"));
+        assertEquals("PLAYING", play.result.getString("playerState"));
+
+        TestCommand pause = new TestCommand("pause", false);
+        pipeline.enqueue(pause);
+        assertEquals("send pause", log.get(0));
+    }
+
+    @Test
+    public void skipFollowsTheQueuedCommands() {
+        setPlayerState(MediaStatus.PLAYER_STATE_PLAYING);
+        TestCommand pause = new TestCommand("pause", false);
+        TestCommand play = new TestCommand("play", true);
+        TestCommand again = new TestCommand("play", true);
+        pipeline.enqueue(pause);
+        pipeline.enqueue(play);
+        // Playing again once the queued play ran
+        pipeline.enqueue(again);
+        assertTrue(again.result.getBool("skipped"));
+        assertNull(play.result);
+    }
+
+    @Test
+    public void unknownStateIsNotSkipped() {
+        TestCommand play = new TestCommand("play", true);
+        pipeline.enqueue(play);
+        assertEquals("send play", log.get(0));
+    }
+
+    @Test
+    public void refusedCommandFailsAndTheNextIsSent() {
+        TestCommand seek = new TestCommand("seek", null);
+        TestCommand stop = new TestCommand("stop", null);
+        pipeline.enqueue(seek);
+        pipeline.enqueue(stop);
+        seek.ack(CommonStatusCodes.ERROR);
+        assertEquals("command_failed", seek.code);
+        assertEquals("send stop", log.get(2));
+    }
+
+    @Test
+    public void throwingCommandFailsAndTheNextIsSent() {
+        TestCommand broken = new TestCommand("seek", null) {
+            @Override
+            PendingResult<MediaChannelResult> send(RemoteMediaClient client) {
+                throw new IllegalStateException("not connected");
+            }
+        };
+        TestCommand stop = new TestCommand("stop", null);
+        pipeline.enqueue(broken);
+        pipeline.enqueue(stop);
+        assertEquals("command_failed", broken.code);
+        assertEquals("send stop", log.get(1));
+    }
+
+    @Test
+    public void cancelFailsTheQueuedCommands() {
+        TestCommand seek = new TestCommand("seek", null);
+        TestCommand stop = new TestCommand("stop", null);
+        pipeline.enqueue(seek);
+        pipeline.enqueue(stop);
+        pipeline.cancel();
+        assertEquals("session_error", stop.code);
+
+        // The one in flight still completes, nothing else is sent
+        seek.ack(CommonStatusCodes.SUCCESS);
+        assertNotNull(seek.result);
+        TestCommand late = new TestCommand("play", true);
+        pipeline.enqueue(late);
+        assertEquals("session_error", late.code);
+        assertFalse(log.contains("send play"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MediaUpdateEncoderTest {
+
+    private MediaUpdateEncoder encoder;
+
+    @Before
+    public void setUp() {
+        encoder = new MediaUpdateEncoder();
+        encoder.setDeltaMode(true, 3);
+    }
+
+    private static JSONObject media(String title, double currentTime) throws Exception {
+        JSONObject metadata = new JSONObject();
+        metadata.put("title", title);
+        JSONObject media = new JSONObject();
+        media.put("metadata", metadata);
+        JSONObject out = new JSONObject();
+        out.put("media", media);
+        out.put("currentTime", currentTime);
+        out.put("playerState", "PLAYING");
+        return out;
+    }
+
+    @Test
+    public void fullModeReturnsTheMediaObject() throws Exception {
+        encoder.setDeltaMode(false, 0);
+        JSONObject media = media("a", 1);
+        assertSame(media, encoder.encode(media));
+        assertSame(media, encoder.encode(media));
+    }
+
+    @Test
+    public void firstUpdateIsAKeyframe() throws Exception {
+        JSONObject media = media("a", 1);
+        JSONObject out = encoder.encode(media);
+        assertEquals(1, out.getLong("seq"));
+        assertTrue(out.getBoolean("keyframe"));
+        assertSame(media, out.get("media"));
+    }
+
+    @Test
+    public void deltaHoldsTheChangedPaths() throws Exception {
+        encoder.encode(media("a", 1));
+        JSONObject out = encoder.encode(media("b", 2));
+        assertEquals(2, out.getLong("seq"));
+        assertFalse(out.getBoolean("keyframe"));
+        JSONObject changes = out.getJSONObject("changes");
+        assertEquals(2, changes.length());
+        assertEquals("b", changes.get("media.metadata.title"));
+        assertEquals(2.0, changes.getDouble("currentTime"), 0);
+        assertFalse(out.has("removed"));
+    }
+
+    @Test
+    public void unchangedUpdateIsNotSent() throws Exception {
+        encoder.encode(media("a", 1));
+        assertNull(encoder.encode(media("a", 1)));
+        // The skipped update does not use a sequence number
+        assertEquals(2, encoder.encode(media("b", 1)).getLong("seq"));
+    }
+
+    @Test
+    public void removedPathsAreListed() throws Exception {
+        encoder.encode(media("a", 1));
+        JSONObject next = media("a", 1);
+        next.getJSONObject("media").remove("metadata");
+        next.remove("playerState");
+        JSONObject out = encoder.encode(next);
+        assertEquals(0, out.getJSONObject("changes").length());
+        JSONArray removed = out.getJSONArray("removed");
+        assertEquals(2, removed.length());
+        assertEquals("media.metadata", removed.getString(0));
+        assertEquals("playerState", removed.getString(1));
+    }
+
+    @Test
+    public void keyframeEveryInterval() throws Exception {
+        assertTrue(encoder.encode(media("a", 0)).getBoolean("keyframe"));
+        for (int i = 1; i <= 3; i++) {
+            assertFalse(encoder.encode(media("a", i)).getBoolean("keyframe"));
+        }
+        JSONObject out = encoder.encode(media("a", 4));
+        assertTrue(out.getBoolean("keyframe"));
+        assertEquals(5, out.getLong("seq"));
+    }
+
+    @Test
+    public void resetForcesAKeyframe() throws Exception {
+        encoder.encode(media("a", 1));
+        encoder.reset();
+        assertTrue(encoder.encode(media("b", 2)).getBoolean("keyframe"));
+    }
+
+    @Test
+    public void dottedKeysAreEscaped() throws Exception {
+        JSONObject before = new JSONObject();
+        before.put("a.b", 1);
+        before.put("a", new JSONObject().put("b", 1));
+        before.put("c~d", 1);
+        encoder.encode(before);
+
+        JSONObject after = new JSONObject();
+        after.put("a.b", 2);
+        after.put("a", new JSONObject().put("b", 3));
+        JSONObject out = encoder.encode(after);
+        JSONObject changes = out.getJSONObject("changes");
+        assertEquals(2, changes.length());
+        assertEquals(2, changes.getInt("a~1b"));
+        assertEquals(3, changes.getInt("a.b"));
+        JSONArray removed = out.getJSONArray("removed");
+        assertEquals(1, removed.length());
+        assertEquals("c~0d", removed.getString(0));
+    }
+
+    @Test
+    public void escapeKey() {
+        assertEquals("title", MediaUpdateEncoder.escapeKey("title"));
+        assertEquals("a~1b~1c", MediaUpdateEncoder.escapeKey("a.b.c"));
+        assertEquals("a~01", MediaUpdateEncoder.escapeKey("a~1"));
+    }
+
+    @Test
+    public void numbersCompareByValue() {
+        assertTrue(MediaUpdateEncoder.jsonEquals(1, 1.0));
+        assertTrue(MediaUpdateEncoder.jsonEquals(1L, 1));
+        assertFalse(MediaUpdateEncoder.jsonEquals(1, 2));
+        assertFalse(MediaUpdateEncoder.jsonEquals(null, 0));
+    }
+}
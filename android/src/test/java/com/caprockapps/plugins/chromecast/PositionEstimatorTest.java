@@ -0,0 +1,126 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mockStatic;
+
+import android.os.SystemClock;
+
+import com.google.android.gms.cast.MediaStatus;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+public class PositionEstimatorTest {
+
+    private MockedStatic<SystemClock> clock;
+    private PositionEstimator estimator;
+
+    @Before
+    public void setUp() {
+        clock = mockStatic(SystemClock.class);
+        setTime(1000);
+        estimator = new PositionEstimator();
+    }
+
+    @After
+    public void tearDown() {
+        clock.close();
+    }
+
+    private void setTime(final long ms) {
+        clock.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                SystemClock.elapsedRealtime();
+            }
+        }).thenReturn(ms);
+    }
+
+    @Test
+    public void playingExtrapolatesFromTheAnchor() {
+        estimator.update(10000, 60000, 1, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(3500);
+        assertEquals(12500, estimator.getPosition());
+    }
+
+    @Test
+    public void rateScalesTheElapsedTime() {
+        estimator.update(10000, 60000, 2, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(2000);
+        assertEquals(12000, estimator.getPosition());
+        estimator.update(10000, 60000, 0.5, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(4000);
+        assertEquals(11000, estimator.getPosition());
+    }
+
+    @Test
+    public void pausedAndBufferingHoldThePosition() {
+        estimator.update(10000, 60000, 1, MediaStatus.PLAYER_STATE_PAUSED);
+        setTime(5000);
+        assertEquals(10000, estimator.getPosition());
+        estimator.update(20000, 60000, 1, MediaStatus.PLAYER_STATE_BUFFERING);
+        setTime(9000);
+        assertEquals(20000, estimator.getPosition());
+    }
+
+    @Test
+    public void positionIsCappedByTheDuration() {
+        estimator.update(59000, 60000, 1, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(10000);
+        assertEquals(60000, estimator.getPosition());
+    }
+
+    @Test
+    public void unknownDurationIsNotACap() {
+        // Eg. a live stream
+        estimator.update(59000, 0, 1, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(10000);
+        assertEquals(68000, estimator.getPosition());
+    }
+
+    @Test
+    public void setPositionMovesTheAnchorOnly() {
+        estimator.update(10000, 60000, 1, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(5000);
+        estimator.setPosition(30000);
+        assertEquals(30000, estimator.getPosition());
+        setTime(6000);
+        assertEquals(31000, estimator.getPosition());
+    }
+
+    @Test
+    public void negativePositionsAreClamped() {
+        estimator.update(-500, 60000, 1, MediaStatus.PLAYER_STATE_PAUSED);
+        assertEquals(0, estimator.getPosition());
+    }
+
+    @Test
+    public void resetStopsTheExtrapolation() {
+        estimator.update(10000, 60000, 1, MediaStatus.PLAYER_STATE_PLAYING);
+        estimator.reset();
+        setTime(5000);
+        assertEquals(0, estimator.getPosition());
+    }
+
+    @Test
+    public void toJSONUsesSeconds() throws Exception {
+        estimator.update(10000, 60000, 1.5, MediaStatus.PLAYER_STATE_PLAYING);
+        setTime(2000);
+        JSONObject out = estimator.toJSON();
+        assertEquals(11.5, out.getDouble("position"), 0.001);
+        assertEquals(60, out.getDouble("duration"), 0.001);
+        assertEquals(1.5, out.getDouble("rate"), 0.001);
+        assertEquals("PLAYING", out.getString("playerState"));
+    }
+
+    @Test
+    public void toJSONLeavesOutAnUnknownDuration() throws Exception {
+        estimator.update(10000, 0, 1, MediaStatus.PLAYER_STATE_PAUSED);
+        JSONObject out = estimator.toJSON();
+        assertFalse(out.has("duration"));
+        assertEquals("PAUSED", out.getString("playerState"));
+    }
+}
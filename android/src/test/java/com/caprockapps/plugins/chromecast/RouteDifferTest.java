@@ -0,0 +1,88 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import androidx.mediarouter.media.MediaRouter.RouteInfo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class RouteDifferTest {
+
+    private static RouteInfo route(String id, String name) {
+        RouteInfo route = mock(RouteInfo.class);
+        when(route.getId()).thenReturn(id);
+        when(route.getName()).thenReturn(name);
+        return route;
+    }
+
+    @Test
+    public void firstUpdateAddsEverything() throws Exception {
+        RouteDiffer differ = new RouteDiffer();
+        RouteDiffer.Diff diff = differ.update(Arrays.asList(route("first-a", "A"), route("first-b", "B")));
+        assertEquals(2, diff.added.length());
+        assertEquals("first-a", diff.added.getJSONObject(0).getString("id"));
+        assertEquals("B", diff.added.getJSONObject(1).getString("name"));
+        assertEquals(0, diff.changed.length());
+        assertEquals(0, diff.removed.length());
+    }
+
+    @Test
+    public void addedChangedAndRemoved() throws Exception {
+        RouteDiffer differ = new RouteDiffer();
+        RouteInfo kept = route("diff-kept", "Kept");
+        RouteInfo renamed = route("diff-renamed", "Before");
+        differ.update(Arrays.asList(kept, renamed, route("diff-gone", "Gone")));
+
+        when(renamed.getName()).thenReturn("After");
+        RouteDiffer.Diff diff = differ.update(Arrays.asList(kept, renamed, route("diff-new", "New")));
+        assertEquals(1, diff.added.length());
+        assertEquals("diff-new", diff.added.getJSONObject(0).getString("id"));
+        assertEquals(1, diff.changed.length());
+        assertEquals("After", diff.changed.getJSONObject(0).getString("name"));
+        assertEquals(1, diff.removed.length());
+        assertEquals("diff-gone", diff.removed.getString(0));
+    }
+
+    @Test
+    public void unchangedUpdateIsEmpty() throws Exception {
+        RouteDiffer differ = new RouteDiffer();
+        RouteInfo route = route("same-a", "A");
+        differ.update(Collections.singletonList(route));
+        RouteDiffer.Diff diff = differ.update(Collections.singletonList(route));
+        assertEquals(0, diff.added.length());
+        assertEquals(0, diff.changed.length());
+        assertEquals(0, diff.removed.length());
+    }
+
+    @Test
+    public void invalidatedRouteWithTheSameJsonIsNotChanged() throws Exception {
+        RouteDiffer differ = new RouteDiffer();
+        RouteInfo route = route("invalidated-a", "A");
+        differ.update(Collections.singletonList(route));
+        // Eg. a volume change: the route is looked at again but its JSON is the same
+        RouteFilter.invalidate("invalidated-a");
+        RouteDiffer.Diff diff = differ.update(Collections.singletonList(route));
+        assertEquals(0, diff.changed.length());
+    }
+
+    @Test
+    public void duplicateIdsCountOnce() throws Exception {
+        RouteDiffer differ = new RouteDiffer();
+        RouteDiffer.Diff diff = differ.update(Arrays.asList(route("dup-a", "A"), route("dup-a", "A")));
+        assertEquals(1, diff.added.length());
+    }
+
+    @Test
+    public void removedRouteComesBackAsAdded() throws Exception {
+        RouteDiffer differ = new RouteDiffer();
+        RouteInfo route = route("back-a", "A");
+        differ.update(Collections.singletonList(route));
+        assertEquals(1, differ.update(Collections.<RouteInfo>emptyList()).removed.length());
+        assertEquals(1, differ.update(Collections.singletonList(route)).added.length());
+    }
+}
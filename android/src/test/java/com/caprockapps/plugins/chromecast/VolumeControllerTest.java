@@ -0,0 +1,234 @@
+package com.caprockapps.plugins.chromecast;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.getcapacitor.JSObject;
+import com.google.android.gms.cast.framework.CastSession;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class VolumeControllerTest {
+
+    /** Records how it settled. */
+    private static final class Call extends LocalPluginCall {
+        JSObject result;
+        String error;
+
+        Call() {
+            super("setVolume", null);
+        }
+
+        @Override
+        void onResolve(JSObject data) {
+            result = data;
+        }
+
+        @Override
+        void onReject(String message, String code) {
+            error = message;
+        }
+    }
+
+    private MockedStatic<SystemClock> clock;
+    private MockedConstruction<Handler> handlers;
+    /** The runnables posted to the handler, and their delays. */
+    private final List<Runnable> posted = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private CastSession session;
+    private VolumeController volume;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = mockStatic(SystemClock.class);
+        setTime(0);
+        handlers = mockConstruction(Handler.class, new MockedConstruction.MockInitializer<Handler>() {
+            @Override
+            public void prepare(Handler handler, MockedConstruction.Context context) {
+                when(handler.postDelayed(any(Runnable.class), anyLong())).thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        posted.add(invocation.<Runnable>getArgument(0));
+                        delays.add(invocation.<Long>getArgument(1));
+                        return true;
+                    }
+                });
+            }
+        });
+        session = mock(CastSession.class);
+        volume = new VolumeController(session);
+    }
+
+    @After
+    public void tearDown() {
+        handlers.close();
+        clock.close();
+    }
+
+    private void setTime(final long ms) {
+        clock.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                SystemClock.elapsedRealtime();
+            }
+        }).thenReturn(ms);
+    }
+
+    /** Reports the level from the session, as the receiver would once it applied it. */
+    private boolean echo(double level) throws Exception {
+        when(session.getVolume()).thenReturn(level);
+        return volume.onVolumeChanged();
+    }
+
+    /** Runs the last runnable posted with that delay. */
+    private void runPosted(long delay) {
+        for (int i = posted.size() - 1; i >= 0; i--) {
+            if (delays.get(i) == delay) {
+                posted.get(i).run();
+                return;
+            }
+        }
+        throw new AssertionError("Nothing posted with a " + delay + " ms delay");
+    }
+
+    @Test
+    public void changesWhileInFlightKeepTheLatest() throws Exception {
+        Call first = new Call();
+        Call second = new Call();
+        Call third = new Call();
+        volume.setLevel(0.2, first);
+        volume.setLevel(0.4, second);
+        volume.setLevel(0.6, third);
+        verify(session).setVolume(0.2);
+        verify(session, never()).setVolume(0.4);
+        assertTrue(second.result.getBool("superseded"));
+        assertEquals(0.4, second.result.getDouble("level"), 0);
+
+        setTime(120);
+        // Our own echo, the next change goes out
+        assertFalse(echo(0.2));
+        assertFalse(first.result.getBool("superseded"));
+        assertEquals(120, (long) first.result.getLong("latencyMs"));
+        verify(session).setVolume(0.6);
+        assertNull(third.result);
+
+        assertTrue(echo(0.6));
+        assertEquals(0.6, third.result.getDouble("level"), 0);
+    }
+
+    @Test
+    public void otherLevelsDoNotAcknowledge() throws Exception {
+        Call call = new Call();
+        volume.setLevel(0.5, call);
+        assertFalse(echo(0.3));
+        assertNull(call.result);
+        assertTrue(echo(0.502));
+        assertNotNull(call.result);
+    }
+
+    @Test
+    public void changesFromElsewhereAreReported() throws Exception {
+        assertTrue(echo(0.7));
+    }
+
+    @Test
+    public void unacknowledgedChangeTimesOut() throws Exception {
+        Call call = new Call();
+        Call next = new Call();
+        volume.setLevel(0.5, call);
+        volume.setLevel(0.8, next);
+        runPosted(1000);
+        assertTrue(call.result.getBool("timedOut"));
+        verify(session).setVolume(0.8);
+    }
+
+    @Test
+    public void disconnectedSessionFallsBackToTheLastSentState() throws Exception {
+        Call level = new Call();
+        volume.setLevel(0.4, level);
+        echo(0.4);
+
+        when(session.getVolume()).thenThrow(new IllegalStateException("Not connected to a device"));
+        when(session.isMute()).thenThrow(new IllegalStateException("Not connected to a device"));
+        Call mute = new Call();
+        volume.setMuted(true, mute);
+        assertTrue(volume.onVolumeChanged());
+        assertEquals(0.4, mute.result.getDouble("level"), 0);
+        assertTrue(mute.result.getBool("muted"));
+    }
+
+    @Test
+    public void rampReachesTheTargetInSteps() throws Exception {
+        when(session.getVolume()).thenReturn(0.0);
+        Call call = new Call();
+        volume.ramp(1, 1000, call);
+        verify(session).setVolume(0.0);
+        echo(0.0);
+
+        setTime(500);
+        runPosted(50);
+        verify(session).setVolume(0.5);
+        assertFalse(echo(0.5));
+
+        setTime(1000);
+        runPosted(50);
+        verify(session).setVolume(1.0);
+        assertNull(call.result);
+        assertTrue(echo(1.0));
+        assertEquals(1.0, call.result.getDouble("level"), 0);
+    }
+
+    @Test
+    public void cancelledRampDropsItsPendingStep() throws Exception {
+        when(session.getVolume()).thenReturn(0.0);
+        Call rampCall = new Call();
+        volume.ramp(1, 1000, rampCall);
+        setTime(500);
+        // The step waits for the first one to be acknowledged
+        runPosted(50);
+        verify(session, never()).setVolume(0.5);
+
+        Call mute = new Call();
+        volume.setMuted(true, mute);
+        assertTrue(rampCall.result.getBool("cancelled"));
+
+        echo(0.0);
+        verify(session).setMute(true);
+        verify(session, never()).setVolume(0.5);
+    }
+
+    @Test
+    public void cancelRejectsEverything() throws Exception {
+        Call sent = new Call();
+        Call pending = new Call();
+        volume.setLevel(0.2, sent);
+        volume.setLevel(0.4, pending);
+        volume.cancel();
+        assertEquals("session_error", sent.error);
+        assertEquals("session_error", pending.error);
+
+        Call late = new Call();
+        volume.setLevel(0.6, late);
+        assertEquals("session_error", late.error);
+        verify(session, never()).setVolume(0.6);
+    }
+}
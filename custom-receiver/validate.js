@@ -73,6 +73,21 @@ if (!fs.existsSync('index.html')) {
             message: 'Ajout de tokens aux segments TS',
             required: true
         },
+        {
+            pattern: /DecompressionStream\('deflate'\)/,
+            message: 'Décompression des messages groupés',
+            required: false
+        },
+        {
+            pattern: /chunk: 'ack'/,
+            message: 'Réassemblage des gros messages',
+            required: false
+        },
+        {
+            pattern: /rpc: 'res'/,
+            message: 'Répondeur RPC (rpcCall)',
+            required: false
+        },
         {
             pattern: /https:\/\/www\.gstatic\.com\/cast\/sdk/,
             message: 'Google Cast SDK chargé depuis CDN',
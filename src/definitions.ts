@@ -144,6 +144,898 @@ export interface ChromecastSecureHLSOptions {
   customData?: any;
 }
 
+/**
+ * Options pour le mode d'envoi des événements MEDIA_UPDATE
+ */
+export interface ChromecastMediaUpdateModeOptions {
+  /**
+   * Si true, MEDIA_UPDATE n'envoie que les chemins modifiés depuis l'événement précédent
+   */
+  delta: boolean;
+
+  /**
+   * Nombre de deltas entre deux keyframes complètes (par défaut: 20)
+   */
+  keyframeInterval?: number;
+}
+
+/**
+ * Événement MEDIA_UPDATE en mode delta
+ */
+export interface ChromecastMediaUpdateDelta {
+  /**
+   * Numéro de séquence, permet de détecter un événement manquant
+   */
+  seq: number;
+
+  /**
+   * true si l'événement contient l'objet média complet
+   */
+  keyframe: boolean;
+
+  /**
+   * Objet média complet (keyframe uniquement)
+   */
+  media?: any;
+
+  /**
+   * Valeurs modifiées, indexées par chemin (ex: 'media.metadata.title').
+   * Dans une clé, '~' est écrit '~0' et '.' est écrit '~1'
+   */
+  changes?: { [path: string]: any };
+
+  /**
+   * Chemins supprimés depuis l'événement précédent, au même format que changes
+   */
+  removed?: string[];
+}
+
+/**
+ * Options pour limiter la fréquence des événements envoyés par le plugin
+ */
+export interface ChromecastEventRateLimitsOptions {
+  /**
+   * Fenêtre de regroupement en ms appliquée à chaque événement limité, ainsi qu'à
+   * MEDIA_UPDATE et SESSION_UPDATE même sans maxRates (par défaut: 0, conservée si omise)
+   */
+  windowMs?: number;
+
+  /**
+   * Nombre maximal d'événements par seconde, par nom d'événement
+   * (ex: { MEDIA_UPDATE: 4, SESSION_UPDATE: 2 }). 0 supprime la limite.
+   * Seul le dernier état est envoyé; les RECEIVER_MESSAGE retenus sont tous envoyés dans l'ordre.
+   */
+  maxRates?: { [eventName: string]: number };
+
+  /**
+   * Supprime toutes les limites existantes avant d'appliquer celles-ci
+   */
+  reset?: boolean;
+}
+
+/**
+ * Options pour les événements MEDIA_PROGRESS
+ */
+export interface ChromecastProgressUpdatesOptions {
+  /**
+   * Intervalle en ms entre deux événements MEDIA_PROGRESS, 0 pour les arrêter
+   */
+  intervalMs: number;
+
+  /**
+   * Utiliser le ProgressListener du SDK Cast au lieu de l'estimation locale
+   */
+  useProgressListener?: boolean;
+}
+
+/**
+ * Position de lecture estimée (événement MEDIA_PROGRESS et getEstimatedPosition)
+ */
+export interface ChromecastMediaProgress {
+  /**
+   * Position estimée en secondes
+   */
+  position: number;
+
+  /**
+   * Durée en secondes (absente pour un flux live)
+   */
+  duration?: number;
+
+  /**
+   * Vitesse de lecture
+   */
+  rate: number;
+
+  /**
+   * État du lecteur (PLAYING, PAUSED, BUFFERING, IDLE, UNKNOWN)
+   */
+  playerState: string;
+}
+
+/**
+ * Options pour la fenêtre d'éléments de file d'attente incluse dans les objets média
+ */
+export interface ChromecastQueueWindowOptions {
+  /**
+   * Nombre d'éléments avant l'élément courant (par défaut: 1)
+   */
+  before?: number;
+
+  /**
+   * Nombre d'éléments après l'élément courant (par défaut: 1)
+   */
+  after?: number;
+}
+
+/**
+ * Options pour récupérer une page de la file d'attente
+ */
+export interface ChromecastQueueItemsOptions {
+  /**
+   * Index du premier élément (par défaut: 0)
+   */
+  offset?: number;
+
+  /**
+   * Nombre maximal d'éléments (par défaut: 20, au plus 100)
+   */
+  limit?: number;
+}
+
+/**
+ * Page de la file d'attente
+ */
+export interface ChromecastQueueItemsResult {
+  offset: number;
+
+  /**
+   * Nombre total d'éléments dans la file d'attente
+   */
+  total: number;
+
+  items: any[];
+}
+
+/**
+ * Événement QUEUE_CHANGE, envoyé pour chaque modification de la file d'attente
+ */
+export interface ChromecastQueueChange {
+  /**
+   * - 'reloaded': la file a été rechargée, relire les éléments avec getQueueItems
+   * - 'inserted': éléments insérés à partir de startIndex
+   * - 'removed': éléments supprimés
+   * - 'updated': éléments modifiés, avec leur nouveau contenu
+   */
+  type: 'reloaded' | 'inserted' | 'removed' | 'updated';
+
+  /**
+   * Nombre total d'éléments après la modification
+   */
+  total: number;
+
+  /**
+   * Index du premier élément inséré ('inserted')
+   */
+  startIndex?: number;
+
+  /**
+   * Nombre d'éléments insérés ('inserted')
+   */
+  count?: number;
+
+  /**
+   * Index des éléments supprimés ('removed')
+   */
+  indexes?: number[];
+
+  /**
+   * Identifiants des éléments insérés ou supprimés
+   */
+  itemIds?: number[];
+
+  /**
+   * Nouveau contenu des éléments modifiés ('updated')
+   */
+  items?: any[];
+}
+
+/**
+ * Options pour charger une file d'attente complète
+ */
+export interface ChromecastQueueLoadOptions {
+  /**
+   * Éléments de la file ({ media, autoplay, startTime, ... })
+   */
+  items: any[];
+
+  /**
+   * Index de l'élément à lire en premier (par défaut: 0)
+   */
+  startIndex?: number;
+
+  /**
+   * Mode de répétition (par défaut: 'REPEAT_OFF')
+   */
+  repeatMode?: 'REPEAT_OFF' | 'REPEAT_ALL' | 'REPEAT_SINGLE' | 'REPEAT_ALL_AND_SHUFFLE';
+
+  /**
+   * Nombre maximal d'éléments par requête envoyée au récepteur (par défaut: 20), moins si
+   * leur JSON dépasse 40000 octets
+   */
+  chunkSize?: number;
+}
+
+/**
+ * Options pour insérer des éléments dans la file d'attente
+ */
+export interface ChromecastQueueInsertItemsOptions {
+  /**
+   * Éléments à insérer
+   */
+  items: any[];
+
+  /**
+   * Identifiant de l'élément avant lequel insérer (ajout à la fin si absent)
+   */
+  insertBeforeItemId?: number;
+
+  /**
+   * Nombre maximal d'éléments par requête envoyée au récepteur (par défaut: 20), moins si
+   * leur JSON dépasse 40000 octets
+   */
+  chunkSize?: number;
+}
+
+/**
+ * Résultat de queueLoad et queueInsertItems
+ */
+export interface ChromecastQueueLoadResult {
+  itemCount: number;
+  chunks: number;
+}
+
+/**
+ * Événement QUEUE_PROGRESS, envoyé pour chaque bloc appliqué par le récepteur
+ */
+export interface ChromecastQueueProgress {
+  operation: 'queueLoad' | 'queueInsertItems';
+  chunk: number;
+  chunks: number;
+  itemsSent: number;
+  totalItems: number;
+}
+
+/**
+ * Options pour se déplacer dans le média courant
+ */
+export interface ChromecastSeekOptions {
+  /**
+   * Position cible en ms
+   */
+  currentTime?: number;
+
+  /**
+   * Déplacer uniquement la position estimée localement, sans contacter le récepteur
+   */
+  preview?: boolean;
+
+  /**
+   * Envoyer la dernière position de prévisualisation au récepteur
+   */
+  commit?: boolean;
+}
+
+/**
+ * Résultat d'une commande média, une fois acquittée par le récepteur.
+ * En cas d'échec la promesse est rejetée avec le code 'command_failed' (refusée par le récepteur)
+ * ou 'session_error' (session terminée avant l'envoi)
+ */
+export interface ChromecastMediaCommandResult {
+  /**
+   * Nom de la commande (play, pause, seek, next, prev)
+   */
+  command?: string;
+
+  /**
+   * Temps aller-retour jusqu'à l'acquittement du récepteur, en ms
+   */
+  latencyMs?: number;
+
+  /**
+   * État du lecteur après la commande (PLAYING, PAUSED, BUFFERING, IDLE, UNKNOWN)
+   */
+  playerState?: string;
+
+  currentItemId?: number;
+
+  /**
+   * Position en secondes après la commande
+   */
+  currentTime?: number;
+
+  /**
+   * true si la commande n'aurait rien changé et n'a pas été envoyée
+   */
+  skipped?: boolean;
+}
+
+/**
+ * Résultat d'un déplacement
+ */
+export interface ChromecastSeekResult extends ChromecastMediaCommandResult {
+  /**
+   * Position cible en ms
+   */
+  position: number;
+
+  /**
+   * true si une position plus récente a remplacé celle-ci avant son envoi
+   */
+  superseded: boolean;
+}
+
+/**
+ * Options pour un appel RPC sur un namespace personnalisé
+ */
+export interface ChromecastRpcCallOptions {
+  /**
+   * Namespace sur lequel le récepteur répond (ex: 'urn:x-cast:com.caprockapps.rpc')
+   */
+  namespace: string;
+
+  /**
+   * Nom de la méthode côté récepteur
+   */
+  method: string;
+
+  params?: any;
+
+  /**
+   * Délai d'attente de la réponse en ms (par défaut: 10000)
+   */
+  timeoutMs?: number;
+}
+
+/**
+ * Réponse d'un appel RPC
+ */
+export interface ChromecastRpcCallResult {
+  result: any;
+
+  /**
+   * Temps aller-retour en ms
+   */
+  latencyMs: number;
+}
+
+/**
+ * Histogramme des latences d'une méthode RPC
+ */
+export interface ChromecastRpcMethodStats {
+  count: number;
+
+  /**
+   * Appels sans réponse (délai dépassé, échec d'envoi)
+   */
+  failures: number;
+  minMs?: number;
+  maxMs?: number;
+  avgMs?: number;
+  p50Ms?: number;
+  p90Ms?: number;
+  p99Ms?: number;
+
+  /**
+   * Nombre d'appels par tranche, le dernier seuil (-1) n'est pas borné
+   */
+  buckets: { le: number; count: number }[];
+}
+
+/**
+ * Options pour regrouper les messages d'un namespace
+ */
+export interface ChromecastMessageBatchingOptions {
+  namespace: string;
+
+  /**
+   * false pour revenir à un envoi message par message (par défaut: true)
+   */
+  enabled?: boolean;
+
+  /**
+   * Durée maximale d'attente d'un message avant l'envoi du lot, en ms (par défaut: 50)
+   */
+  flushIntervalMs?: number;
+
+  /**
+   * Taille en octets (UTF-8) à partir de laquelle le lot est envoyé (par défaut: 16384, max: 60000)
+   */
+  maxBatchBytes?: number;
+
+  /**
+   * Nombre de messages à partir duquel le lot est envoyé (par défaut: 100)
+   */
+  maxBatchCount?: number;
+
+  /**
+   * Taille à partir de laquelle le lot est compressé, 0 pour ne jamais compresser (par défaut: 1024)
+   */
+  compressThresholdBytes?: number;
+}
+
+/**
+ * Compteurs d'un namespace groupé
+ */
+export interface ChromecastMessageBatchStats {
+  messages: number;
+
+  /**
+   * Nombre de trames Cast envoyées
+   */
+  frames: number;
+  compressedFrames: number;
+
+  /**
+   * Taille cumulée des messages
+   */
+  payloadBytes: number;
+
+  /**
+   * Taille cumulée des trames envoyées
+   */
+  wireBytes: number;
+}
+
+/**
+ * Options du banc d'essai des messages
+ */
+export interface ChromecastMessageBenchmarkOptions extends ChromecastMessageBatchingOptions {
+  /**
+   * Nombre de messages par passe (par défaut: 500)
+   */
+  messages?: number;
+
+  /**
+   * Taille de chaque message (par défaut: 200)
+   */
+  payloadBytes?: number;
+}
+
+/**
+ * Résultat d'une passe du banc d'essai
+ */
+export interface ChromecastMessageBenchmarkPass {
+  durationMs: number;
+  messagesPerSec: number;
+  failures: number;
+  frames: number;
+  compressedFrames?: number;
+  wireBytes: number;
+}
+
+/**
+ * Options pour envoyer un message plus grand que la limite Cast (64 Ko)
+ */
+export interface ChromecastLargeMessageOptions {
+  namespace: string;
+  message: string;
+
+  /**
+   * Nombre de morceaux envoyés sans accusé de réception (par défaut: 4)
+   */
+  windowSize?: number;
+
+  /**
+   * Taille d'un morceau en caractères, réduite si le morceau dépasse la limite Cast (par défaut: 16000)
+   */
+  chunkSize?: number;
+
+  /**
+   * Délai d'attente de chaque accusé de réception en ms (par défaut: 10000)
+   */
+  timeoutMs?: number;
+}
+
+/**
+ * Résultat d'un envoi en morceaux
+ */
+export interface ChromecastLargeMessageResult {
+  id: string;
+  chunks: number;
+
+  /**
+   * Taille cumulée des morceaux envoyés, en octets UTF-8
+   */
+  bytes: number;
+  durationMs: number;
+  bytesPerSec: number;
+}
+
+/**
+ * Options d'abonnement aux messages d'un namespace
+ */
+export interface ChromecastMessageSubscriptionOptions {
+  namespace: string;
+
+  /**
+   * Durée de regroupement des messages en ms, 0 pour envoyer chaque message aussitôt (par défaut: 0)
+   */
+  batchIntervalMs?: number;
+
+  /**
+   * Nombre de messages à partir duquel le lot est envoyé sans attendre (par défaut: 50)
+   */
+  maxBatchSize?: number;
+
+  /**
+   * Nombre de messages gardés tant qu'aucun listener RECEIVER_MESSAGES n'est présent,
+   * les plus anciens sont supprimés en premier (par défaut: 500)
+   */
+  bufferSize?: number;
+}
+
+/**
+ * Contenu de l'événement RECEIVER_MESSAGES
+ */
+export interface ChromecastReceiverMessages {
+  namespace: string;
+
+  /**
+   * Messages tels que reçus, du plus ancien au plus récent
+   */
+  messages: string[];
+
+  /**
+   * Nombre de messages supprimés avant ceux-ci faute de listener
+   */
+  dropped: number;
+}
+
+/**
+ * Compteurs d'un namespace abonné
+ */
+export interface ChromecastMessageRouterStats {
+  received: number;
+  delivered: number;
+  dropped: number;
+
+  /**
+   * Nombre d'événements RECEIVER_MESSAGES envoyés
+   */
+  frames: number;
+  buffered: number;
+}
+
+/**
+ * Compteurs des appels au SDK Cast passés sur le thread principal
+ */
+export interface ChromecastCommandExecutorStats {
+  tasks: number;
+
+  /**
+   * Appels exécutés directement, déjà sur le thread principal
+   */
+  inline: number;
+
+  /**
+   * Messages postés sur le thread principal, un seul pour plusieurs appels en attente
+   */
+  looperPosts: number;
+
+  /**
+   * Appels abandonnés car la session avait changé entre-temps
+   */
+  staleTasks: number;
+  maxBatch: number;
+  maxDrainMs: number;
+}
+
+/**
+ * Commande d'un lot exécuté par executeBatch
+ */
+export interface ChromecastBatchCommand {
+  /**
+   * Nom de la commande
+   */
+  op: 'play' | 'pause' | 'seek' | 'next' | 'prev' | 'sendMessage' | 'sendLargeMessage' | 'rpcCall' | 'loadMedia' | 'setVolume' | 'setMute';
+
+  /**
+   * Options de la méthode correspondante (ex: { currentTime: 30000 } pour seek)
+   */
+  args?: any;
+}
+
+/**
+ * Options pour exécuter plusieurs commandes en un seul appel
+ */
+export interface ChromecastBatchOptions {
+  commands: ChromecastBatchCommand[];
+
+  /**
+   * Arrête le lot à la première erreur, les commandes suivantes sont marquées skipped (par défaut: false)
+   */
+  stopOnError?: boolean;
+}
+
+/**
+ * Résultat d'une commande du lot
+ */
+export interface ChromecastBatchCommandResult {
+  op: string;
+  success?: boolean;
+
+  /**
+   * Durée jusqu'à la fin de la commande en ms (le latencyMs du récepteur est dans result pour les commandes média)
+   */
+  latencyMs?: number;
+  result?: any;
+  error?: string;
+  code?: string;
+
+  /**
+   * Commande non exécutée à cause de stopOnError
+   */
+  skipped?: boolean;
+}
+
+/**
+ * Résultat d'un loadMedia remplacé par un chargement plus récent
+ */
+export interface ChromecastSupersededLoad {
+  loadId: number;
+  superseded: true;
+  supersededBy: number;
+
+  /**
+   * false si le chargement n'a jamais été envoyé au récepteur
+   */
+  sent: boolean;
+}
+
+/**
+ * Options du banc d'essai de zapping
+ */
+export interface ChromecastZapBenchmarkOptions {
+  /**
+   * Médias chargés à tour de rôle
+   */
+  media: Array<{ contentId: string; contentType?: string; streamType?: string; metadata?: any }>;
+
+  /**
+   * Nombre de changements de chaîne (par défaut: 5)
+   */
+  taps?: number;
+
+  /**
+   * Intervalle entre deux changements en ms (par défaut: 300)
+   */
+  tapIntervalMs?: number;
+
+  /**
+   * Délai d'attente de la lecture après le dernier changement en ms (par défaut: 30000)
+   */
+  timeoutMs?: number;
+}
+
+/**
+ * Résultat du banc d'essai de zapping, -1 quand l'étape n'a pas été atteinte
+ */
+export interface ChromecastZapBenchmarkResult {
+  taps: number;
+  tapIntervalMs: number;
+  superseded: number;
+
+  /**
+   * Chargements remplacés après avoir été envoyés au récepteur
+   */
+  supersededAfterSend: number;
+  failures: number;
+  error?: string;
+  timedOut: boolean;
+
+  /**
+   * Du dernier changement à la résolution de son loadMedia
+   */
+  lastTapToLoadedMs: number;
+
+  /**
+   * Du dernier changement au passage en lecture (PLAYING) sur le récepteur
+   */
+  lastTapToPlayingMs: number;
+}
+
+/**
+ * Résultat d'un changement de volume
+ */
+export interface ChromecastVolumeResult {
+  level: number;
+  muted: boolean;
+
+  /**
+   * true si un changement plus récent a remplacé celui-ci avant son envoi
+   */
+  superseded: boolean;
+
+  /**
+   * Temps entre l'envoi et la confirmation du récepteur en ms
+   */
+  latencyMs?: number;
+
+  /**
+   * true si le récepteur n'a pas confirmé le changement à temps
+   */
+  timedOut?: boolean;
+
+  /**
+   * true si la rampe a été interrompue par un autre changement de volume
+   */
+  cancelled?: boolean;
+}
+
+/**
+ * Appareil mémorisé par les recherches précédentes, y compris celles des lancements précédents
+ */
+export interface ChromecastKnownRoute {
+  id: string;
+  name: string;
+  modelName?: string;
+
+  /**
+   * Dernière fois que l'appareil a été vu (timestamp en ms)
+   */
+  lastSeen: number;
+
+  /**
+   * Part des connexions réussies, null si aucune connexion n'a été tentée
+   */
+  successRate: number | null;
+
+  /**
+   * true si l'appareil fait partie du dernier résultat de recherche de ce lancement
+   */
+  available: boolean;
+}
+
+/**
+ * Appareil trouvé par startRouteScan, contenu des événements ROUTE_ADDED et ROUTE_CHANGED ({ route })
+ */
+export interface ChromecastRoute {
+  id: string;
+  name: string;
+  isNearbyDevice?: boolean;
+  isCastGroup?: boolean;
+}
+
+/**
+ * Rythme de découverte de startRouteScan. Les valeurs omises gardent leur réglage actuel.
+ */
+export interface ChromecastDiscoveryOptions {
+  /**
+   * Durée d'une recherche active en ms, au démarrage et au retour au premier plan (par défaut: 8000)
+   */
+  burstMs?: number;
+
+  /**
+   * Intervalle minimal entre deux recherches actives en ms, utilisé quand les appareils changent souvent (par défaut: 15000)
+   */
+  minIntervalMs?: number;
+
+  /**
+   * Intervalle maximal entre deux recherches actives en ms, atteint quand rien ne change (par défaut: 240000)
+   */
+  maxIntervalMs?: number;
+}
+
+/**
+ * Statistiques de découverte des appareils
+ */
+export interface ChromecastDiscoveryStats {
+  mode: 'active' | 'passive' | 'stopped';
+  intervalMs?: number;
+  burstMs: number;
+  activeStarts: number;
+  passiveStarts: number;
+  stops: number;
+  activeMs: number;
+  passiveMs: number;
+
+  /**
+   * Temps passé en pause en arrière-plan
+   */
+  stoppedMs: number;
+
+  /**
+   * Nombre de changements de la liste des appareils
+   */
+  routeChanges: number;
+
+  /**
+   * Moyenne sur les 5 dernières minutes
+   */
+  routeChangesPerMinute: number;
+
+  /**
+   * Filtre des appareils : évaluations complètes, réponses du cache et mises à jour évitées
+   */
+  filter: { evaluations: number; cacheHits: number; skippedUpdates: number };
+}
+
+/**
+ * Contenu de l'événement JOIN_TIMING, envoyé à la fin de chaque connexion (selectRoute ou requestSession).
+ * Les étapes sont en ms depuis le début de la connexion, -1 si elles n'ont pas été atteintes.
+ */
+export interface ChromecastJoinTiming {
+  routeId: string | null;
+
+  /**
+   * true si l'appareil a été sélectionné directement depuis la liste du routeur, sans recherche
+   */
+  fastPath: boolean;
+  routeFoundMs: number;
+  sessionStartingMs: number;
+  sessionStartedMs: number;
+
+  /**
+   * Premier statut reçu par le client média (abandonné après 5 s)
+   */
+  mediaClientReadyMs: number;
+  totalMs: number;
+  success: boolean;
+  error?: string;
+}
+
+/**
+ * Options pour choisir où sont construits les objets session et média
+ */
+export interface ChromecastBackgroundSerializationOptions {
+  /**
+   * true (par défaut) pour les construire hors du thread principal,
+   * false pour revenir au fonctionnement précédent et comparer
+   */
+  enabled: boolean;
+}
+
+/**
+ * Options pour lire les mesures du thread principal
+ */
+export interface ChromecastMainThreadStatsOptions {
+  /**
+   * Remettre les mesures à zéro après la lecture
+   */
+  reset?: boolean;
+}
+
+/**
+ * Temps passé sur le thread principal dans un callback du SDK Cast
+ */
+export interface ChromecastCallbackStats {
+  count: number;
+  totalMs: number;
+  avgMs: number;
+  maxMs: number;
+}
+
+/**
+ * Mesures du thread principal par callback
+ */
+export interface ChromecastMainThreadStats {
+  /**
+   * Indique si les objets sont construits hors du thread principal
+   */
+  backgroundSerialization: boolean;
+
+  /**
+   * Mesures par nom de callback (onStatusUpdated, onVolumeChanged, ...)
+   */
+  callbacks: { [name: string]: ChromecastCallbackStats };
+
+  /**
+   * Appels au SDK Cast passés sur le thread principal
+   */
+  commands: ChromecastCommandExecutorStats;
+}
+
 export interface ChromecastPlugin {
   /**
    * Initialise le plugin Chromecast avec les options spécifiées
@@ -163,8 +1055,10 @@ export interface ChromecastPlugin {
 
   /**
    * Charge un média avec des options étendues incluant le support pour les en-têtes d'authentification
+   * Seul le dernier chargement demandé est conservé : un chargement plus ancien se résout avec
+   * ChromecastSupersededLoad au lieu d'être envoyé (ou interrompu s'il l'était déjà).
    * @param options Options détaillées pour le chargement du média
-   * @returns Promise qui se résout avec les informations du média chargé
+   * @returns Promise qui se résout avec les informations du média chargé et son loadId
    */
   loadMedia(options: ChromecastLoadMediaOptions): Promise<any>;
 
@@ -188,4 +1082,232 @@ export interface ChromecastPlugin {
   ): Promise<PluginListenerHandle>;
 
   sendMessage(messageObj: any): Promise<any>;
+
+  /**
+   * Active ou désactive l'envoi des MEDIA_UPDATE sous forme de deltas
+   * @param options Mode d'envoi et intervalle entre keyframes
+   */
+  setMediaUpdateMode(options: ChromecastMediaUpdateModeOptions): Promise<void>;
+
+  /**
+   * Limite la fréquence des événements (MEDIA_UPDATE, SESSION_UPDATE, RECEIVER_MESSAGE, ...)
+   * @param options Fenêtre de regroupement et fréquences maximales par événement
+   */
+  setEventRateLimits(options: ChromecastEventRateLimitsOptions): Promise<void>;
+
+  /**
+   * Démarre ou arrête les événements MEDIA_PROGRESS
+   * @param options Intervalle et source des mises à jour
+   */
+  setProgressUpdates(options: ChromecastProgressUpdatesOptions): Promise<void>;
+
+  /**
+   * Retourne la position de lecture estimée localement, sans attendre de statut du récepteur
+   */
+  getEstimatedPosition(): Promise<ChromecastMediaProgress>;
+
+  /**
+   * Configure le nombre d'éléments de file d'attente autour de l'élément courant
+   * @param options Nombre d'éléments avant et après
+   */
+  setQueueWindow(options: ChromecastQueueWindowOptions): Promise<void>;
+
+  /**
+   * Récupère une page de la file d'attente en un seul appel
+   * @param options Index de départ et nombre d'éléments
+   */
+  getQueueItems(options: ChromecastQueueItemsOptions): Promise<ChromecastQueueItemsResult>;
+
+  /**
+   * Charge une file d'attente complète en quelques requêtes
+   * @param options Éléments, élément de départ et mode de répétition
+   */
+  queueLoad(options: ChromecastQueueLoadOptions): Promise<ChromecastQueueLoadResult>;
+
+  /**
+   * Insère des éléments dans la file d'attente en quelques requêtes
+   * @param options Éléments et position d'insertion
+   */
+  queueInsertItems(options: ChromecastQueueInsertItemsOptions): Promise<ChromecastQueueLoadResult>;
+
+  /**
+   * Construit les objets session et média hors du thread principal (par défaut) ou dans les callbacks
+   * @param options Activation
+   */
+  setBackgroundSerialization(options: ChromecastBackgroundSerializationOptions): Promise<void>;
+
+  /**
+   * Retourne le temps passé sur le thread principal par callback du SDK Cast
+   * @param options Remise à zéro éventuelle
+   */
+  getMainThreadStats(options?: ChromecastMainThreadStatsOptions): Promise<ChromecastMainThreadStats>;
+
+  /**
+   * Se déplace dans le média courant, seule la position la plus récente est envoyée pendant un déplacement en cours
+   * @param options Position cible, prévisualisation ou validation
+   */
+  mediaSeek(options: ChromecastSeekOptions): Promise<ChromecastSeekResult>;
+
+  /**
+   * Met en pause, résolu à l'acquittement du récepteur
+   */
+  mediaPause(): Promise<ChromecastMediaCommandResult>;
+
+  /**
+   * Reprend la lecture, résolu à l'acquittement du récepteur
+   */
+  mediaPlay(): Promise<ChromecastMediaCommandResult>;
+
+  /**
+   * Passe à l'élément suivant de la file d'attente, résolu à l'acquittement du récepteur
+   */
+  mediaNext(): Promise<ChromecastMediaCommandResult>;
+
+  /**
+   * Revient à l'élément précédent de la file d'attente, résolu à l'acquittement du récepteur
+   */
+  mediaPrev(): Promise<ChromecastMediaCommandResult>;
+
+  /**
+   * Appelle une méthode du récepteur et attend la réponse correspondante
+   * @param options Namespace, méthode, paramètres et délai d'attente
+   */
+  rpcCall(options: ChromecastRpcCallOptions): Promise<ChromecastRpcCallResult>;
+
+  /**
+   * Retourne les histogrammes de latence par namespace et par méthode
+   * @param options Remise à zéro éventuelle
+   */
+  getRpcStats(options?: { reset?: boolean }): Promise<{ [namespace: string]: { [method: string]: ChromecastRpcMethodStats } }>;
+
+  /**
+   * Regroupe les messages envoyés sur un namespace (le récepteur les dégroupe avec addBatchedMessageListener)
+   * @param options Namespace, intervalle, tailles et compression
+   */
+  setMessageBatching(options: ChromecastMessageBatchingOptions): Promise<void>;
+
+  /**
+   * Retourne les compteurs des namespaces groupés
+   */
+  getMessageBatchStats(): Promise<{ [namespace: string]: ChromecastMessageBatchStats }>;
+
+  /**
+   * Compare l'envoi message par message et groupé sur la session courante
+   * @param options Namespace, nombre et taille des messages, options de regroupement
+   */
+  runMessageBenchmark(options: ChromecastMessageBenchmarkOptions): Promise<{
+    messages: number;
+    payloadBytes: number;
+    unbatched: ChromecastMessageBenchmarkPass;
+    batched: ChromecastMessageBenchmarkPass;
+  }>;
+
+  /**
+   * Envoie un message de n'importe quelle taille en morceaux acquittés par le récepteur.
+   * Les gros messages envoyés par le récepteur arrivent rassemblés, en un seul RECEIVER_MESSAGE.
+   * @param options Namespace, message, fenêtre, taille des morceaux et délai d'attente
+   */
+  sendLargeMessage(options: ChromecastLargeMessageOptions): Promise<ChromecastLargeMessageResult>;
+
+  /**
+   * S'abonne aux messages d'un namespace, pour cette session et les suivantes.
+   * Ils arrivent par lots dans RECEIVER_MESSAGES (voir ChromecastReceiverMessages) au lieu d'un RECEIVER_MESSAGE chacun.
+   * @param options Namespace, regroupement et taille du tampon
+   */
+  subscribeMessages(options: ChromecastMessageSubscriptionOptions): Promise<void>;
+
+  /**
+   * Se désabonne d'un namespace, les messages en attente sont supprimés
+   */
+  unsubscribeMessages(options: { namespace: string }): Promise<void>;
+
+  /**
+   * Envoie les messages gardés en attendant un listener RECEIVER_MESSAGES (à appeler après addListener)
+   * @param options Namespace, tous si absent
+   */
+  flushMessages(options?: { namespace?: string }): Promise<void>;
+
+  /**
+   * Retourne les compteurs des namespaces abonnés
+   */
+  getMessageRouterStats(): Promise<{ [namespace: string]: ChromecastMessageRouterStats }>;
+
+  /**
+   * Exécute plusieurs commandes dans l'ordre en un seul appel au bridge, chacune attend la fin de la précédente
+   * @param options Commandes et arrêt à la première erreur
+   */
+  executeBatch(options: ChromecastBatchOptions): Promise<{
+    results: ChromecastBatchCommandResult[];
+    completed: number;
+    failed: number;
+    totalMs: number;
+  }>;
+
+  /**
+   * Simule des changements de chaîne rapides et mesure le temps entre le dernier changement et la lecture
+   * @param options Médias, nombre et intervalle des changements
+   */
+  runZapBenchmark(options: ChromecastZapBenchmarkOptions): Promise<ChromecastZapBenchmarkResult>;
+
+  /**
+   * Retourne le nombre de chargements demandés, envoyés, et remplacés avant (skipped) ou après (interrupted) envoi
+   */
+  getLoadStats(): Promise<{ requested: number; sent: number; skipped: number; interrupted: number }>;
+
+  /**
+   * Règle le volume de l'appareil. Pendant un changement en cours seule la dernière valeur est conservée,
+   * les appels remplacés se résolvent avec superseded: true. Les SESSION_UPDATE provoqués par nos propres
+   * changements ne sont émis qu'une fois le dernier confirmé.
+   * @param options Niveau entre 0 et 1
+   */
+  setVolume(options: { level: number }): Promise<ChromecastVolumeResult>;
+
+  /**
+   * Coupe ou rétablit le son de l'appareil, regroupé comme setVolume
+   * @param options État muet
+   */
+  setMute(options: { muted: boolean }): Promise<ChromecastVolumeResult>;
+
+  /**
+   * Fait varier progressivement le volume de l'appareil jusqu'à target
+   * @param options Niveau final entre 0 et 1 et durée en ms (par défaut: 1000)
+   */
+  rampVolume(options: { target: number; durationMs?: number }): Promise<ChromecastVolumeResult>;
+
+  /**
+   * Retourne immédiatement les appareils mémorisés, sans recherche, pour afficher un sélecteur dès le
+   * démarrage. Fonctionne avant initialize, les recherches suivantes mettent la liste à jour.
+   */
+  getKnownRoutes(): Promise<{ routes: ChromecastKnownRoute[] }>;
+
+  /**
+   * Lance une recherche active d'appareils, à arrêter avec stopRouteScan. Se résout avec la première liste,
+   * les changements suivants arrivent un par un par les événements ROUTE_ADDED, ROUTE_CHANGED ({ route })
+   * et ROUTE_REMOVED ({ id }).
+   */
+  startRouteScan(): Promise<{ routes: ChromecastRoute[] }>;
+
+  /**
+   * Arrête la recherche lancée par startRouteScan
+   */
+  stopRouteScan(): Promise<void>;
+
+  /**
+   * Règle l'alternance entre recherche active et découverte passive de startRouteScan
+   * @param options Durée des recherches actives et bornes de l'intervalle entre elles
+   */
+  setDiscoveryOptions(options: ChromecastDiscoveryOptions): Promise<void>;
+
+  /**
+   * Retourne les changements de mode de découverte et le temps passé dans chacun
+   */
+  getDiscoveryStats(): Promise<ChromecastDiscoveryStats>;
+
+  /**
+   * Se connecte à un appareil trouvé par startRouteScan ou getKnownRoutes. L'appareil est sélectionné
+   * directement s'il est encore connu du routeur, sinon une recherche le trouve. Les étapes de la connexion
+   * sont envoyées par l'événement JOIN_TIMING (ChromecastJoinTiming).
+   * @param options Identifiant de l'appareil
+   */
+  selectRoute(options: { routeId: string }): Promise<any>;
 }
@@ -227,6 +227,117 @@ export class ChromecastWeb extends WebPlugin implements ChromecastPlugin {
     }
     return { success: true, error: null };
   }
+  async setMediaUpdateMode(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setEventRateLimits(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setProgressUpdates(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getEstimatedPosition(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setQueueWindow(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getQueueItems(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async queueLoad(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async queueInsertItems(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setBackgroundSerialization(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getMainThreadStats(_options?: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async mediaSeek(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async mediaPause(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async mediaPlay(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async mediaNext(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async mediaPrev(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async rpcCall(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getRpcStats(_options?: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setMessageBatching(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getMessageBatchStats(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async runMessageBenchmark(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async sendLargeMessage(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async subscribeMessages(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async unsubscribeMessages(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async flushMessages(_options?: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getMessageRouterStats(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async executeBatch(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async runZapBenchmark(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getLoadStats(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setVolume(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setMute(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async rampVolume(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getKnownRoutes(): Promise<{ routes: any[] }> {
+    return { routes: [] };
+  }
+  async startRouteScan(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async stopRouteScan(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async setDiscoveryOptions(_options: any): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async getDiscoveryStats(): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+  async selectRoute(_options: any): Promise<any> {
+    throw this.unimplemented('Not implemented on web.');
+  }
   async addCastEventListeners() {
     console.log('Add listener via instance', this.instance);
     if (!this.instance) this.instance = cast.framework.CastContext.getInstance();